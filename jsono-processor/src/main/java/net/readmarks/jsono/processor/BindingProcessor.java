@@ -0,0 +1,300 @@
+package net.readmarks.jsono.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Generates handlers for classes annotated with {@code net.readmarks.jsono.bind.JsonBindable}.
+ * For class {@code Foo} the generated {@code Foo_JsonHandler} is a {@code Binder<Foo>} with a binding
+ * that creates instances with the constructor and assigns fields directly (no reflection at runtime).
+ * Bound fields are the same as ones of runtime bindings ({@code ObjectBinding.of(Foo.class)}).
+ */
+@SupportedAnnotationTypes(BindingProcessor.ANNOTATION)
+public class BindingProcessor extends AbstractProcessor {
+  static final String ANNOTATION = "net.readmarks.jsono.bind.JsonBindable";
+  static final String SUFFIX = "_JsonHandler";
+
+  private static final String BIND = "net.readmarks.jsono.bind.";
+  private static final Set<String> VALUE_TYPES = new HashSet<>(Arrays.asList(
+          "java.lang.String", "java.lang.Long", "java.lang.Integer", "java.lang.Short", "java.lang.Byte",
+          "java.lang.Double", "java.lang.Float", "java.lang.Boolean"));
+  private static final Set<String> LIST_TYPES = new HashSet<>(Arrays.asList(
+          "java.util.List", "java.util.Collection", "java.util.ArrayList", "java.lang.Iterable"));
+
+  private static final class UnsupportedType extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    UnsupportedType(String message) {
+      super(message);
+    }
+  }
+
+  private static final class BoundField {
+    final VariableElement element;
+    final String name;
+    /**
+     * Expression that creates the field's FieldType.
+     */
+    final String fieldType;
+    /**
+     * Setter of the field: setLong, setDouble, setBoolean or setObject.
+     */
+    final String setter;
+
+    BoundField(VariableElement element, String fieldType, String setter) {
+      this.element = element;
+      this.name = element.getSimpleName().toString();
+      this.fieldType = fieldType;
+      this.setter = setter;
+    }
+  }
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    final TypeElement annotation = processingEnv.getElementUtils().getTypeElement(ANNOTATION);
+    if (annotation == null) {
+      return false;
+    }
+    for (Element e : roundEnv.getElementsAnnotatedWith(annotation)) {
+      if (e.getKind() != ElementKind.CLASS) {
+        error("Only classes can be bound.", e);
+        continue;
+      }
+      final TypeElement type = (TypeElement) e;
+      try {
+        generate(type, fields(type));
+      } catch (UnsupportedType ex) {
+        error(ex.getMessage(), type);
+      } catch (IOException ex) {
+        error("Can not write handler: " + ex, type);
+      }
+    }
+    return true;
+  }
+
+  private void error(String message, Element e) {
+    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, e);
+  }
+
+  private String packageName(Element e) {
+    final PackageElement p = processingEnv.getElementUtils().getPackageOf(e);
+    return p.isUnnamed() ? "" : p.getQualifiedName().toString();
+  }
+
+  /**
+   * @return Handler name without package, e.g. "Outer_Inner_JsonHandler" for a nested class.
+   */
+  private String handlerName(TypeElement type) {
+    final String pkg = packageName(type);
+    final String name = type.getQualifiedName().toString();
+    return (pkg.isEmpty() ? name : name.substring(pkg.length() + 1)).replace('.', '_') + SUFFIX;
+  }
+
+  private List<BoundField> fields(TypeElement type) throws UnsupportedType {
+    final Set<Modifier> modifiers = type.getModifiers();
+    if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.ABSTRACT)) {
+      throw new UnsupportedType("Bound class should not be private or abstract.");
+    }
+    if (type.getNestingKind().isNested() && !modifiers.contains(Modifier.STATIC)) {
+      throw new UnsupportedType("Bound nested class should be static.");
+    }
+    boolean constructor = false;
+    for (ExecutableElement c : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+      constructor |= c.getParameters().isEmpty() && !c.getModifiers().contains(Modifier.PRIVATE);
+    }
+    if (!constructor) {
+      throw new UnsupportedType("Bound class should have a non-private no-argument constructor.");
+    }
+    final String pkg = packageName(type);
+    final List<BoundField> fields = new ArrayList<>();
+    final Set<String> names = new HashSet<>();
+    for (TypeElement c = type; c != null && !c.getQualifiedName().contentEquals("java.lang.Object"); c = superclass(c)) {
+      for (VariableElement f : ElementFilter.fieldsIn(c.getEnclosedElements())) {
+        final Set<Modifier> m = f.getModifiers();
+        if (m.contains(Modifier.STATIC) || m.contains(Modifier.TRANSIENT) || m.contains(Modifier.FINAL)
+                || !names.add(f.getSimpleName().toString())) {
+          continue;
+        }
+        if (m.contains(Modifier.PRIVATE) || (!m.contains(Modifier.PUBLIC) && !packageName(c).equals(pkg))) {
+          throw new UnsupportedType("Field " + c.getSimpleName() + "." + f.getSimpleName() + " is not accessible.");
+        }
+        fields.add(field(f));
+      }
+    }
+    return fields;
+  }
+
+  private TypeElement superclass(TypeElement type) {
+    final TypeMirror s = type.getSuperclass();
+    return s.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) s).asElement() : null;
+  }
+
+  private BoundField field(VariableElement f) throws UnsupportedType {
+    final TypeMirror t = f.asType();
+    switch (t.getKind()) {
+      case LONG:
+      case INT:
+      case SHORT:
+      case BYTE:
+        return new BoundField(f, BIND + "FieldType.primitive(" + t + ".class)", "setLong");
+      case DOUBLE:
+      case FLOAT:
+        return new BoundField(f, BIND + "FieldType.primitive(" + t + ".class)", "setDouble");
+      case BOOLEAN:
+        return new BoundField(f, BIND + "FieldType.primitive(boolean.class)", "setBoolean");
+      default:
+        try {
+          return new BoundField(f, fieldType(t), "setObject");
+        } catch (UnsupportedType e) {
+          throw new UnsupportedType("Field " + f.getSimpleName() + ": " + e.getMessage());
+        }
+    }
+  }
+
+  private String fieldType(TypeMirror t) throws UnsupportedType {
+    if (t.getKind() != TypeKind.DECLARED) {
+      throw new UnsupportedType("Unsupported type " + t + ".");
+    }
+    final DeclaredType d = (DeclaredType) t;
+    final TypeElement e = (TypeElement) d.asElement();
+    final String name = e.getQualifiedName().toString();
+    if (VALUE_TYPES.contains(name) || e.getKind() == ElementKind.ENUM) {
+      return BIND + "FieldType.value(" + name + ".class)";
+    } else if (name.equals("java.lang.Object") || isMap(t)) {
+      return BIND + "FieldType.ANY";
+    } else if (LIST_TYPES.contains(name)) {
+      final String element = d.getTypeArguments().isEmpty() ? BIND + "FieldType.ANY" : fieldType(d.getTypeArguments().get(0));
+      return BIND + "FieldType.list(" + element + ")";
+    } else if (e.getAnnotationMirrors().stream().anyMatch(a -> a.getAnnotationType().toString().equals(ANNOTATION))) {
+      final String pkg = packageName(e);
+      return BIND + "FieldType.object(" + name + ".class, () -> "
+              + (pkg.isEmpty() ? "" : pkg + ".") + handlerName(e) + ".BINDING)";
+    }
+    throw new UnsupportedType("Unsupported type " + t + ", classes of objects should be annotated with @JsonBindable.");
+  }
+
+  private boolean isMap(TypeMirror t) {
+    final TypeElement map = processingEnv.getElementUtils().getTypeElement("java.util.Map");
+    final javax.lang.model.util.Types types = processingEnv.getTypeUtils();
+    return types.isAssignable(types.erasure(t), types.erasure(map.asType()));
+  }
+
+  private void generate(TypeElement type, List<BoundField> fields) throws IOException {
+    final String pkg = packageName(type);
+    final String name = handlerName(type);
+    final String target = type.getQualifiedName().toString();
+    final StringBuilder s = new StringBuilder();
+    if (!pkg.isEmpty()) {
+      s.append("package ").append(pkg).append(";\n\n");
+    }
+    s.append("/**\n * Binds JSON maps to {@link ").append(target).append("}, generated by ")
+            .append(BindingProcessor.class.getName()).append(".\n */\n");
+    s.append("public final class ").append(name).append(" extends ").append(BIND).append("Binder<").append(target).append("> {\n");
+    s.append("  public static final ").append(BIND).append("ObjectBinding<").append(target).append("> BINDING = new Binding();\n\n");
+    s.append("  public ").append(name).append("(java.util.function.Consumer<? super ").append(target).append("> out) {\n");
+    s.append("    super(BINDING, out);\n  }\n\n");
+
+    s.append("  private static final class Binding extends ").append(BIND).append("ObjectBinding<").append(target).append("> {\n");
+    s.append("    private static final ").append(BIND).append("FieldType[] TYPES = {");
+    for (int i = 0; i < fields.size(); i++) {
+      s.append(i == 0 ? "\n" : ",\n").append("        ").append(fields.get(i).fieldType);
+    }
+    s.append("};\n\n");
+    s.append("    @Override\n    public ").append(target).append(" create() {\n");
+    s.append("      return new ").append(target).append("();\n    }\n\n");
+    appendField(s, fields);
+    s.append("    @Override\n    public ").append(BIND).append("FieldType fieldType(int field) {\n");
+    s.append("      return TYPES[field];\n    }\n");
+    appendSetter(s, fields, target, "setLong", "long");
+    appendSetter(s, fields, target, "setDouble", "double");
+    appendSetter(s, fields, target, "setBoolean", "boolean");
+    appendSetter(s, fields, target, "setObject", "Object");
+    s.append("  }\n}\n");
+
+    try (Writer w = processingEnv.getFiler().createSourceFile((pkg.isEmpty() ? "" : pkg + ".") + name, type).openWriter()) {
+      w.write(s.toString());
+    }
+  }
+
+  /**
+   * Key lookup: a switch on key length, then comparisons with names of that length.
+   */
+  private static void appendField(StringBuilder s, List<BoundField> fields) {
+    final Map<Integer, List<Integer>> byLength = new TreeMap<>();
+    for (int i = 0; i < fields.size(); i++) {
+      byLength.computeIfAbsent(fields.get(i).name.length(), k -> new ArrayList<>()).add(i);
+    }
+    s.append("    @Override\n    public int field(CharSequence key) {\n");
+    if (!fields.isEmpty()) {
+      s.append("      switch (key.length()) {\n");
+      for (Map.Entry<Integer, List<Integer>> e : byLength.entrySet()) {
+        s.append("        case ").append(e.getKey()).append(":\n");
+        for (int i : e.getValue()) {
+          s.append("          if (matches(key, \"").append(fields.get(i).name).append("\")) {\n");
+          s.append("            return ").append(i).append(";\n          }\n");
+        }
+        s.append("          break;\n");
+      }
+      s.append("      }\n");
+    }
+    s.append("      return UNKNOWN;\n    }\n\n");
+  }
+
+  private static void appendSetter(StringBuilder s, List<BoundField> fields, String target, String setter, String argType) {
+    final boolean object = setter.equals("setObject");
+    boolean any = false;
+    for (int i = 0; i < fields.size(); i++) {
+      final BoundField f = fields.get(i);
+      if (!f.setter.equals(setter)) {
+        continue;
+      }
+      if (!any) {
+        any = true;
+        s.append("\n    @Override\n");
+        if (object) {
+          s.append("    @SuppressWarnings(\"unchecked\")\n");
+        }
+        s.append("    public void ").append(setter).append("(").append(target).append(" target, int field, ")
+                .append(argType).append(" x) {\n");
+        s.append("      switch (field) {\n");
+      }
+      final String fieldType = f.element.asType().toString();
+      s.append("        case ").append(i).append(":\n");
+      s.append("          target.").append(f.name).append(" = ")
+              .append(fieldType.equals(argType) ? "" : "(" + fieldType + ") ").append("x;\n");
+      s.append("          return;\n");
+    }
+    if (any) {
+      s.append("        default:\n          super.").append(setter).append("(target, field, x);\n");
+      s.append("      }\n    }\n");
+    }
+  }
+}
@@ -0,0 +1,195 @@
+package net.readmarks.jsono.processor;
+
+import net.readmarks.jsono.EventHandler;
+import net.readmarks.jsono.FlatJsonParser;
+import net.readmarks.jsono.bind.Binder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BindingProcessorTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static final String ORDER = "package sample;\n"
+          + "import java.util.List;\n"
+          + "import java.util.Map;\n"
+          + "@net.readmarks.jsono.bind.JsonBindable\n"
+          + "public class Order extends Base {\n"
+          + "  public long id;\n"
+          + "  int quantity;\n"
+          + "  double price;\n"
+          + "  float discount;\n"
+          + "  boolean paid = true;\n"
+          + "  Integer count;\n"
+          + "  Status status;\n"
+          + "  Customer customer;\n"
+          + "  List<Line> lines;\n"
+          + "  List<List<String>> tags;\n"
+          + "  Object extra;\n"
+          + "  Map<String, Object> attributes;\n"
+          + "  transient int ignored;\n"
+          + "  static int alsoIgnored;\n"
+          + "  public enum Status { NEW, DONE }\n"
+          + "  @net.readmarks.jsono.bind.JsonBindable\n"
+          + "  public static class Line {\n"
+          + "    String sku;\n"
+          + "    short n;\n"
+          + "    List<Line> parts;\n"
+          + "  }\n"
+          + "}\n";
+  private static final String BASE = "package sample;\n"
+          + "public class Base {\n"
+          + "  String note;\n"
+          + "}\n";
+  private static final String CUSTOMER = "package sample;\n"
+          + "@net.readmarks.jsono.bind.JsonBindable\n"
+          + "class Customer {\n"
+          + "  String name;\n"
+          + "  Customer() {}\n"
+          + "  Customer(String name) { this.name = name; }\n"
+          + "}\n";
+
+  private static final String JSON = "{\"id\": 9007199254740993, \"quantity\": 3, \"price\": 2, \"discount\": 0.5,"
+          + " \"paid\": false, \"count\": 4, \"status\": \"DONE\", \"note\": \"n\", \"unknown\": [{\"id\": 1}],"
+          + " \"customer\": {\"name\": \"c\"}, \"ignored\": 5,"
+          + " \"lines\": [{\"sku\": \"a\", \"n\": 1, \"parts\": [{\"sku\": \"b\"}]}, {\"n\": 2, \"parts\": null}],"
+          + " \"tags\": [[\"x\"], []], \"extra\": [1, {\"k\": true}], \"attributes\": {\"a\": \"b\"}}"
+          + " {\"extra\": \"text\", \"paid\": null}";
+
+  private static JavaFileObject source(String name, String code) {
+    return new SimpleJavaFileObject(URI.create("string:///sample/" + name + ".java"), JavaFileObject.Kind.SOURCE) {
+      @Override
+      public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+        return code;
+      }
+    };
+  }
+
+  /**
+   * @return Diagnostics if compilation fails, null otherwise.
+   */
+  private List<Diagnostic<? extends JavaFileObject>> compile(File out, JavaFileObject... sources) throws Exception {
+    final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    try (StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics, null, null)) {
+      files.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(out));
+      files.setLocation(StandardLocation.SOURCE_OUTPUT, Collections.singletonList(out));
+      final JavaCompiler.CompilationTask task = compiler.getTask(null, files, diagnostics,
+              Arrays.asList("-classpath", System.getProperty("java.class.path")), null, Arrays.asList(sources));
+      task.setProcessors(Collections.singletonList(new BindingProcessor()));
+      return task.call() ? null : diagnostics.getDiagnostics();
+    }
+  }
+
+  /**
+   * @return Bound fields of an object as a map, nested objects are converted as well.
+   */
+  private static Object dump(Object x) throws IllegalAccessException {
+    if (x instanceof List) {
+      final List<Object> result = new ArrayList<>();
+      for (Object y : (List<?>) x) {
+        result.add(dump(y));
+      }
+      return result;
+    } else if (x == null || !x.getClass().getName().startsWith("sample.") || x.getClass().isEnum()) {
+      return x;
+    }
+    final Map<String, Object> result = new LinkedHashMap<>();
+    for (Class<?> c = x.getClass(); c != Object.class; c = c.getSuperclass()) {
+      for (Field f : c.getDeclaredFields()) {
+        if (!Modifier.isStatic(f.getModifiers())) {
+          f.setAccessible(true);
+          result.put(f.getName(), dump(f.get(x)));
+        }
+      }
+    }
+    return result;
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void generateHandlers() throws Exception {
+    final File out = folder.newFolder();
+    assertEquals(null, compile(out, source("Order", ORDER), source("Base", BASE), source("Customer", CUSTOMER)));
+    assertTrue(new File(out, "sample/Order_JsonHandler.java").exists());
+    assertTrue(new File(out, "sample/Order_Line_JsonHandler.java").exists());
+    assertFalse(new File(out, "sample/Base_JsonHandler.java").exists());
+
+    try (URLClassLoader loader = new URLClassLoader(new URL[]{out.toURI().toURL()}, getClass().getClassLoader())) {
+      final Class<?> orderClass = loader.loadClass("sample.Order");
+      final List<Object> generated = new ArrayList<>();
+      final EventHandler handler = (EventHandler) loader.loadClass("sample.Order_JsonHandler")
+              .getConstructor(Consumer.class).newInstance((Consumer<Object>) generated::add);
+      final FlatJsonParser parser = FlatJsonParser.makeDefault(handler);
+      ((Binder<?>) handler).setParser(parser);
+      parser.parseNext(JSON);
+      parser.end();
+
+      final List<Object> reflective = new ArrayList<>();
+      final FlatJsonParser reflectiveParser = FlatJsonParser.makeDefault(new Binder<>((Class<Object>) orderClass, reflective::add));
+      reflectiveParser.parseNext(JSON);
+      reflectiveParser.end();
+
+      assertEquals(2, generated.size());
+      assertEquals(dump(reflective), dump(generated));
+      final Map<String, Object> order = (Map<String, Object>) dump(generated.get(0));
+      assertEquals(9007199254740993L, order.get("id"));
+      assertEquals(0.5f, order.get("discount"));
+      assertEquals("n", order.get("note"));
+      assertEquals(Collections.singletonMap("name", "c"), order.get("customer"));
+      assertEquals(Arrays.asList(Collections.singletonList("x"), Collections.emptyList()), order.get("tags"));
+      assertEquals((short) 2, ((Map<String, Object>) ((List<?>) order.get("lines")).get(1)).get("n"));
+      assertEquals(true, ((Map<String, Object>) dump(generated.get(1))).get("paid"));
+    }
+  }
+
+  @Test
+  public void rejectUnsupportedFields() throws Exception {
+    final String privateField = "package sample;\n"
+            + "@net.readmarks.jsono.bind.JsonBindable\n"
+            + "public class Bad {\n"
+            + "  private int id;\n"
+            + "}\n";
+    final String unboundType = "package sample;\n"
+            + "@net.readmarks.jsono.bind.JsonBindable\n"
+            + "public class Bad {\n"
+            + "  Thread thread;\n"
+            + "}\n";
+    final String noConstructor = "package sample;\n"
+            + "@net.readmarks.jsono.bind.JsonBindable\n"
+            + "public class Bad {\n"
+            + "  Bad(int x) {}\n"
+            + "}\n";
+    for (String code : Arrays.asList(privateField, unboundType, noConstructor)) {
+      final List<Diagnostic<? extends JavaFileObject>> errors = compile(folder.newFolder(), source("Bad", code));
+      assertTrue(code, errors != null && !errors.isEmpty());
+    }
+  }
+}
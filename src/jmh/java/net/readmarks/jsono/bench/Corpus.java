@@ -0,0 +1,174 @@
+package net.readmarks.jsono.bench;
+
+import java.util.Random;
+
+/**
+ * Generated benchmark documents, each about 1MB. Shapes follow common JSON benchmark corpora,
+ * content is deterministic so results are comparable between runs.
+ */
+public enum Corpus {
+  /**
+   * Like twitter.json: array of status objects with text, nested user objects, few numbers.
+   */
+  TWITTER {
+    @Override
+    void generate(Random random, StringBuilder out) {
+      out.append("{\"statuses\": [");
+      for (int i = 0; out.length() < SIZE; i++) {
+        out.append(i == 0 ? "" : ", ").append("{\"id\": ").append(500000000000000000L + random.nextInt(1 << 30))
+                .append(", \"text\": ");
+        string(random, 40 + random.nextInt(100), out);
+        out.append(", \"truncated\": ").append(random.nextBoolean())
+                .append(", \"in_reply_to_status_id\": null, \"user\": {\"id\": ").append(random.nextInt(1 << 30))
+                .append(", \"name\": ");
+        string(random, 5 + random.nextInt(15), out);
+        out.append(", \"description\": ");
+        string(random, random.nextInt(160), out);
+        out.append(", \"followers_count\": ").append(random.nextInt(100000))
+                .append(", \"verified\": false, \"lang\": \"ja\"}, \"entities\": {\"hashtags\": [], \"urls\": [")
+                .append("{\"url\": \"http://t.co/").append(Integer.toHexString(random.nextInt())).append("\", \"indices\": [")
+                .append(random.nextInt(50)).append(", ").append(50 + random.nextInt(50)).append("]}]}")
+                .append(", \"retweet_count\": ").append(random.nextInt(1000)).append(", \"favorited\": false}");
+      }
+      out.append("]}");
+    }
+  },
+  /**
+   * Like citm_catalog.json: maps keyed by numeric ids, arrays of small integers, many repeated keys.
+   */
+  CITM {
+    @Override
+    void generate(Random random, StringBuilder out) {
+      out.append("{\"events\": {");
+      for (int i = 0; out.length() < SIZE; i++) {
+        final int id = 138586341 + i;
+        out.append(i == 0 ? "" : ", ").append('"').append(id).append("\": {\"description\": null, \"id\": ").append(id)
+                .append(", \"logo\": \"/images/UE0AAAAACEKo6QAAAAZDSVRN\", \"name\": ");
+        string(random, 10 + random.nextInt(30), out);
+        out.append(", \"subTopicIds\": [");
+        for (int j = 0, n = 1 + random.nextInt(5); j < n; j++) {
+          out.append(j == 0 ? "" : ", ").append(337184262 + random.nextInt(100));
+        }
+        out.append("], \"subjectCode\": null, \"subtitle\": null, \"topicIds\": [324846099, 107888604]}");
+      }
+      out.append("}}");
+    }
+  },
+  /**
+   * Like canada.json: deeply nested arrays of coordinate pairs.
+   */
+  CANADA {
+    @Override
+    void generate(Random random, StringBuilder out) {
+      out.append("{\"type\": \"FeatureCollection\", \"features\": [{\"type\": \"Feature\", \"geometry\": ")
+              .append("{\"type\": \"Polygon\", \"coordinates\": [");
+      for (int i = 0; out.length() < SIZE; i++) {
+        out.append(i == 0 ? "[" : "], [");
+        for (int j = 0; j < 100; j++) {
+          out.append(j == 0 ? "" : ", ").append('[').append(-65 - random.nextDouble() * 10)
+                  .append(", ").append(43 + random.nextDouble() * 10).append(']');
+        }
+      }
+      out.append("]]}}]}");
+    }
+  },
+  /**
+   * Array of integers and decimal numbers.
+   */
+  NUMBERS {
+    @Override
+    void generate(Random random, StringBuilder out) {
+      out.append('[');
+      for (int i = 0; out.length() < SIZE; i++) {
+        out.append(i == 0 ? "" : ", ");
+        if (i % 2 == 0) {
+          out.append(random.nextLong() >> random.nextInt(64));
+        } else {
+          out.append(random.nextInt(1000000) / 1000.0);
+        }
+      }
+      out.append(']');
+    }
+  },
+  /**
+   * Array of long strings, some with escapes and non-ASCII chars.
+   */
+  STRINGS {
+    @Override
+    void generate(Random random, StringBuilder out) {
+      out.append('[');
+      for (int i = 0; out.length() < SIZE; i++) {
+        out.append(i == 0 ? "" : ", ");
+        string(random, 100 + random.nextInt(2000), out);
+      }
+      out.append(']');
+    }
+  },
+  /**
+   * Maps and arrays nested 500 levels deep, repeatedly.
+   */
+  DEEP {
+    @Override
+    void generate(Random random, StringBuilder out) {
+      out.append('[');
+      for (int i = 0; out.length() < SIZE; i++) {
+        out.append(i == 0 ? "" : ", ");
+        for (int j = 0; j < 250; j++) {
+          out.append("{\"a\": [").append(j).append(", ");
+        }
+        out.append("null");
+        for (int j = 0; j < 250; j++) {
+          out.append("]}");
+        }
+      }
+      out.append(']');
+    }
+  },
+  /**
+   * Newline delimited small documents.
+   */
+  NDJSON {
+    @Override
+    void generate(Random random, StringBuilder out) {
+      for (int i = 0; out.length() < SIZE; i++) {
+        out.append("{\"id\": ").append(i).append(", \"type\": \"click\", \"ts\": ")
+                .append(1500000000000L + random.nextInt(1 << 30)).append(", \"score\": ").append(random.nextDouble())
+                .append(", \"tags\": [\"a\", \"b\"], \"user\": ");
+        string(random, 8, out);
+        out.append("}\n");
+      }
+    }
+  };
+
+  static final int SIZE = 1 << 20;
+
+  abstract void generate(Random random, StringBuilder out);
+
+  public String text() {
+    final StringBuilder out = new StringBuilder(SIZE + 4096);
+    generate(new Random(ordinal()), out);
+    return out.toString();
+  }
+
+  /**
+   * Appends a quoted string, mostly ASCII words with occasional escapes and non-ASCII chars.
+   */
+  private static void string(Random random, int length, StringBuilder out) {
+    out.append('"');
+    for (int i = 0; i < length; i++) {
+      final int r = random.nextInt(100);
+      if (r < 15) {
+        out.append(' ');
+      } else if (r < 17) {
+        out.append("\\n");
+      } else if (r < 18) {
+        out.append("\\u00e9");
+      } else if (r < 21) {
+        out.append((char) ('\u3041' + random.nextInt(80)));
+      } else {
+        out.append((char) ('a' + random.nextInt(26)));
+      }
+    }
+    out.append('"');
+  }
+}
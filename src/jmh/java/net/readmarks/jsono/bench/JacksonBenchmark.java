@@ -0,0 +1,96 @@
+package net.readmarks.jsono.bench;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads all tokens of a corpus document with Jackson streaming parsers: the non-blocking one for bytes
+ * (closest to {@link net.readmarks.jsono.FlatJsonParser}) and the blocking one for chars.
+ * Values are read as {@link JsonoBenchmark} with {@code STREAMING} handler receives them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class JacksonBenchmark {
+  @Param
+  public Corpus corpus;
+
+  @Param
+  public JsonoBenchmark.Input input;
+
+  private final JsonFactory factory = new JsonFactory();
+  private byte[] bytes;
+  private char[] chars;
+
+  @Setup
+  public void setUp() {
+    final String text = corpus.text();
+    bytes = text.getBytes(StandardCharsets.UTF_8);
+    chars = text.toCharArray();
+  }
+
+  @Benchmark
+  public void parse(Blackhole blackhole) throws IOException {
+    final JsonParser parser;
+    if (input == JsonoBenchmark.Input.BYTES) {
+      parser = factory.createNonBlockingByteArrayParser();
+      final ByteArrayFeeder feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+      feeder.feedInput(bytes, 0, bytes.length);
+      feeder.endOfInput();
+    } else {
+      parser = factory.createParser(chars, 0, chars.length);
+    }
+    try {
+      readTokens(parser, blackhole);
+    } finally {
+      parser.close();
+    }
+  }
+
+  private static void readTokens(JsonParser parser, Blackhole blackhole) throws IOException {
+    JsonToken token;
+    while ((token = parser.nextToken()) != null) {
+      switch (token) {
+        case FIELD_NAME:
+          blackhole.consume(parser.getCurrentName());
+          break;
+        case VALUE_STRING:
+          blackhole.consume(parser.getText());
+          break;
+        case VALUE_NUMBER_INT:
+          blackhole.consume(parser.getLongValue());
+          break;
+        case VALUE_NUMBER_FLOAT:
+          blackhole.consume(parser.getDoubleValue());
+          break;
+        case VALUE_TRUE:
+        case VALUE_FALSE:
+          blackhole.consume(parser.getBooleanValue());
+          break;
+        default:
+          blackhole.consume(token);
+      }
+    }
+  }
+}
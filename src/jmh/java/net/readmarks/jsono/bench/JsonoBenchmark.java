@@ -0,0 +1,139 @@
+package net.readmarks.jsono.bench;
+
+import net.readmarks.jsono.EventHandler;
+import net.readmarks.jsono.FlatJsonParser;
+import net.readmarks.jsono.handler.SimpleDeserializer;
+import net.readmarks.jsono.handler.StreamingHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses a corpus document with {@link FlatJsonParser} (configured as by {@code makeDefault()}).
+ * Compare with {@link JacksonBenchmark} of the same corpus and input.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class JsonoBenchmark {
+  public enum Handler {
+    /**
+     * Receives events and does nothing, measures the parser alone.
+     */
+    NOOP,
+    /**
+     * {@link StreamingHandler}, values are boxed.
+     */
+    STREAMING,
+    /**
+     * {@link SimpleDeserializer}, builds maps and lists.
+     */
+    DESERIALIZER
+  }
+
+  public enum Input {
+    BYTES,
+    CHARS
+  }
+
+  @Param
+  public Corpus corpus;
+
+  @Param
+  public Handler handler;
+
+  @Param
+  public Input input;
+
+  private byte[] bytes;
+  private char[] chars;
+  private FlatJsonParser parser;
+
+  @Setup
+  public void setUp(Blackhole blackhole) {
+    final String text = corpus.text();
+    bytes = text.getBytes(StandardCharsets.UTF_8);
+    chars = text.toCharArray();
+    parser = FlatJsonParser.makeDefault(handler(blackhole));
+  }
+
+  private EventHandler handler(Blackhole blackhole) {
+    switch (handler) {
+      case NOOP:
+        return new NoopHandler();
+      case STREAMING:
+        return new StreamingHandler(blackhole::consume);
+      case DESERIALIZER:
+        return new SimpleDeserializer(blackhole::consume);
+      default:
+        throw new IllegalArgumentException("Unexpected handler " + handler);
+    }
+  }
+
+  @Benchmark
+  public void parse() {
+    if (input == Input.BYTES) {
+      parser.parseNext(bytes, 0, bytes.length);
+    } else {
+      parser.parseNext(chars, 0, chars.length);
+    }
+    parser.end();
+  }
+
+  private static final class NoopHandler implements EventHandler {
+    @Override
+    public void onValue(Object x) {
+    }
+
+    @Override
+    public void onLong(long x) {
+    }
+
+    @Override
+    public void onDouble(double x) {
+    }
+
+    @Override
+    public void onBoolean(boolean x) {
+    }
+
+    @Override
+    public void onNull() {
+    }
+
+    @Override
+    public void onString(CharSequence x) {
+    }
+
+    @Override
+    public void onArray() {
+    }
+
+    @Override
+    public void onMap() {
+    }
+
+    @Override
+    public void onMapKey() {
+    }
+
+    @Override
+    public void onEnd() {
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package net.readmarks.jsono;
+
+/**
+ * Receives events from {@link FlatJsonParser} in batches, see {@link FlatJsonParser#setBatchHandler(BatchHandler)}.
+ */
+public interface BatchHandler {
+  /**
+   * @param batch Next events. Parser reuses the batch after the call returns.
+   */
+  void onBatch(EventBatch batch);
+
+  /**
+   * Whether batches may contain {@link EventBatch#STRING_CHUNK} events, see {@link EventHandler#acceptsStringChunks()}.
+   */
+  default boolean acceptsStringChunks() {
+    return false;
+  }
+
+  /**
+   * Parser discarded its state (see {@link IncrementalParser#reset()}).
+   */
+  default void onReset() {
+  }
+}
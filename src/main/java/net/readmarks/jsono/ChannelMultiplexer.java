@@ -0,0 +1,267 @@
+package net.readmarks.jsono;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Parses JSON streams of many socket connections on one thread.
+ * Each registered channel gets its own {@link FlatJsonParser} that delivers events to the channel's handler.
+ * When a channel is readable, available bytes are read into a direct buffer shared by all channels of
+ * the multiplexer and are parsed right away, so the only per connection state is the parser's.
+ * <p>
+ * Usage:
+ * <pre>
+ *   final ChannelMultiplexer multiplexer = new ChannelMultiplexer();
+ *   multiplexer.listen(serverChannel, channel -&gt; new SimpleDeserializer(documents::add));
+ *   new Thread(multiplexer).start();
+ *   ...
+ *   multiplexer.close();
+ * </pre>
+ * To use several threads create a multiplexer per thread and distribute connections between them.
+ * <p>
+ * A channel is closed when its peer closes the connection (then {@link FlatJsonParser#end()} is called),
+ * on I/O error, or if its input is not valid JSON or the handler throws.
+ * See {@link #setCloseListener(BiConsumer)}.
+ * <p>
+ * Errors of server channels affect only the failing channel, see {@link #setServerErrorListener(BiConsumer)}.
+ * After a failed accept (e.g. when the process is out of file descriptors) the server channel is not selected
+ * for {@link #ACCEPT_RETRY_MILLIS}, while established connections are still served.
+ */
+public class ChannelMultiplexer implements Runnable, Closeable {
+  /**
+   * Pause of accepting connections after a failed accept.
+   */
+  public static final long ACCEPT_RETRY_MILLIS = 100;
+
+  private final Selector selector;
+  /**
+   * Registrations requested from other threads.
+   */
+  private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+  private volatile boolean closed = false;
+  private int bufferSize = 1 << 16;
+  private BiConsumer<SocketChannel, Throwable> closeListener = (channel, error) -> {
+  };
+  private BiConsumer<ServerSocketChannel, Throwable> serverErrorListener = (channel, error) -> {
+  };
+  /**
+   * Keys of server channels that do not accept connections after an error, accessed only by the loop thread.
+   */
+  private final List<SelectionKey> pausedKeys = new ArrayList<>();
+  private long resumeAcceptAt;
+
+  public ChannelMultiplexer() throws IOException {
+    this.selector = Selector.open();
+  }
+
+  /**
+   * @param size Size of the read buffer in bytes. Should be set before {@link #run()}.
+   */
+  public void setBufferSize(int size) {
+    if (size <= 0) {
+      throw new IllegalArgumentException("Buffer size should be positive. size=" + size + ".");
+    }
+    this.bufferSize = size;
+  }
+
+  /**
+   * @param listener Is called on the multiplexer thread after a channel is closed
+   *                 with the error that caused it, or null if the peer closed the connection after valid input
+   *                 or the multiplexer is closed.
+   */
+  public void setCloseListener(BiConsumer<SocketChannel, Throwable> listener) {
+    this.closeListener = listener;
+  }
+
+  /**
+   * @param listener Is called on the multiplexer thread when a server channel can not be listened to
+   *                 or accepting a connection fails.
+   */
+  public void setServerErrorListener(BiConsumer<ServerSocketChannel, Throwable> listener) {
+    this.serverErrorListener = listener;
+  }
+
+  /**
+   * Starts parsing input of the channel. Can be called from any thread.
+   *
+   * @param channel Connected channel, it is switched to non-blocking mode.
+   * @param handler Will receive events of the channel's input on the multiplexer thread.
+   */
+  public void register(SocketChannel channel, EventHandler handler) {
+    enqueue(() -> {
+      try {
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ, FlatJsonParser.makeDefault(handler));
+      } catch (IOException | RuntimeException e) {
+        close(channel, e);
+      }
+    });
+  }
+
+  /**
+   * Accepts connections of the server channel and registers them. Can be called from any thread.
+   * If the channel can not be registered the error is reported to the server error listener.
+   *
+   * @param handlers Creates handler for an accepted channel.
+   */
+  public void listen(ServerSocketChannel server, Function<SocketChannel, EventHandler> handlers) {
+    enqueue(() -> {
+      try {
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT, handlers);
+      } catch (IOException | RuntimeException e) {
+        serverErrorListener.accept(server, e);
+      }
+    });
+  }
+
+  private void enqueue(Runnable registration) {
+    if (closed) {
+      throw new IllegalStateException("Multiplexer is closed.");
+    }
+    pending.add(registration);
+    selector.wakeup();
+  }
+
+  /**
+   * Runs the selection loop on the calling thread until the multiplexer is closed.
+   * Closes all registered channels before return.
+   */
+  @Override
+  public void run() {
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.nativeOrder());
+    try {
+      while (!closed) {
+        if (pausedKeys.isEmpty()) {
+          selector.select();
+        } else {
+          selector.select(Math.max(1, resumeAcceptAt - System.currentTimeMillis()));
+          resumeAccepting();
+        }
+        Runnable registration;
+        while ((registration = pending.poll()) != null) {
+          registration.run();
+        }
+        for (SelectionKey key : selector.selectedKeys()) {
+          if (!key.isValid()) {
+            continue;
+          }
+          if (key.isAcceptable()) {
+            accept(key);
+          } else if (key.isReadable()) {
+            read((SocketChannel) key.channel(), (FlatJsonParser) key.attachment(), buffer);
+          }
+        }
+        selector.selectedKeys().clear();
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Selection failed.", e);
+    } finally {
+      for (SelectionKey key : selector.keys()) {
+        if (key.isValid() && key.channel() instanceof SocketChannel) {
+          close((SocketChannel) key.channel(), null);
+        }
+      }
+      try {
+        selector.close();
+      } catch (IOException e) {
+        // Nothing to do
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void accept(SelectionKey key) {
+    final Function<SocketChannel, EventHandler> handlers = (Function<SocketChannel, EventHandler>) key.attachment();
+    final ServerSocketChannel server = (ServerSocketChannel) key.channel();
+    while (true) {
+      final SocketChannel channel;
+      try {
+        channel = server.accept();
+      } catch (IOException | RuntimeException e) {
+        if (server.isOpen()) {
+          pauseAccepting(key);
+        } else {
+          key.cancel();
+        }
+        serverErrorListener.accept(server, e);
+        return;
+      }
+      if (channel == null) {
+        return;
+      }
+      try {
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ, FlatJsonParser.makeDefault(handlers.apply(channel)));
+      } catch (IOException | RuntimeException e) {
+        close(channel, e);
+      }
+    }
+  }
+
+  private void pauseAccepting(SelectionKey key) {
+    key.interestOps(0);
+    if (pausedKeys.isEmpty()) {
+      resumeAcceptAt = System.currentTimeMillis() + ACCEPT_RETRY_MILLIS;
+    }
+    pausedKeys.add(key);
+  }
+
+  private void resumeAccepting() {
+    if (System.currentTimeMillis() >= resumeAcceptAt) {
+      for (SelectionKey key : pausedKeys) {
+        if (key.isValid()) {
+          key.interestOps(SelectionKey.OP_ACCEPT);
+        }
+      }
+      pausedKeys.clear();
+    }
+  }
+
+  private void read(SocketChannel channel, FlatJsonParser parser, ByteBuffer buffer) {
+    buffer.clear();
+    try {
+      if (channel.read(buffer) < 0) {
+        parser.end();
+        close(channel, null);
+      } else {
+        buffer.flip();
+        parser.parseNext(buffer);
+      }
+    } catch (IOException | RuntimeException e) {
+      close(channel, e);
+    }
+  }
+
+  private void close(SocketChannel channel, Throwable error) {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      if (error == null) {
+        error = e;
+      }
+    }
+    closeListener.accept(channel, error);
+  }
+
+  /**
+   * Stops the selection loop. Can be called from any thread.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    selector.wakeup();
+  }
+}
@@ -0,0 +1,311 @@
+package net.readmarks.jsono;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Sequence of parser events stored in columns, see {@link BatchHandler}.
+ * Event {@code i} has type {@code types()[i]}, its value is in one of the other columns depending on the type:
+ * <ul>
+ * <li>{@link #LONG}, {@link #BOOLEAN} (0 or 1): {@link #longs()};</li>
+ * <li>{@link #DOUBLE}: {@link #doubles()};</li>
+ * <li>{@link #STRING}, {@link #STRING_CHUNK}: {@link #stringOffset(int)} and {@link #stringLength(int)}
+ * in {@link #chars()};</li>
+ * <li>{@link #KEY} (with a key table, see {@link FlatJsonParser#setKeyTable(KeyTable)}): key id in {@link #longs()},
+ * canonical key in {@link #value(int)};</li>
+ * <li>{@link #VALUE} (numbers that do not fit long or double): {@link #value(int)}.</li>
+ * </ul>
+ * Column arrays may be longer than {@link #size()}, they are reused for following batches.
+ */
+public final class EventBatch {
+  public static final byte ARRAY = 0;
+  public static final byte MAP = 1;
+  public static final byte MAP_KEY = 2;
+  public static final byte END = 3;
+  public static final byte LONG = 4;
+  public static final byte DOUBLE = 5;
+  public static final byte BOOLEAN = 6;
+  public static final byte NULL = 7;
+  public static final byte STRING = 8;
+  public static final byte KEY = 9;
+  public static final byte STRING_CHUNK = 10;
+  public static final byte STRING_END = 11;
+  public static final byte VALUE = 12;
+
+  private final byte[] types;
+  private final long[] longs;
+  private final double[] doubles;
+  private final int[] offsets;
+  private final int[] lengths;
+  private final Object[] values;
+  private char[] chars;
+  private int size = 0;
+  private int charCount = 0;
+
+  EventBatch(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity should be positive. capacity=" + capacity + ".");
+    }
+    types = new byte[capacity];
+    longs = new long[capacity];
+    doubles = new double[capacity];
+    offsets = new int[capacity];
+    lengths = new int[capacity];
+    values = new Object[capacity];
+    chars = new char[capacity * 16];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public byte type(int i) {
+    return types[i];
+  }
+
+  public byte[] types() {
+    return types;
+  }
+
+  public long[] longs() {
+    return longs;
+  }
+
+  public double[] doubles() {
+    return doubles;
+  }
+
+  public char[] chars() {
+    return chars;
+  }
+
+  public long longValue(int i) {
+    return longs[i];
+  }
+
+  public double doubleValue(int i) {
+    return doubles[i];
+  }
+
+  public boolean booleanValue(int i) {
+    return longs[i] != 0;
+  }
+
+  public int keyId(int i) {
+    return (int) longs[i];
+  }
+
+  public Object value(int i) {
+    return values[i];
+  }
+
+  public int stringOffset(int i) {
+    return offsets[i];
+  }
+
+  public int stringLength(int i) {
+    return lengths[i];
+  }
+
+  /**
+   * @return Value of a {@link #STRING}, {@link #STRING_CHUNK} or {@link #KEY} event.
+   */
+  public String stringValue(int i) {
+    return types[i] == KEY ? (String) values[i] : new String(chars, offsets[i], lengths[i]);
+  }
+
+  /**
+   * Passes events of the batch to a handler, e.g. to process a part of events with existing handlers.
+   * If the batch handler accepts string chunks, so should this handler.
+   */
+  public void replay(EventHandler handler) {
+    for (int i = 0; i < size; i++) {
+      switch (types[i]) {
+        case ARRAY:
+          handler.onArray();
+          break;
+        case MAP:
+          handler.onMap();
+          break;
+        case MAP_KEY:
+          handler.onMapKey();
+          break;
+        case END:
+          handler.onEnd();
+          break;
+        case LONG:
+          handler.onLong(longs[i]);
+          break;
+        case DOUBLE:
+          handler.onDouble(doubles[i]);
+          break;
+        case BOOLEAN:
+          handler.onBoolean(longs[i] != 0);
+          break;
+        case NULL:
+          handler.onNull();
+          break;
+        case STRING:
+          handler.onString(CharBuffer.wrap(chars, offsets[i], lengths[i]));
+          break;
+        case KEY:
+          handler.onKey((int) longs[i], (String) values[i]);
+          break;
+        case STRING_CHUNK:
+          handler.onStringChunk(CharBuffer.wrap(chars, offsets[i], lengths[i]));
+          break;
+        case STRING_END:
+          handler.onStringEnd();
+          break;
+        case VALUE:
+          handler.onValue(values[i]);
+          break;
+        default:
+          throw new IllegalStateException("Unexpected event type " + types[i] + ".");
+      }
+    }
+  }
+
+  /**
+   * Fills the batch from parser events, passes it to the batch handler when it is full or is flushed.
+   */
+  static final class Writer implements EventHandler {
+    private final EventBatch batch;
+    private final BatchHandler handler;
+
+    Writer(int capacity, BatchHandler handler) {
+      this.batch = new EventBatch(capacity);
+      this.handler = handler;
+    }
+
+    void flush() {
+      if (batch.size > 0) {
+        handler.onBatch(batch);
+        clear();
+      }
+    }
+
+    /**
+     * Empties the batch, dropping references to values of delivered events.
+     */
+    private void clear() {
+      Arrays.fill(batch.values, 0, batch.size, null);
+      batch.size = 0;
+      batch.charCount = 0;
+    }
+
+    private int add(byte type) {
+      if (batch.size == batch.types.length) {
+        flush();
+      }
+      batch.types[batch.size] = type;
+      return batch.size++;
+    }
+
+    private void addChars(byte type, CharSequence x) {
+      final int length = x.length();
+      if (batch.size == batch.types.length || batch.charCount + length > batch.chars.length) {
+        flush();
+        if (length > batch.chars.length) {
+          batch.chars = new char[Math.max(length, batch.chars.length * 2)];
+        }
+      }
+      final int i = add(type);
+      final int offset = batch.charCount;
+      if (x instanceof StringBuilder) {
+        ((StringBuilder) x).getChars(0, length, batch.chars, offset);
+      } else if (x instanceof String) {
+        ((String) x).getChars(0, length, batch.chars, offset);
+      } else {
+        for (int j = 0; j < length; j++) {
+          batch.chars[offset + j] = x.charAt(j);
+        }
+      }
+      batch.offsets[i] = offset;
+      batch.lengths[i] = length;
+      batch.charCount += length;
+    }
+
+    @Override
+    public void onValue(Object x) {
+      if (x == null) {
+        onNull();
+      } else {
+        batch.values[add(VALUE)] = x;
+      }
+    }
+
+    @Override
+    public void onLong(long x) {
+      batch.longs[add(LONG)] = x;
+    }
+
+    @Override
+    public void onDouble(double x) {
+      batch.doubles[add(DOUBLE)] = x;
+    }
+
+    @Override
+    public void onBoolean(boolean x) {
+      batch.longs[add(BOOLEAN)] = x ? 1 : 0;
+    }
+
+    @Override
+    public void onNull() {
+      add(NULL);
+    }
+
+    @Override
+    public void onString(CharSequence x) {
+      addChars(STRING, x);
+    }
+
+    @Override
+    public void onKey(int keyId, String key) {
+      final int i = add(KEY);
+      batch.longs[i] = keyId;
+      batch.values[i] = key;
+    }
+
+    @Override
+    public boolean acceptsStringChunks() {
+      return handler.acceptsStringChunks();
+    }
+
+    @Override
+    public void onStringChunk(CharSequence chunk) {
+      addChars(STRING_CHUNK, chunk);
+    }
+
+    @Override
+    public void onStringEnd() {
+      add(STRING_END);
+    }
+
+    @Override
+    public void onArray() {
+      add(ARRAY);
+    }
+
+    @Override
+    public void onMap() {
+      add(MAP);
+    }
+
+    @Override
+    public void onMapKey() {
+      add(MAP_KEY);
+    }
+
+    @Override
+    public void onEnd() {
+      add(END);
+    }
+
+    @Override
+    public void onReset() {
+      clear();
+      handler.onReset();
+    }
+  }
+}
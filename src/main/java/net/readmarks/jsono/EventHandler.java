@@ -2,6 +2,10 @@ package net.readmarks.jsono;
 
 /**
  * Receives events from JSON parser.
+ * <p>
+ * Parsers report scalar values through type specific methods ({@link #onLong(long)}, {@link #onDouble(double)},
+ * {@link #onBoolean(boolean)}, {@link #onNull()}, {@link #onString(CharSequence)}).
+ * By default these delegate to {@link #onValue(Object)}, override them to avoid boxing and copying of values.
  *
  * @see JsonParser
  */
@@ -11,6 +15,76 @@ public interface EventHandler {
    */
   void onValue(Object x);
 
+  /**
+   * Number without fraction and exponent parts.
+   */
+  default void onLong(long x) {
+    onValue(x);
+  }
+
+  /**
+   * Number with fraction or exponent part.
+   */
+  default void onDouble(double x) {
+    onValue(x);
+  }
+
+  default void onBoolean(boolean x) {
+    onValue(x);
+  }
+
+  default void onNull() {
+    onValue(null);
+  }
+
+  /**
+   * String value or map key.
+   *
+   * @param x Contents of the string. Parser may reuse this instance after the call returns,
+   *          so it should be copied (e.g. with toString()) if it is needed later.
+   */
+  default void onString(CharSequence x) {
+    onValue(x.toString());
+  }
+
+  /**
+   * Map key, called instead of {@link #onString(CharSequence)} for keys
+   * when the parser uses a {@link KeyTable} (see {@link FlatJsonParser#setKeyTable(KeyTable)}).
+   *
+   * @param keyId Id of the key in the table or {@link KeyTable#UNKNOWN} if the table is full.
+   * @param key   Canonical instance of the key.
+   */
+  default void onKey(int keyId, String key) {
+    onString(key);
+  }
+
+  /**
+   * Whether the handler receives long strings in parts, with {@link #onStringChunk(CharSequence)} and
+   * {@link #onStringEnd()} calls. Parsers that have string chunking enabled
+   * (see {@link FlatJsonParser#setStringChunkSize(int)}) pass whole strings to {@link #onString(CharSequence)}
+   * of handlers that return false. Handlers that override the chunk methods should return true,
+   * handlers that pass events on to other handlers should return true only if all of these do.
+   */
+  default boolean acceptsStringChunks() {
+    return false;
+  }
+
+  /**
+   * Part of a long string value. Only called if {@link #acceptsStringChunks()} returns true.
+   *
+   * @param chunk Next part of string contents. Parser may reuse this instance after the call returns.
+   */
+  default void onStringChunk(CharSequence chunk) {
+    throw new UnsupportedOperationException("String chunks are not accepted by " + getClass().getName());
+  }
+
+  /**
+   * End of string value that was delivered with {@link #onStringChunk(CharSequence)} calls.
+   */
+  default void onStringEnd() {
+    throw new UnsupportedOperationException("String chunks are not accepted by " + getClass().getName());
+  }
+
   /**
    * Start of an array. Subsequent calls to {@link #onValue(Object)} provide sequence of array values.
    */
@@ -23,7 +97,8 @@ public interface EventHandler {
   void onMap();
 
   /**
-   * Signals that next {@link #onValue(Object)} call will provide map key.
+   * Signals that next {@link #onValue(Object)} call (or its typed counterpart, {@link #onString(CharSequence)}
+   * or {@link #onKey(int, String)}) will provide map key.
    *
    * Tentative, might be removed in future versions.
    * It is possible to ignore this event and explicitly handle key/value interleaving.
@@ -34,4 +109,11 @@ public interface EventHandler {
    * End of most recent nested data structure (map or array).
    */
   void onEnd();
+
+  /**
+   * Parser discarded its state (see {@link IncrementalParser#reset()}).
+   * Stateful handlers should discard state of partially parsed input so they can be reused.
+   */
+  default void onReset() {
+  }
 }
@@ -0,0 +1,1294 @@
+package net.readmarks.jsono;
+
+import net.readmarks.jsono.JsonParser.ParseException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Incremental reactive non blocking JSON parser implemented as a flat state machine.
+ * Produces the same events as {@link JsonParser} but keeps its state in a primitive state code
+ * and an explicit stack of enclosing containers instead of allocating an object per token.
+ * Strings are accumulated in a buffer that is reused between tokens, numbers are validated and accumulated
+ * as they arrive,
+ * so once these buffers have grown to fit the input the parser does not allocate.
+ * Scalar values are reported with type specific {@link EventHandler} methods,
+ * strings are passed as the reused buffer.
+ * <p>
+ * Bulk input methods ({@link #parseNext(char[], int, int)}, {@link #parseNext(CharBuffer)})
+ * scan runs of whitespace, string bodies and number digits in tight loops.
+ * Tokens may still be split at any input boundary.
+ * <p>
+ * UTF-8 encoded input can be passed directly as bytes ({@link #parseNext(byte[], int, int)},
+ * {@link #parseNext(ByteBuffer)}). Structural characters are handled as ASCII bytes,
+ * only multi-byte sequences within string literals are decoded (and validated).
+ * A multi-byte sequence may be split between subsequent inputs. Whitespace and plain ASCII runs within strings
+ * are scanned 8 bytes at a time.
+ * <p>
+ * An instance can be reused for subsequent inputs with {@link #reset()}, its buffers are retained (see also
+ * {@link ParserPool}).
+ * Map keys can be matched against a {@link KeyTable}, see {@link #setKeyTable(KeyTable)}.
+ * Long strings can be delivered in chunks of bounded size, see {@link #setStringChunkSize(int)}.
+ * Handlers that need only a part of the document can skip values they are not interested in, see {@link #skipValue()}.
+ * Handlers that can not accept more events can stop parsing of buffer inputs, see {@link #suspend()}.
+ * <p>
+ * Unlike {@link JsonParser} this engine accepts only JSON whitespace (space, tab, CR and LF) between tokens
+ * and rejects empty array elements such as in "[1,]".
+ *
+ * @see JsonParser
+ * @see EventHandler
+ */
+public class FlatJsonParser implements IncrementalParser {
+
+  // Parser states
+  /** Between top-level values. */
+  private static final int DOC = 0;
+  /** Expecting a value after ',' in array or after ':' in map. */
+  private static final int VALUE = 1;
+  /** After '[', expecting first element or ']'. */
+  private static final int ARRAY_START = 2;
+  /** After array element, expecting ',' or ']'. */
+  private static final int ARRAY_NEXT = 3;
+  /** After '{', expecting first key or '}'. */
+  private static final int MAP_START = 4;
+  /** After ',' in map, expecting key. */
+  private static final int MAP_KEY = 5;
+  /** After map key, expecting ':'. */
+  private static final int MAP_COLON = 6;
+  /** After map value, expecting ',' or '}'. */
+  private static final int MAP_NEXT = 7;
+  private static final int STRING = 8;
+  private static final int STRING_ESCAPE = 9;
+  private static final int STRING_UNICODE = 10;
+  private static final int NUMBER = 11;
+  private static final int CONST = 12;
+  /** Within a multi-byte UTF-8 sequence inside a string. */
+  private static final int STRING_UTF8 = 13;
+  /** Within a skipped array or map, outside of strings. */
+  private static final int SKIP = 14;
+  /** Within a skipped string. */
+  private static final int SKIP_STRING = 15;
+  /** After '\\' in a skipped string. */
+  private static final int SKIP_ESCAPE = 16;
+  /** Within a skipped number or constant. */
+  private static final int SKIP_SCALAR = 17;
+
+  // Classes of ASCII chars
+  private static final byte C_OTHER = 0;
+  private static final byte C_WHITESPACE = 1;
+  private static final byte C_MAP_BEGIN = 2;
+  private static final byte C_MAP_END = 3;
+  private static final byte C_ARRAY_BEGIN = 4;
+  private static final byte C_ARRAY_END = 5;
+  private static final byte C_COMMA = 6;
+  private static final byte C_COLON = 7;
+  private static final byte C_QUOTE = 8;
+  private static final byte C_NUMBER = 9;
+  private static final byte C_CONST = 10;
+
+  private static final byte[] CHAR_CLASS = new byte[128];
+
+  static {
+    CHAR_CLASS[' '] = C_WHITESPACE;
+    CHAR_CLASS['\t'] = C_WHITESPACE;
+    CHAR_CLASS['\n'] = C_WHITESPACE;
+    CHAR_CLASS['\r'] = C_WHITESPACE;
+    CHAR_CLASS['{'] = C_MAP_BEGIN;
+    CHAR_CLASS['}'] = C_MAP_END;
+    CHAR_CLASS['['] = C_ARRAY_BEGIN;
+    CHAR_CLASS[']'] = C_ARRAY_END;
+    CHAR_CLASS[','] = C_COMMA;
+    CHAR_CLASS[':'] = C_COLON;
+    CHAR_CLASS['"'] = C_QUOTE;
+    CHAR_CLASS['-'] = C_NUMBER;
+    for (char ch = '0'; ch <= '9'; ch++) {
+      CHAR_CLASS[ch] = C_NUMBER;
+    }
+    CHAR_CLASS['t'] = C_CONST;
+    CHAR_CLASS['f'] = C_CONST;
+    CHAR_CLASS['n'] = C_CONST;
+  }
+
+  /**
+   * String buffer capacity that is kept when the parser is reset.
+   */
+  private static final int RETAINED_STRING_CAPACITY = 1 << 16;
+
+  private EventHandler eventHandler;
+  /**
+   * Collects events in batch mode, see {@link #setBatchHandler(BatchHandler, int)}.
+   */
+  private EventBatch.Writer batchWriter;
+
+  private int state = DOC;
+
+  /**
+   * States to return to after a value is completed in enclosing containers (ARRAY_NEXT or MAP_NEXT).
+   */
+  private int[] stack = new int[16];
+  /**
+   * Number of keys of maps in {@link #stack}.
+   */
+  private int[] mapSizes = new int[16];
+  private int depth = 0;
+
+  private int maxDepth = Integer.MAX_VALUE;
+  private int maxStringLength = Integer.MAX_VALUE;
+  private int maxMapSize = Integer.MAX_VALUE;
+  private long maxEvents = Long.MAX_VALUE;
+  private long maxDocumentLength = Long.MAX_VALUE;
+  /**
+   * Values and keys of current document.
+   */
+  private long events = 0;
+  /**
+   * Input position (in chars or bytes) of the last char of current document that fits its max length.
+   */
+  private long documentEnd = Long.MAX_VALUE;
+  /**
+   * Number of chars or bytes parsed so far.
+   */
+  private long position = 0;
+  /**
+   * Length of current string that has been delivered in chunks.
+   */
+  private long stringTotal;
+
+  private StringBuilder stringValue = new StringBuilder();
+  private boolean isKey;
+  /**
+   * Max length of string buffer before it is flushed as a chunk.
+   */
+  private int stringLimit;
+  /**
+   * Current string is delivered in chunks.
+   */
+  private boolean isChunked;
+  private int stringChunkSize = 0;
+  private KeyTable keyTable;
+  private int codePoint;
+  private int codePointDigits;
+  private int utf8Pending;
+  private int utf8Min;
+
+  private final NumberParser number = new NumberParser();
+
+  /**
+   * Number of following values in current container that should be skipped, see {@link #skipValues(int)}.
+   */
+  private int skipCount = 0;
+  /**
+   * Nesting depth within skipped value.
+   */
+  private int skipDepth;
+
+  /**
+   * Parsing is stopped by a handler, see {@link #suspend()}.
+   */
+  private boolean suspended = false;
+
+  private static final String TRUE = "true";
+  private static final String FALSE = "false";
+  private static final String NULL = "null";
+
+  private String constString;
+  private int constPos;
+
+  /**
+   * Used to copy input that is not an array of chars.
+   */
+  private char[] inputBuffer;
+
+  /**
+   * Used to append runs of ASCII bytes to the string buffer.
+   */
+  private final char[] asciiBuffer = new char[64];
+
+  /**
+   * Wraps most recently used byte array input.
+   */
+  private ByteBuffer wrappedBytes = ByteBuffer.allocate(0);
+
+  /**
+   * It is recommended to use {@link #makeDefault(EventHandler)} instead of this constructor.
+   *
+   * @param eventHandler Will receive parsed JSON events
+   */
+  public FlatJsonParser(EventHandler eventHandler) {
+    this.eventHandler = eventHandler;
+  }
+
+  /**
+   * Enables delivery of long string values in chunks of bounded size, so memory used by the parser
+   * for a string does not depend on its length. When a string value grows beyond the chunk size,
+   * its content is passed with subsequent {@link EventHandler#onStringChunk(CharSequence)} calls
+   * followed by {@link EventHandler#onStringEnd()}. Shorter strings and map keys are still
+   * reported with {@link EventHandler#onString(CharSequence)}.
+   * Handlers that do not accept chunks (see {@link EventHandler#acceptsStringChunks()}) receive whole strings,
+   * their length is bounded only by {@link ParserLimits#setMaxStringLength(int)}.
+   *
+   * @param size Chunk size in chars, 0 disables chunking (default).
+   */
+  public void setStringChunkSize(int size) {
+    if (size < 0) {
+      throw new IllegalArgumentException("Chunk size should not be negative. size=" + size + ".");
+    }
+    this.stringChunkSize = size;
+  }
+
+  /**
+   * Sets table of map keys. With a table map keys are reported with {@link EventHandler#onKey(int, String)}
+   * that receives canonical key instances and their ids instead of {@link EventHandler#onString(CharSequence)}.
+   *
+   * @param keyTable Table of keys, null to report keys as other strings (default).
+   */
+  public void setKeyTable(KeyTable keyTable) {
+    this.keyTable = keyTable;
+  }
+
+  public KeyTable getKeyTable() {
+    return keyTable;
+  }
+
+  /**
+   * Sets limits of input documents, see {@link ParserLimits}. Limits are checked with integer comparisons
+   * as values are parsed, so exceeding input fails before its values are accumulated.
+   */
+  public void setLimits(ParserLimits limits) {
+    maxDepth = limits.getMaxDepth();
+    maxStringLength = limits.getMaxStringLength();
+    maxMapSize = limits.getMaxMapSize();
+    maxEvents = limits.getMaxEvents();
+    maxDocumentLength = limits.getMaxDocumentLength();
+    number.setMaxLength(limits.getMaxNumberLength());
+  }
+
+  /**
+   * Same as {@link #setBatchHandler(BatchHandler, int)} with batches of up to 1024 events.
+   */
+  public void setBatchHandler(BatchHandler handler) {
+    setBatchHandler(handler, 1024);
+  }
+
+  /**
+   * Enables batch mode: events are collected in an {@link EventBatch} that is passed to the batch handler
+   * when it is full, at the end of each input passed to parseNext methods (except {@link #parseNext(char)}) and
+   * at {@link #end()}. The batch handler replaces the event handler, {@link #reset(EventHandler)} turns batch mode off.
+   * <p>
+   * The parser still makes a call per event to the batch writer. Batching saves per-event calls
+   * into user code: the batch handler is called once per batch and can process events in loops over batch columns.
+   *
+   * @param capacity Maximum number of events in a batch.
+   */
+  public void setBatchHandler(BatchHandler handler, int capacity) {
+    batchWriter = new EventBatch.Writer(capacity, handler);
+    eventHandler = batchWriter;
+  }
+
+  private void flushBatch() {
+    if (batchWriter != null) {
+      batchWriter.flush();
+    }
+  }
+
+  /**
+   * Skips next value of the input: no events are emitted for it, strings and numbers in it are not accumulated.
+   * Is intended to be called from {@link EventHandler} callbacks, e.g. from {@link EventHandler#onMapKey()}
+   * or after the key string is reported to skip value of the map entry, or from {@link EventHandler#onArray()}
+   * to skip first element of the array. If the next value is a map or an array it is skipped with all its contents.
+   * The request is discarded if current array or map ends before next value.
+   * <p>
+   * Skipped values are only scanned for brackets and string boundaries, their content is not validated.
+   */
+  public void skipValue() {
+    skipValues(1);
+  }
+
+  /**
+   * Skips given number of following values in current array or map (or of top-level values).
+   * Replaces previous skip request, 0 cancels it.
+   *
+   * @see #skipValue()
+   */
+  public void skipValues(int count) {
+    if (count < 0) {
+      throw new IllegalArgumentException("Count should not be negative. count=" + count + ".");
+    }
+    skipCount = count;
+  }
+
+  /**
+   * Stops parsing after current event. Is intended to be called from {@link EventHandler} callbacks
+   * by handlers that can not accept more events for now.
+   * Buffer inputs ({@link #parseNext(ByteBuffer)}, {@link #parseNext(CharBuffer)}) return leaving their position
+   * at the first unparsed element, so the rest of the buffer can be passed again after {@link #resume()}.
+   * Other input methods throw {@link IllegalStateException} if their input can not be parsed completely.
+   * <p>
+   * With {@link #parseNext(char)} an event may still follow the suspending one
+   * if the char both completes a number and closes a container.
+   * {@link #end()} is not affected.
+   */
+  public void suspend() {
+    suspended = true;
+  }
+
+  /**
+   * Allows parsing of subsequent inputs after {@link #suspend()}.
+   */
+  public void resume() {
+    suspended = false;
+  }
+
+  public boolean isSuspended() {
+    return suspended;
+  }
+
+  @Override
+  public void parseNext(final char ch) {
+    if (suspended) {
+      throw new IllegalStateException("Parser is suspended.");
+    }
+    checkDocumentLength(position, ch);
+    if (state == DOC) {
+      startDocument(position);
+    }
+    position++;
+    parseChar(ch);
+  }
+
+  private void parseChar(final char ch) {
+    switch (state) {
+      case STRING:
+        parseString(ch);
+        break;
+      case STRING_ESCAPE:
+        parseEscape(ch);
+        break;
+      case STRING_UNICODE:
+        parseUnicodeEscape(ch);
+        break;
+      case NUMBER:
+        if (!number.parse(ch)) {
+          completeNumber();
+          parseStructure(ch);
+        }
+        break;
+      case CONST:
+        parseConst(ch);
+        break;
+      case STRING_UTF8:
+        throw new ParseException("Char input within incomplete UTF-8 sequence.");
+      case SKIP:
+      case SKIP_STRING:
+      case SKIP_ESCAPE:
+      case SKIP_SCALAR:
+        parseSkipped(ch);
+        break;
+      default:
+        parseStructure(ch);
+    }
+  }
+
+  @Override
+  public void parseNext(final CharSequence charSeq) {
+    if (charSeq instanceof String) {
+      final String string = (String) charSeq;
+      final char[] buffer = inputBuffer();
+      for (int pos = 0; pos < string.length(); pos += buffer.length) {
+        final int length = Math.min(buffer.length, string.length() - pos);
+        string.getChars(pos, pos + length, buffer, 0);
+        final int parsed = parseChars(buffer, 0, length);
+        flushBatch();
+        checkParsed(parsed, length);
+      }
+    } else {
+      IncrementalParser.super.parseNext(charSeq);
+      flushBatch();
+    }
+  }
+
+  /**
+   * Parses remaining chars of the buffer. Buffer's position is advanced to its limit,
+   * or to the first unparsed char if the parser is suspended.
+   */
+  @Override
+  public void parseNext(final CharBuffer buffer) {
+    if (buffer.hasArray()) {
+      final int offset = buffer.arrayOffset();
+      buffer.position(parseChars(buffer.array(), offset + buffer.position(), offset + buffer.limit()) - offset);
+    } else {
+      final char[] chunk = inputBuffer();
+      while (buffer.hasRemaining()) {
+        final int length = Math.min(chunk.length, buffer.remaining());
+        buffer.get(chunk, 0, length);
+        final int parsed = parseChars(chunk, 0, length);
+        if (parsed < length) {
+          buffer.position(buffer.position() - (length - parsed));
+          break;
+        }
+      }
+    }
+    flushBatch();
+  }
+
+  @Override
+  public void parseNext(final char[] chars, final int offset, final int length) {
+    if (offset < 0 || length < 0 || offset + length > chars.length) {
+      throw new IndexOutOfBoundsException("offset=" + offset + ", length=" + length + ", size=" + chars.length);
+    }
+    final int parsed = parseChars(chars, offset, offset + length) - offset;
+    flushBatch();
+    checkParsed(parsed, length);
+  }
+
+  /**
+   * @return index of next unparsed char, less than end only if the parser is suspended
+   */
+  private int parseChars(final char[] chars, final int start, final int end) {
+    final long base = position - start;
+    int i = start;
+    while (i < end && !suspended) {
+      checkDocumentLength(base + i, chars[i]);
+      final int runEnd = Math.max(runEnd(base, end), i + 1);
+      switch (state) {
+        case STRING:
+          i = scanString(chars, i, runEnd);
+          break;
+        case NUMBER:
+          i = scanNumber(chars, i, runEnd);
+          break;
+        case SKIP:
+        case SKIP_STRING:
+          i = scanSkipped(chars, i, runEnd);
+          break;
+        case STRING_ESCAPE:
+        case STRING_UNICODE:
+        case CONST:
+        case SKIP_ESCAPE:
+        case SKIP_SCALAR:
+          parseChar(chars[i++]);
+          break;
+        default:
+          i = skipWhitespace(chars, i, runEnd);
+          if (i < runEnd) {
+            if (state == DOC) {
+              startDocument(base + i);
+            }
+            parseStructure(chars[i++]);
+          }
+      }
+    }
+    position = base + i;
+    return i;
+  }
+
+  private static void checkParsed(final int parsed, final int length) {
+    if (parsed < length) {
+      throw new IllegalStateException("Parser is suspended, " + (length - parsed)
+              + " elements of input are not parsed. Use buffer input to resume parsing.");
+    }
+  }
+
+  /**
+   * Parses a range of UTF-8 encoded input.
+   * The range does not need to end at a token or a multi-byte character boundary.
+   *
+   * @param bytes  input buffer
+   * @param offset index of the first byte to parse
+   * @param length number of bytes to parse
+   */
+  public void parseNext(final byte[] bytes, final int offset, final int length) {
+    if (offset < 0 || length < 0 || offset + length > bytes.length) {
+      throw new IndexOutOfBoundsException("offset=" + offset + ", length=" + length + ", size=" + bytes.length);
+    }
+    if (!wrappedBytes.hasArray() || wrappedBytes.array() != bytes) {
+      wrappedBytes = ByteBuffer.wrap(bytes).order(ByteOrder.nativeOrder());
+    }
+    final int parsed = parseBytes(wrappedBytes, offset, offset + length) - offset;
+    flushBatch();
+    checkParsed(parsed, length);
+  }
+
+  /**
+   * Parses remaining UTF-8 encoded bytes of the buffer. Buffer's position is advanced to its limit,
+   * or to the first unparsed byte if the parser is suspended.
+   *
+   * @see #parseNext(byte[], int, int)
+   * @see #suspend()
+   */
+  public void parseNext(final ByteBuffer buffer) {
+    buffer.position(parseBytes(buffer, buffer.position(), buffer.limit()));
+    flushBatch();
+  }
+
+  /**
+   * @return index of next unparsed byte, less than end only if the parser is suspended
+   */
+  private int parseBytes(final ByteBuffer in, final int start, final int end) {
+    final long base = position - start;
+    int i = start;
+    while (i < end && !suspended) {
+      checkDocumentLength(base + i, (char) in.get(i));
+      final int runEnd = Math.max(runEnd(base, end), i + 1);
+      switch (state) {
+        case STRING:
+          i = scanUtf8String(in, i, runEnd);
+          break;
+        case STRING_UTF8:
+          parseUtf8Continuation(in.get(i++));
+          break;
+        case NUMBER:
+          i = scanNumber(in, i, runEnd);
+          break;
+        case SKIP:
+        case SKIP_STRING:
+          i = scanSkipped(in, i, runEnd);
+          break;
+        case SKIP_ESCAPE:
+          // Escaped byte is not validated
+          state = SKIP_STRING;
+          i++;
+          break;
+        case STRING_ESCAPE:
+        case STRING_UNICODE:
+        case CONST:
+        case SKIP_SCALAR:
+          parseChar(asciiChar(in.get(i++)));
+          break;
+        default:
+          i = skipWhitespace(in, i, runEnd);
+          if (i < runEnd) {
+            if (state == DOC) {
+              startDocument(base + i);
+            }
+            parseStructure(asciiChar(in.get(i++)));
+          }
+      }
+    }
+    position = base + i;
+    return i;
+  }
+
+  /**
+   * @param start Input position of the first char of a top-level value.
+   */
+  private void startDocument(final long start) {
+    documentEnd = start > Long.MAX_VALUE - maxDocumentLength ? Long.MAX_VALUE : start + maxDocumentLength - 1;
+  }
+
+  /**
+   * @return End of input range that can be parsed without exceeding max document length.
+   */
+  private int runEnd(final long base, final int end) {
+    return documentEnd >= base + end ? end : (int) (documentEnd - base) + 1;
+  }
+
+  /**
+   * A top-level number ends at the next char, that char is allowed past the max length.
+   *
+   * @param ch Char (or byte) at the position.
+   */
+  private void checkDocumentLength(final long pos, final char ch) {
+    if (pos > documentEnd
+            && !(pos == documentEnd + 1 && state == NUMBER && depth == 0 && !NumberParser.isNumberChar(ch))) {
+      throw new LimitExceededException("Document is longer than " + maxDocumentLength + ".");
+    }
+  }
+
+  private static char asciiChar(final byte b) {
+    if (b < 0) {
+      throw new ParseException("Unexpected non-ASCII byte 0x" + Integer.toHexString(b & 0xFF) + " outside of string.");
+    }
+    return (char) b;
+  }
+
+  private static int skipWhitespace(final ByteBuffer in, int i, final int end) {
+    final boolean swap = Swar.needsSwap(in);
+    while (i + 8 <= end) {
+      final int n = Swar.firstByte(Swar.nonWhitespace(Swar.word(in, i, swap)));
+      i += n;
+      if (n < 8) {
+        return i;
+      }
+    }
+    while (i < end) {
+      final byte b = in.get(i);
+      if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+        break;
+      }
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * Appends run of plain string bytes to string value and handles the byte that ended the run.
+   * Multi-byte sequences that are complete within the input are decoded in place.
+   *
+   * @return index of next unparsed byte
+   */
+  private int scanUtf8String(final ByteBuffer in, int i, final int end) {
+    while (i < end && stringValue.length() < stringLimit) {
+      final int runEnd = asciiRunEnd(in, i, i + Math.min(end - i, stringLimit - stringValue.length()));
+      if (runEnd > i) {
+        appendAscii(in, i, runEnd);
+        i = runEnd;
+        continue;
+      }
+      final byte b = in.get(i);
+      if (b < 0) {
+        final int length = utf8Length(b);
+        if (i + length > end) {
+          break;
+        }
+        final int cp = decodeUtf8(in, i, length);
+        if (cp < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+          stringValue.append((char) cp);
+        } else {
+          stringValue.appendCodePoint(cp);
+        }
+        i += length;
+      } else if (b == '"' || b == '\\' || b <= 0x1f) {
+        break;
+      } else {
+        stringValue.append((char) b);
+        i++;
+      }
+    }
+    if (stringValue.length() >= stringLimit) {
+      flushStringChunk();
+    } else if (i < end) {
+      final byte b = in.get(i++);
+      if (b < 0) {
+        startUtf8Sequence(b);
+      } else {
+        parseString((char) b);
+      }
+    }
+    return i;
+  }
+
+  /**
+   * @return Index of first byte in the range that is not a plain ASCII string char, end if there is none.
+   */
+  private static int asciiRunEnd(final ByteBuffer in, int i, final int end) {
+    final boolean swap = Swar.needsSwap(in);
+    while (i + 8 <= end) {
+      final int n = Swar.firstByte(Swar.stringSpecials(Swar.word(in, i, swap)));
+      i += n;
+      if (n < 8) {
+        return i;
+      }
+    }
+    while (i < end) {
+      final byte b = in.get(i);
+      if (b < 0x20 || b == '"' || b == '\\') {
+        break;
+      }
+      i++;
+    }
+    return i;
+  }
+
+  private void appendAscii(final ByteBuffer in, int i, final int end) {
+    while (i < end) {
+      final int n = Math.min(end - i, asciiBuffer.length);
+      for (int k = 0; k < n; k++) {
+        asciiBuffer[k] = (char) in.get(i + k);
+      }
+      stringValue.append(asciiBuffer, 0, n);
+      i += n;
+    }
+  }
+
+  /**
+   * @return Expected length of UTF-8 sequence starting with given lead byte
+   * (invalid lead bytes are reported by {@link #startUtf8Sequence(byte)}).
+   */
+  private static int utf8Length(final byte lead) {
+    if ((lead & 0xE0) == 0xC0) {
+      return 2;
+    } else if ((lead & 0xF0) == 0xE0) {
+      return 3;
+    } else {
+      return 4;
+    }
+  }
+
+  private static int decodeUtf8(final ByteBuffer in, final int i, final int length) {
+    final int lead = in.get(i) & 0xFF;
+    if (lead < 0xC2 || lead > 0xF4) {
+      throw new ParseException("Invalid UTF-8 lead byte 0x" + Integer.toHexString(lead) + ".");
+    }
+    int cp = lead & (0x7F >> length);
+    for (int k = 1; k < length; k++) {
+      final byte b = in.get(i + k);
+      if ((b & 0xC0) != 0x80) {
+        throw new ParseException("Invalid UTF-8 continuation byte 0x" + Integer.toHexString(b & 0xFF) + ".");
+      }
+      cp = (cp << 6) | (b & 0x3F);
+    }
+    if (cp < (length == 2 ? 0x80 : length == 3 ? 0x800 : 0x10000)
+            || cp > Character.MAX_CODE_POINT
+            || (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE)) {
+      throw new ParseException("Invalid UTF-8 sequence for code point 0x" + Integer.toHexString(cp) + ".");
+    }
+    return cp;
+  }
+
+  private void startUtf8Sequence(final byte b) {
+    final int lead = b & 0xFF;
+    if (lead >= 0xC2 && lead <= 0xDF) {
+      utf8Pending = 1;
+      utf8Min = 0x80;
+      codePoint = lead & 0x1F;
+    } else if (lead >= 0xE0 && lead <= 0xEF) {
+      utf8Pending = 2;
+      utf8Min = 0x800;
+      codePoint = lead & 0x0F;
+    } else if (lead >= 0xF0 && lead <= 0xF4) {
+      utf8Pending = 3;
+      utf8Min = 0x10000;
+      codePoint = lead & 0x07;
+    } else {
+      throw new ParseException("Invalid UTF-8 lead byte 0x" + Integer.toHexString(lead) + ".");
+    }
+    state = STRING_UTF8;
+  }
+
+  private void parseUtf8Continuation(final byte b) {
+    if ((b & 0xC0) != 0x80) {
+      throw new ParseException("Invalid UTF-8 continuation byte 0x" + Integer.toHexString(b & 0xFF) + ".");
+    }
+    codePoint = (codePoint << 6) | (b & 0x3F);
+    if (--utf8Pending == 0) {
+      if (codePoint < utf8Min
+              || codePoint > Character.MAX_CODE_POINT
+              || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+        throw new ParseException("Invalid UTF-8 sequence for code point 0x" + Integer.toHexString(codePoint) + ".");
+      }
+      stringValue.appendCodePoint(codePoint);
+      state = STRING;
+      checkStringChunk();
+    }
+  }
+
+  /**
+   * Parses run of number bytes and handles the byte that ended the number.
+   *
+   * @return index of next unparsed byte
+   */
+  private int scanNumber(final ByteBuffer in, int i, final int end) {
+    while (i < end) {
+      final byte b = in.get(i);
+      if (b < 0 || !number.parse((char) b)) {
+        break;
+      }
+      i++;
+    }
+    if (i < end) {
+      completeNumber();
+      if (!suspended) {
+        parseStructure(asciiChar(in.get(i++)));
+      }
+    }
+    return i;
+  }
+
+  /**
+   * Skips bytes up to next bracket or quote (or quote or backslash within a string) and handles that byte.
+   *
+   * @return index of next unparsed byte
+   */
+  private int scanSkipped(final ByteBuffer in, int i, final int end) {
+    final boolean swap = Swar.needsSwap(in);
+    final boolean inString = state == SKIP_STRING;
+    while (i + 8 <= end) {
+      final long w = Swar.word(in, i, swap);
+      final int n = Swar.firstByte(inString ? Swar.stringEnds(w) : Swar.quotesAndBrackets(w));
+      i += n;
+      if (n < 8) {
+        parseSkipped((char) in.get(i++));
+        return i;
+      }
+    }
+    while (i < end) {
+      final byte b = in.get(i++);
+      if (b == '"' || (inString ? b == '\\' : b == '[' || b == ']' || b == '{' || b == '}')) {
+        parseSkipped((char) b);
+        break;
+      }
+    }
+    return i;
+  }
+
+  private char[] inputBuffer() {
+    if (inputBuffer == null) {
+      inputBuffer = new char[4096];
+    }
+    return inputBuffer;
+  }
+
+  private static int skipWhitespace(final char[] chars, int i, final int end) {
+    while (i < end) {
+      final char ch = chars[i];
+      if (ch != ' ' && ch != '\n' && ch != '\r' && ch != '\t') {
+        break;
+      }
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * Appends run of plain string chars to string value and handles the char that ended the run.
+   *
+   * @return index of next unparsed char
+   */
+  private int scanString(final char[] chars, final int start, final int end) {
+    final int runEnd = start + Math.min(end - start, stringLimit - stringValue.length());
+    int i = start;
+    while (i < runEnd) {
+      final char ch = chars[i];
+      if (ch == '"' || ch == '\\' || ch <= 0x1f) {
+        break;
+      }
+      i++;
+    }
+    stringValue.append(chars, start, i - start);
+    if (stringValue.length() >= stringLimit) {
+      flushStringChunk();
+    } else if (i < end) {
+      parseString(chars[i++]);
+    }
+    return i;
+  }
+
+  /**
+   * Parses run of number chars and handles the char that ended the number.
+   *
+   * @return index of next unparsed char
+   */
+  private int scanNumber(final char[] chars, int i, final int end) {
+    while (i < end && number.parse(chars[i])) {
+      i++;
+    }
+    if (i < end) {
+      completeNumber();
+      if (!suspended) {
+        parseStructure(chars[i++]);
+      }
+    }
+    return i;
+  }
+
+  /**
+   * Skips chars up to next bracket or quote (or quote or backslash within a string) and handles that char.
+   *
+   * @return index of next unparsed char
+   */
+  private int scanSkipped(final char[] chars, int i, final int end) {
+    final boolean inString = state == SKIP_STRING;
+    while (i < end) {
+      final char ch = chars[i++];
+      if (ch == '"' || (inString ? ch == '\\' : ch == '[' || ch == ']' || ch == '{' || ch == '}')) {
+        parseSkipped(ch);
+        break;
+      }
+    }
+    return i;
+  }
+
+  @Override
+  public void reset() {
+    state = DOC;
+    depth = 0;
+    utf8Pending = 0;
+    isChunked = false;
+    skipCount = 0;
+    suspended = false;
+    events = 0;
+    documentEnd = Long.MAX_VALUE;
+    if (stringValue.capacity() > RETAINED_STRING_CAPACITY) {
+      stringValue = new StringBuilder();
+    } else {
+      stringValue.setLength(0);
+    }
+    eventHandler.onReset();
+  }
+
+  /**
+   * Resets the parser and binds it to a new event handler.
+   * Other settings (e.g. key table) are kept.
+   *
+   * @see #reset()
+   */
+  public void reset(EventHandler handler) {
+    this.eventHandler = handler;
+    this.batchWriter = null;
+    reset();
+  }
+
+  @Override
+  public void end() {
+    if (state == NUMBER) {
+      completeNumber();
+    } else if (state == SKIP_SCALAR) {
+      completeValue();
+    }
+    flushBatch();
+    if (state != DOC) {
+      throw new ParseException("Unexpected end of input at nesting depth " + depth + ".");
+    }
+  }
+
+  private void parseStructure(final char ch) {
+    final byte charClass = ch < CHAR_CLASS.length ? CHAR_CLASS[ch] : C_OTHER;
+    if (charClass == C_WHITESPACE) {
+      return;
+    }
+    switch (state) {
+      case ARRAY_START:
+        if (charClass == C_ARRAY_END) {
+          endContainer();
+        } else {
+          startValue(ch, charClass);
+        }
+        break;
+      case DOC:
+      case VALUE:
+        startValue(ch, charClass);
+        break;
+      case ARRAY_NEXT:
+        if (charClass == C_COMMA) {
+          state = VALUE;
+        } else if (charClass == C_ARRAY_END) {
+          endContainer();
+        } else {
+          throw new ParseException("Expecting comma or array end, got '" + ch + "'");
+        }
+        break;
+      case MAP_START:
+        if (charClass == C_MAP_END) {
+          endContainer();
+        } else {
+          startKey(ch, charClass);
+        }
+        break;
+      case MAP_KEY:
+        startKey(ch, charClass);
+        break;
+      case MAP_COLON:
+        if (charClass != C_COLON) {
+          throw new ParseException("Expecting colon, got '" + ch + "'");
+        }
+        state = VALUE;
+        break;
+      case MAP_NEXT:
+        if (charClass == C_COMMA) {
+          state = MAP_KEY;
+        } else if (charClass == C_MAP_END) {
+          endContainer();
+        } else {
+          throw new ParseException("Expecting comma or map end, got '" + ch + "'");
+        }
+        break;
+      default:
+        throw new IllegalStateException("Unexpected parser state " + state);
+    }
+  }
+
+  private void countEvent() {
+    if (++events > maxEvents) {
+      throw new LimitExceededException("Document has more than " + maxEvents + " values and keys.");
+    }
+  }
+
+  private void startValue(final char ch, final byte charClass) {
+    countEvent();
+    if (skipCount > 0) {
+      skipCount--;
+      startSkipped(ch, charClass);
+      return;
+    }
+    switch (charClass) {
+      case C_MAP_BEGIN:
+        push(MAP_NEXT);
+        eventHandler.onMap();
+        state = MAP_START;
+        break;
+      case C_ARRAY_BEGIN:
+        push(ARRAY_NEXT);
+        eventHandler.onArray();
+        state = ARRAY_START;
+        break;
+      case C_QUOTE:
+        startString(false);
+        break;
+      case C_NUMBER:
+        number.start();
+        number.parse(ch);
+        state = NUMBER;
+        break;
+      case C_CONST:
+        if (ch == 't') {
+          startConst(TRUE);
+        } else if (ch == 'f') {
+          startConst(FALSE);
+        } else {
+          startConst(NULL);
+        }
+        break;
+      default:
+        throw new ParseException("Unexpected character '" + ch + "'");
+    }
+  }
+
+  private void startSkipped(final char ch, final byte charClass) {
+    switch (charClass) {
+      case C_MAP_BEGIN:
+      case C_ARRAY_BEGIN:
+        skipDepth = 1;
+        state = SKIP;
+        break;
+      case C_QUOTE:
+        skipDepth = 0;
+        state = SKIP_STRING;
+        break;
+      case C_NUMBER:
+      case C_CONST:
+        state = SKIP_SCALAR;
+        break;
+      default:
+        throw new ParseException("Unexpected character '" + ch + "'");
+    }
+  }
+
+  private void parseSkipped(final char ch) {
+    switch (state) {
+      case SKIP:
+        if (ch == '"') {
+          state = SKIP_STRING;
+        } else if (ch == '[' || ch == '{') {
+          skipDepth++;
+        } else if ((ch == ']' || ch == '}') && --skipDepth == 0) {
+          completeValue();
+        }
+        break;
+      case SKIP_STRING:
+        if (ch == '"') {
+          if (skipDepth == 0) {
+            completeValue();
+          } else {
+            state = SKIP;
+          }
+        } else if (ch == '\\') {
+          state = SKIP_ESCAPE;
+        }
+        break;
+      case SKIP_ESCAPE:
+        state = SKIP_STRING;
+        break;
+      default:
+        final byte charClass = ch < CHAR_CLASS.length ? CHAR_CLASS[ch] : C_OTHER;
+        if (charClass != C_NUMBER && charClass != C_CONST && charClass != C_OTHER) {
+          completeValue();
+          parseStructure(ch);
+        }
+    }
+  }
+
+  private void startKey(final char ch, final byte charClass) {
+    if (charClass != C_QUOTE) {
+      throw new ParseException("Expecting map key, got '" + ch + "'");
+    }
+    countEvent();
+    if (++mapSizes[depth - 1] > maxMapSize) {
+      throw new LimitExceededException("Map has more than " + maxMapSize + " keys.");
+    }
+    eventHandler.onMapKey();
+    startString(true);
+  }
+
+  private void startString(final boolean key) {
+    isKey = key;
+    isChunked = false;
+    // Reaching the limit flushes the string as a chunk, that also checks max string length
+    stringLimit = maxStringLength == Integer.MAX_VALUE ? Integer.MAX_VALUE : maxStringLength + 1;
+    if (!key && stringChunkSize != 0 && stringChunkSize < stringLimit && eventHandler.acceptsStringChunks()) {
+      stringLimit = stringChunkSize;
+    }
+    stringTotal = 0;
+    stringValue.setLength(0);
+    state = STRING;
+  }
+
+  private void checkStringChunk() {
+    if (stringValue.length() >= stringLimit) {
+      flushStringChunk();
+    }
+  }
+
+  private void flushStringChunk() {
+    stringTotal += stringValue.length();
+    checkStringLength();
+    isChunked = true;
+    eventHandler.onStringChunk(stringValue);
+    stringValue.setLength(0);
+  }
+
+  private void checkStringLength() {
+    if (stringTotal > maxStringLength) {
+      throw new LimitExceededException("String is longer than " + maxStringLength + " chars.");
+    }
+  }
+
+  private void push(final int nextState) {
+    if (depth >= maxDepth) {
+      throw new LimitExceededException("Nesting depth exceeds " + maxDepth + ".");
+    }
+    if (depth == stack.length) {
+      stack = Arrays.copyOf(stack, depth * 2);
+      mapSizes = Arrays.copyOf(mapSizes, depth * 2);
+    }
+    mapSizes[depth] = 0;
+    stack[depth++] = nextState;
+  }
+
+  private void endContainer() {
+    depth--;
+    // Skip request does not apply beyond the container it was made in
+    skipCount = 0;
+    eventHandler.onEnd();
+    completeValue();
+  }
+
+  /**
+   * Moves to the state expected after a value in the enclosing container.
+   */
+  private void completeValue() {
+    if (depth == 0) {
+      state = DOC;
+      events = 0;
+      documentEnd = Long.MAX_VALUE;
+    } else {
+      state = stack[depth - 1];
+    }
+  }
+
+  private void parseString(final char ch) {
+    if (ch == '"') {
+      if (isChunked) {
+        stringTotal += stringValue.length();
+        checkStringLength();
+        if (stringValue.length() > 0) {
+          eventHandler.onStringChunk(stringValue);
+        }
+        eventHandler.onStringEnd();
+      } else if (isKey && keyTable != null) {
+        final int id = keyTable.intern(stringValue);
+        eventHandler.onKey(id, id == KeyTable.UNKNOWN ? stringValue.toString() : keyTable.key(id));
+      } else {
+        eventHandler.onString(stringValue);
+      }
+      if (isKey) {
+        state = MAP_COLON;
+      } else {
+        completeValue();
+      }
+    } else if (ch == '\\') {
+      state = STRING_ESCAPE;
+    } else if (ch <= 0x1f) {
+      throw new ParseException("Unexpected character within string " + Integer.toHexString((int) ch) + "."
+              + " Control characters in range U+0000 to U+001F must be escaped.");
+    } else {
+      stringValue.append(ch);
+      checkStringChunk();
+    }
+  }
+
+  private void parseEscape(final char ch) {
+    switch (ch) {
+      case '"':
+      case '\\':
+      case '/':
+        stringValue.append(ch);
+        break;
+      case 'b':
+        stringValue.append('\b');
+        break;
+      case 'f':
+        stringValue.append('\f');
+        break;
+      case 'n':
+        stringValue.append('\n');
+        break;
+      case 'r':
+        stringValue.append('\r');
+        break;
+      case 't':
+        stringValue.append('\t');
+        break;
+      case 'u':
+        codePoint = 0;
+        codePointDigits = 0;
+        state = STRING_UNICODE;
+        return;
+      default:
+        throw new ParseException("Unexpected string escape '" + ch + "'");
+    }
+    state = STRING;
+    checkStringChunk();
+  }
+
+  private void parseUnicodeEscape(final char ch) {
+    final int digit = Character.digit(ch, 16);
+    if (digit < 0) {
+      throw new ParseException("Invalid escape code point format, unexpected character '" + ch + "'." +
+              " Expecting exactly 4 hexadecimal digits.");
+    }
+    codePoint = (codePoint << 4) | digit;
+    if (++codePointDigits == 4) {
+      stringValue.append((char) codePoint);
+      state = STRING;
+      checkStringChunk();
+    }
+  }
+
+  private void completeNumber() {
+    number.complete(eventHandler);
+    completeValue();
+  }
+
+  private void startConst(final String valueString) {
+    constString = valueString;
+    constPos = 1;
+    state = CONST;
+  }
+
+  private void parseConst(final char ch) {
+    if (ch != constString.charAt(constPos)) {
+      throw new ParseException("Unexpected char " + ch);
+    }
+    if (++constPos == constString.length()) {
+      if (constString == NULL) {
+        eventHandler.onNull();
+      } else {
+        eventHandler.onBoolean(constString == TRUE);
+      }
+      completeValue();
+    }
+  }
+
+  /**
+   * @param handler Will receive parsed JSON events.
+   * @return New instance of FlatJsonParser with default configuration.
+   */
+  public static FlatJsonParser makeDefault(EventHandler handler) {
+    final FlatJsonParser parser = new FlatJsonParser(handler);
+    parser.setLimits(ParserLimits.defaults());
+    return parser;
+  }
+}
@@ -0,0 +1,68 @@
+package net.readmarks.jsono;
+
+import java.nio.CharBuffer;
+
+/**
+ * Input side of a JSON parser engine. Implementations accept input text piece by piece
+ * and emit parsed events to an {@link EventHandler} as soon as enough input is available.
+ *
+ * @see JsonParser
+ * @see FlatJsonParser
+ */
+public interface IncrementalParser {
+  /**
+   * Call this once for every subsequent input's chars.
+   *
+   * @param ch next input chars.
+   */
+  void parseNext(char ch);
+
+  /**
+   * Convenience method for {@link #parseNext(char)}
+   */
+  default void parseNext(final CharSequence charSeq) {
+    for (int i = 0; i < charSeq.length(); i++)
+      parseNext(charSeq.charAt(i));
+  }
+
+  /**
+   * Parses a range of chars. The range does not need to end at a token boundary,
+   * parsing continues with the next input as if all chars were passed one by one.
+   *
+   * @param chars  input buffer
+   * @param offset index of the first char to parse
+   * @param length number of chars to parse
+   */
+  default void parseNext(final char[] chars, final int offset, final int length) {
+    final int end = offset + length;
+    for (int i = offset; i < end; i++)
+      parseNext(chars[i]);
+  }
+
+  /**
+   * Parses all remaining chars of the buffer. Buffer's position is advanced to its limit.
+   *
+   * @see #parseNext(char[], int, int)
+   */
+  default void parseNext(final CharBuffer buffer) {
+    if (buffer.hasArray()) {
+      parseNext(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+      buffer.position(buffer.limit());
+    } else {
+      while (buffer.hasRemaining())
+        parseNext(buffer.get());
+    }
+  }
+
+  /**
+   * Call this to indicate that there will be no more input.
+   * This method allows to detect incomplete JSON documents.
+   */
+  void end();
+
+  /**
+   * Discards parser state, so the parser can be reused for a new input (e.g. after a parse error).
+   * Calls {@link EventHandler#onReset()} so handlers can discard their state too.
+   */
+  void reset();
+}
@@ -1,14 +1,10 @@
 package net.readmarks.jsono;
 
-import net.readmarks.jsono.handler.HandlerUtil;
-import net.readmarks.jsono.handler.NestingCounter;
-
-import java.util.regex.Pattern;
-
 /**
  * Incremental reactive non blocking JSON parser. Emits parsed events synchronously when enough input text is provided.
- * Instantiates scalar types (null, boolean, number) and strings. Numbers are represented as Long or Double
- * depending on whether value has a fraction or exponent part.
+ * Scalar values are reported with type specific {@link EventHandler} methods. Numbers are reported as long or double
+ * depending on whether value has a fraction or exponent part. Numbers that are out of range of these types
+ * are reported as BigInteger or BigDecimal.
  * Containers (arrays and maps) are emitted as sequence of events.
  * <p>
  * Array is represented as ARRAY, value1, value2, ..., END
@@ -23,15 +19,22 @@ import java.util.regex.Pattern;
  *
  * Look into package net.readmarks.jsono.handler for examples of event handlers.
  * See tests and benchmarks for example usage.
+ * <p>
+ * This engine allocates a state object per token. See {@link FlatJsonParser} for an engine
+ * with the same behaviour that does not allocate parser state while parsing.
  *
  * @see EventHandler
  */
-public class JsonParser {
+public class JsonParser implements IncrementalParser {
 
   public static class ParseException extends RuntimeException {
     ParseException(String s) {
       super(s);
     }
+
+    ParseException(String s, Throwable cause) {
+      super(s, cause);
+    }
   }
 
   abstract static class SElement {
@@ -80,19 +83,30 @@ public class JsonParser {
       final SElement result = super.parse(ch);
       if (result != null) {
         return result;
-      } else if (ch == '{') {
+      }
+      if (parent == doc) {
+        startDocument();
+      }
+      if (ch == '{') {
+        countEvent();
         return new SMap(parent);
       } else if (ch == '[') {
+        countEvent();
         return new SArray(parent);
       } else if (ch == '"') {
+        countEvent();
         return new SString(parent);
       } else if (ch == '-' || Character.isDigit(ch)) {
+        countEvent();
         return new SNumber(parent).parse(ch);
       } else if (ch == 't') {
+        countEvent();
         return new SConst(parent, "true", Boolean.TRUE).parse(ch);
       } else if (ch == 'f') {
+        countEvent();
         return new SConst(parent, "false", Boolean.FALSE).parse(ch);
       } else if (ch == 'n') {
+        countEvent();
         return new SConst(parent, "null", null).parse(ch);
       } else {
         return parent.parse(ch);
@@ -107,10 +121,10 @@ public class JsonParser {
 
   class SConst extends SElement {
     final String valueString;
-    final Object value;
+    final Boolean value;
     int pos = 0;
 
-    SConst(SElement sParent, String valueString, Object value) {
+    SConst(SElement sParent, String valueString, Boolean value) {
       super(sParent);
       this.valueString = valueString;
       this.value = value;
@@ -120,7 +134,11 @@ public class JsonParser {
     public SElement parse(char ch) {
       if (ch == valueString.charAt(pos)) {
         if (pos == valueString.length() - 1) {
-          eventHandler.onValue(value);
+          if (value == null) {
+            eventHandler.onNull();
+          } else {
+            eventHandler.onBoolean(value);
+          }
           return parent;
         } else {
           pos++;
@@ -132,55 +150,27 @@ public class JsonParser {
     }
   }
 
-  private static Pattern NUMBER_FORMAT = Pattern.compile("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][-+]?[0-9]+)?");
-
   class SNumber extends SElement {
-    final private StringBuilder stringValue = new StringBuilder();
-    private boolean isDouble = false;
-
     SNumber(SElement sParent) {
       super(sParent);
+      numberParser.start();
     }
 
     @Override
     public SElement parse(char ch) {
-      if (stringValue.length() == 0) {
-        final SElement result = super.parse(ch);
-        if (result != null) {
-          return result;
-        }
-      }
-      if (Character.isDigit(ch) || ch == '-' || ch == '+') {
-        stringValue.append(ch);
-        return this;
-      } else if (ch == '.' || ch == 'e' || ch == 'E') {
-        isDouble = true;
-        stringValue.append(ch);
+      if (numberParser.parse(ch)) {
         return this;
       } else {
-        complete();
+        numberParser.complete(eventHandler);
         return parent.parse(ch);
       }
     }
 
     @Override
     public SElement end() {
-      complete();
+      numberParser.complete(eventHandler);
       return parent.end();
     }
-
-    private void complete() {
-      if (!NUMBER_FORMAT.matcher(stringValue).matches()) {
-        throw new ParseException(
-                "'" + stringValue + "' does not match number format" +
-                        " '" + NUMBER_FORMAT.pattern() + "'");
-      }
-      if (isDouble) {
-        eventHandler.onValue(Double.parseDouble(stringValue.toString()));
-      } else {
-        eventHandler.onValue(Long.parseLong(stringValue.toString()));
-      }
-    }
   }
 
   class SString extends SElement {
@@ -193,7 +183,7 @@ public class JsonParser {
     @Override
     public SElement parse(char ch) {
       if (ch == '"') {
-        eventHandler.onValue(value.toString());
+        eventHandler.onString(value);
         return parent;
       } else if (ch == '\\') {
         return new SStringEscape(this);
@@ -201,10 +191,17 @@ public class JsonParser {
         throw new ParseException("Unexpected character within string " + Integer.toHexString((int) ch) + "."
                 + " Control characters in range U+0000 to U+001F must be escaped.");
       } else {
-        value.append(ch);
+        append(ch);
         return this;
       }
     }
+
+    void append(char ch) {
+      if (value.length() >= maxStringLength) {
+        throw new LimitExceededException("String is longer than " + maxStringLength + " chars.");
+      }
+      value.append(ch);
+    }
   }
 
   class SStringEscape extends SElement {
@@ -247,7 +244,7 @@ public class JsonParser {
           codeString = new StringBuilder(5);
           return this;
         } else {
-          ((SString) parent).value.append(eCh);
+          ((SString) parent).append(eCh);
           return parent;
         }
       } else if (codeString.length() < 3) {
@@ -255,7 +252,7 @@ public class JsonParser {
         return this;
       } else {
         codeString.append(ch);
-        ((SString) parent).value.appendCodePoint(parseCodePoint());
+        ((SString) parent).append((char) parseCodePoint());
         return parent;
       }
     }
@@ -279,9 +276,11 @@ public class JsonParser {
 
   class SMap extends SElement {
     private SObjectState sObjectState = SObjectState.START;
+    private int size = 0;
 
     SMap(SElement sParent) {
       super(sParent);
+      enterContainer();
       eventHandler.onMap();
     }
 
@@ -291,9 +290,14 @@ public class JsonParser {
       if (result != null) {
         return result;
       } else if ((sObjectState == SObjectState.START || sObjectState == SObjectState.VALUE) && ch == '}') {
+        depth--;
         eventHandler.onEnd();
         return parent;
       } else if ((sObjectState == SObjectState.START || sObjectState == SObjectState.KEY) && ch == '"') {
+        countEvent();
+        if (++size > maxMapSize) {
+          throw new LimitExceededException("Map has more than " + maxMapSize + " keys.");
+        }
         eventHandler.onMapKey();
         sObjectState = SObjectState.COLON;
         return new SString(this);
@@ -314,6 +318,7 @@ public class JsonParser {
 
     SArray(SElement sParent) {
       super(sParent);
+      enterContainer();
       eventHandler.onArray();
     }
 
@@ -323,6 +328,7 @@ public class JsonParser {
       if (result != null) {
         return result;
       } else if (ch == ']') {
+        depth--;
         eventHandler.onEnd();
         return parent;
       } else if (expectComma) {
@@ -339,7 +345,25 @@ public class JsonParser {
   }
 
   private final EventHandler eventHandler;
-  private SElement state = new SDoc();
+  private final NumberParser numberParser = new NumberParser();
+  private SDoc doc = new SDoc();
+  private SElement state = doc;
+
+  private int depth = 0;
+  private int maxDepth = Integer.MAX_VALUE;
+  private int maxStringLength = Integer.MAX_VALUE;
+  private int maxMapSize = Integer.MAX_VALUE;
+  private long maxEvents = Long.MAX_VALUE;
+  private long maxDocumentLength = Long.MAX_VALUE;
+  /**
+   * Values and keys of current document.
+   */
+  private long events = 0;
+  /**
+   * Number of chars parsed so far.
+   */
+  private long position = 0;
+  private long documentStart = 0;
 
   /**
    * It is recommended to use {@link #makeDefault(EventHandler)} instead of this constructor.
@@ -350,18 +374,58 @@ public class JsonParser {
     this.eventHandler = eventHandler;
   }
 
+  /**
+   * Sets limits of input documents, see {@link ParserLimits}.
+   */
+  public void setLimits(ParserLimits limits) {
+    maxDepth = limits.getMaxDepth();
+    maxStringLength = limits.getMaxStringLength();
+    maxMapSize = limits.getMaxMapSize();
+    maxEvents = limits.getMaxEvents();
+    maxDocumentLength = limits.getMaxDocumentLength();
+    numberParser.setMaxLength(limits.getMaxNumberLength());
+  }
+
+  private void startDocument() {
+    documentStart = position;
+    events = 0;
+  }
+
+  private void countEvent() {
+    if (++events > maxEvents) {
+      throw new LimitExceededException("Document has more than " + maxEvents + " values and keys.");
+    }
+  }
+
+  private void enterContainer() {
+    if (depth >= maxDepth) {
+      throw new LimitExceededException("Nesting depth exceeds " + maxDepth + ".");
+    }
+    depth++;
+  }
+
   /**
    * Call this once for every subsequent input's chars.
    *
    * @param ch next input chars.
    */
+  @Override
   public void parseNext(final char ch) {
+    // Top-level number ends at the next char, that char is allowed past the max length
+    if (position - documentStart >= maxDocumentLength
+            && state != doc && !(state instanceof SValue && state.parent == doc)
+            && !(position - documentStart == maxDocumentLength && state instanceof SNumber && state.parent == doc
+            && !NumberParser.isNumberChar(ch))) {
+      throw new LimitExceededException("Document is longer than " + maxDocumentLength + ".");
+    }
     state = state.parse(ch);
+    position++;
   }
 
   /**
    * Convenience method for {@link #parseNext(char)}
    */
+  @Override
   public void parseNext(final CharSequence charSeq) {
     for (int i = 0; i < charSeq.length(); i++)
       parseNext(charSeq.charAt(i));
@@ -372,16 +436,27 @@ public class JsonParser {
    * Call this to indicate that there will be no more input.
    * This method allows to detect incomplete JSON documents.
    */
+  @Override
   public void end() {
     state = state.end();
   }
 
+  @Override
+  public void reset() {
+    doc = new SDoc();
+    state = doc;
+    depth = 0;
+    events = 0;
+    eventHandler.onReset();
+  }
+
   /**
    * @param handler Will receive parsed JSON events.
    * @return New instance of JsonParser with default configuration.
    */
   public static JsonParser makeDefault(EventHandler handler) {
-    return new JsonParser(
-            HandlerUtil.then(new NestingCounter(), handler));
+    final JsonParser parser = new JsonParser(handler);
+    parser.setLimits(ParserLimits.defaults());
+    return parser;
   }
 }
@@ -0,0 +1,235 @@
+package net.readmarks.jsono;
+
+import net.readmarks.jsono.handler.Event;
+import net.readmarks.jsono.handler.StreamingHandler;
+import org.reactivestreams.Processor;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reactive Streams processor that turns UTF-8 encoded input buffers into JSON events.
+ * Events are the same as ones of {@link StreamingHandler} except that JSON null is published as {@link Event#NULL}.
+ * <p>
+ * Input is parsed only as far as downstream demand allows (the parser is suspended when demand is exhausted,
+ * see {@link FlatJsonParser#suspend()}). Unparsed rest of an input buffer is kept until there is more demand,
+ * next buffer is requested from upstream only after the current one is parsed completely.
+ * So at most one input buffer is retained and there is no queue of events.
+ * The upstream publisher should not modify buffers after passing them.
+ * <p>
+ * Supports single subscriber. Cancelling the downstream subscription cancels the upstream one.
+ * Parse errors are signalled downstream with {@link Subscriber#onError(Throwable)}, end of input
+ * that is incomplete JSON is an error too.
+ * <p>
+ * Reactive Streams interfaces are used since they are equivalent to {@code java.util.concurrent.Flow}
+ * and are available with Java 8 (see {@code org.reactivestreams.FlowAdapters} to bridge them).
+ * The library does not depend on {@code org.reactivestreams:reactive-streams} at runtime,
+ * applications that use this class should add it to their dependencies.
+ */
+public class JsonProcessor implements Processor<ByteBuffer, Object> {
+  private final FlatJsonParser parser = FlatJsonParser.makeDefault(new StreamingHandler(this::emit) {
+    @Override
+    public void onNull() {
+      emit(Event.NULL);
+    }
+  });
+
+  private final AtomicReference<Subscriber<? super Object>> downstream = new AtomicReference<>();
+  private volatile Subscriber<? super Object> subscribed;
+  private volatile Subscription upstream;
+  private final AtomicLong requested = new AtomicLong();
+  private final AtomicInteger pendingDrains = new AtomicInteger();
+
+  /**
+   * Buffer received from upstream that is not taken by the drain loop yet.
+   */
+  private volatile ByteBuffer received;
+  private volatile boolean upstreamDone;
+  private volatile Throwable error;
+  private volatile boolean cancelled;
+
+  // State of the drain loop
+  private ByteBuffer input;
+  private boolean inputRequested;
+  private long budget;
+  private long emitted;
+  private boolean done;
+
+  @Override
+  public void subscribe(Subscriber<? super Object> subscriber) {
+    if (subscriber == null) {
+      throw new NullPointerException("Subscriber should not be null.");
+    }
+    if (!downstream.compareAndSet(null, subscriber)) {
+      subscriber.onSubscribe(new Subscription() {
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+      });
+      subscriber.onError(new IllegalStateException("Processor supports single subscriber."));
+      return;
+    }
+    subscriber.onSubscribe(new Subscription() {
+      @Override
+      public void request(long n) {
+        if (n <= 0) {
+          error = new IllegalArgumentException("Requested number of events should be positive. n=" + n + ".");
+        } else {
+          requested.accumulateAndGet(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+        }
+        drain();
+      }
+
+      @Override
+      public void cancel() {
+        cancelled = true;
+        drain();
+      }
+    });
+    subscribed = subscriber;
+    drain();
+  }
+
+  @Override
+  public void onSubscribe(Subscription subscription) {
+    if (upstream != null) {
+      subscription.cancel();
+      return;
+    }
+    upstream = subscription;
+    drain();
+  }
+
+  @Override
+  public void onNext(ByteBuffer buffer) {
+    received = buffer;
+    drain();
+  }
+
+  @Override
+  public void onError(Throwable t) {
+    error = t;
+    upstreamDone = true;
+    drain();
+  }
+
+  @Override
+  public void onComplete() {
+    upstreamDone = true;
+    drain();
+  }
+
+  private void emit(Object event) {
+    assert emitted < budget;
+    emitted++;
+    subscribed.onNext(event);
+    if (emitted == budget || cancelled) {
+      parser.suspend();
+    }
+  }
+
+  /**
+   * Runs the drain loop on the calling thread unless it is running on another one already,
+   * in which case that thread repeats it.
+   */
+  private void drain() {
+    if (pendingDrains.getAndIncrement() != 0) {
+      return;
+    }
+    int missed = 1;
+    do {
+      if (!done && subscribed != null) {
+        drainLoop();
+      }
+      missed = pendingDrains.addAndGet(-missed);
+    } while (missed != 0);
+  }
+
+  private void drainLoop() {
+    final Subscriber<? super Object> out = subscribed;
+    while (true) {
+      if (cancelled) {
+        finish();
+        return;
+      }
+      if (error != null) {
+        finish();
+        out.onError(error);
+        return;
+      }
+      final boolean inputComplete = upstreamDone;
+      final long demand = requested.get();
+      if ((input == null || !input.hasRemaining()) && received != null) {
+        input = received;
+        received = null;
+        inputRequested = false;
+      }
+      if (input != null && input.hasRemaining()) {
+        if (demand == 0) {
+          return;
+        }
+        if (!parse(demand, () -> parser.parseNext(input))) {
+          return;
+        }
+      } else if (inputComplete) {
+        // Parsing stops as soon as demand is exhausted, so end of input may complete a number only if there is demand
+        if (parse(demand, parser::end)) {
+          finish();
+          out.onComplete();
+        }
+        return;
+      } else {
+        if (demand > 0 && !inputRequested && upstream != null) {
+          inputRequested = true;
+          upstream.request(1);
+          continue;
+        }
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return false if parsing failed
+   */
+  private boolean parse(long demand, Runnable parse) {
+    budget = demand;
+    emitted = 0;
+    parser.resume();
+    try {
+      parse.run();
+    } catch (RuntimeException e) {
+      finish();
+      subscribed.onError(e);
+      return false;
+    } finally {
+      budget = 0;
+    }
+    consumed(emitted);
+    return true;
+  }
+
+  private void consumed(long n) {
+    if (n > 0 && requested.get() != Long.MAX_VALUE) {
+      requested.addAndGet(-n);
+    }
+  }
+
+  private void finish() {
+    done = true;
+    input = null;
+    received = null;
+    final Subscription s = upstream;
+    if (s != null && !upstreamDone) {
+      s.cancel();
+    }
+  }
+}
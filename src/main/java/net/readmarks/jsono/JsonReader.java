@@ -0,0 +1,271 @@
+package net.readmarks.jsono;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Pull style reader of UTF-8 encoded JSON from a blocking input stream.
+ * Input is read and parsed only until the next token is available (the parser is suspended after each event,
+ * see {@link FlatJsonParser#suspend()}). Scalar values are kept in primitive fields,
+ * string values are not copied unless {@link #stringValue()} is called.
+ * <p>
+ * Usage:
+ * <pre>
+ *   try (JsonReader reader = new JsonReader(in)) {
+ *     JsonReader.Token token;
+ *     while ((token = reader.next()) != null) {
+ *       ...
+ *     }
+ *   }
+ * </pre>
+ * The reader does not hold locks while blocked on input, so it is suitable for running on virtual threads.
+ */
+public class JsonReader implements Closeable {
+  public enum Token {
+    /** Start of an array. */
+    ARRAY,
+    /** Start of a map. */
+    MAP,
+    /** End of current array or map. */
+    END,
+    /** Map key, see {@link #stringValue()}. */
+    KEY,
+    STRING,
+    LONG,
+    DOUBLE,
+    /** Number that does not fit long or double, see {@link #numberValue()}. */
+    NUMBER,
+    BOOLEAN,
+    NULL
+  }
+
+  private final InputStream in;
+  private final byte[] bytes;
+  private final ByteBuffer buffer;
+  private final FlatJsonParser parser;
+  private boolean eof = false;
+
+  private Token token;
+  private boolean isKey;
+  private long longValue;
+  private double doubleValue;
+  private Number numberValue;
+  private boolean booleanValue;
+  private CharSequence chars;
+  private String string;
+
+  public JsonReader(InputStream in) {
+    this(in, 8192);
+  }
+
+  /**
+   * @param bufferSize Size of input buffer in bytes.
+   */
+  public JsonReader(InputStream in, int bufferSize) {
+    if (bufferSize <= 0) {
+      throw new IllegalArgumentException("Buffer size should be positive. bufferSize=" + bufferSize + ".");
+    }
+    this.in = in;
+    this.bytes = new byte[bufferSize];
+    this.buffer = ByteBuffer.wrap(bytes).order(ByteOrder.nativeOrder());
+    this.buffer.limit(0);
+    this.parser = FlatJsonParser.makeDefault(new EventHandler() {
+      @Override
+      public void onValue(Object x) {
+        if (!(x instanceof Number)) {
+          throw new IllegalStateException("Unexpected value " + x);
+        }
+        numberValue = (Number) x;
+        emit(Token.NUMBER);
+      }
+
+      @Override
+      public void onLong(long x) {
+        longValue = x;
+        emit(Token.LONG);
+      }
+
+      @Override
+      public void onDouble(double x) {
+        doubleValue = x;
+        emit(Token.DOUBLE);
+      }
+
+      @Override
+      public void onBoolean(boolean x) {
+        booleanValue = x;
+        emit(Token.BOOLEAN);
+      }
+
+      @Override
+      public void onNull() {
+        emit(Token.NULL);
+      }
+
+      @Override
+      public void onString(CharSequence x) {
+        chars = x;
+        string = null;
+        emit(isKey ? Token.KEY : Token.STRING);
+        isKey = false;
+      }
+
+      @Override
+      public void onArray() {
+        emit(Token.ARRAY);
+      }
+
+      @Override
+      public void onMap() {
+        emit(Token.MAP);
+      }
+
+      @Override
+      public void onMapKey() {
+        isKey = true;
+      }
+
+      @Override
+      public void onEnd() {
+        emit(Token.END);
+      }
+    });
+  }
+
+  private void emit(Token t) {
+    token = t;
+    parser.suspend();
+  }
+
+  /**
+   * Reads next token, blocks until it is available.
+   *
+   * @return The token, or null at the end of input.
+   * @throws JsonParser.ParseException if input is not valid JSON.
+   */
+  public Token next() throws IOException {
+    token = null;
+    while (token == null) {
+      if (buffer.hasRemaining()) {
+        parser.resume();
+        parser.parseNext(buffer);
+      } else if (eof) {
+        return null;
+      } else {
+        final int n = in.read(bytes, 0, bytes.length);
+        if (n < 0) {
+          eof = true;
+          parser.end();
+        } else {
+          buffer.limit(n).position(0);
+        }
+      }
+    }
+    return token;
+  }
+
+  /**
+   * @return Last token returned by {@link #next()}.
+   */
+  public Token currentToken() {
+    return token;
+  }
+
+  public long longValue() {
+    checkToken(Token.LONG);
+    return longValue;
+  }
+
+  /**
+   * @return Value of a {@link Token#DOUBLE} or of a {@link Token#LONG}.
+   */
+  public double doubleValue() {
+    if (token == Token.LONG) {
+      return longValue;
+    }
+    checkToken(Token.DOUBLE);
+    return doubleValue;
+  }
+
+  /**
+   * @return Value of a {@link Token#NUMBER} ({@link java.math.BigInteger} or {@link java.math.BigDecimal}),
+   * or boxed value of a {@link Token#LONG} or of a {@link Token#DOUBLE}.
+   */
+  public Number numberValue() {
+    if (token == Token.LONG) {
+      return longValue;
+    }
+    if (token == Token.DOUBLE) {
+      return doubleValue;
+    }
+    checkToken(Token.NUMBER);
+    return numberValue;
+  }
+
+  public boolean booleanValue() {
+    checkToken(Token.BOOLEAN);
+    return booleanValue;
+  }
+
+  /**
+   * @return Value of a {@link Token#STRING} or of a {@link Token#KEY}.
+   */
+  public String stringValue() {
+    if (string == null) {
+      string = charsValue().toString();
+    }
+    return string;
+  }
+
+  /**
+   * Same as {@link #stringValue()} but does not copy the value.
+   * Returned sequence is valid only until next call to {@link #next()}.
+   */
+  public CharSequence charsValue() {
+    if (token != Token.KEY) {
+      checkToken(Token.STRING);
+    }
+    return chars;
+  }
+
+  /**
+   * If current token is a key, skips the value that follows it without reporting its tokens.
+   * If current token is start of an array or of a map, reads up to its end so {@link #currentToken()}
+   * becomes the corresponding {@link Token#END}. Otherwise does nothing.
+   */
+  public void skipValue() throws IOException {
+    if (token == Token.KEY) {
+      parser.skipValue();
+    } else if (token == Token.ARRAY || token == Token.MAP) {
+      int depth = 1;
+      while (depth > 0) {
+        final Token t = next();
+        if (t == null) {
+          return;
+        }
+        if (t == Token.ARRAY || t == Token.MAP) {
+          depth++;
+        } else if (t == Token.END) {
+          depth--;
+        }
+      }
+    }
+  }
+
+  private void checkToken(Token expected) {
+    if (token != expected) {
+      throw new IllegalStateException("Current token is " + token + ", not " + expected + ".");
+    }
+  }
+
+  /**
+   * Closes the input stream.
+   */
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+}
@@ -0,0 +1,147 @@
+package net.readmarks.jsono;
+
+import java.util.Arrays;
+
+/**
+ * Bounded table of canonical map key strings.
+ * Keys are looked up by contents of a {@link CharSequence} so matching a key that is already in the table
+ * does not allocate. Each key in the table has an int id, ids are assigned sequentially starting from 0
+ * in order the keys were added.
+ * <p>
+ * Expected keys can be registered up front with {@link #register(String)}, handlers can then
+ * dispatch on key ids instead of comparing strings (see {@link EventHandler#onKey(int, String)}).
+ * Other keys are added as they are encountered until the table reaches its capacity.
+ * <p>
+ * Not thread safe, a table should be used by one parser at a time.
+ *
+ * @see FlatJsonParser#setKeyTable(KeyTable)
+ */
+public class KeyTable {
+  /**
+   * Id of a key that is not in the table.
+   */
+  public static final int UNKNOWN = -1;
+
+  private final int capacity;
+  /**
+   * Open addressing hash table of key ids, {@link #UNKNOWN} marks empty slots.
+   */
+  private final int[] slots;
+  private final int[] hashes;
+  private final String[] keys;
+  private int size = 0;
+
+  public KeyTable() {
+    this(1024);
+  }
+
+  /**
+   * @param capacity Max number of keys in the table.
+   * @param keys     Keys to register, their ids are indexes in this array.
+   */
+  public KeyTable(int capacity, String... keys) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("Capacity should not be negative. capacity=" + capacity + ".");
+    }
+    this.capacity = capacity;
+    this.keys = new String[capacity];
+    this.hashes = new int[capacity];
+    // Load factor is at most 0.5
+    this.slots = new int[Integer.highestOneBit(Math.max(1, capacity) * 2 - 1) * 2];
+    Arrays.fill(slots, UNKNOWN);
+    for (String key : keys) {
+      register(key);
+    }
+  }
+
+  /**
+   * Adds the key to the table if it is not there yet.
+   *
+   * @return Id of the key.
+   * @throws IllegalStateException if the table is full.
+   */
+  public int register(String key) {
+    final int id = intern(key);
+    if (id == UNKNOWN) {
+      throw new IllegalStateException("Key table is full. capacity=" + capacity + ".");
+    }
+    return id;
+  }
+
+  /**
+   * @return Id of the key or {@link #UNKNOWN} if the key is not in the table.
+   */
+  public int find(CharSequence key) {
+    final int hash = hash(key);
+    final int mask = slots.length - 1;
+    for (int i = hash & mask; ; i = (i + 1) & mask) {
+      final int id = slots[i];
+      if (id == UNKNOWN) {
+        return UNKNOWN;
+      } else if (hashes[id] == hash && keys[id].contentEquals(key)) {
+        return id;
+      }
+    }
+  }
+
+  /**
+   * Looks up the key and adds it to the table if it is not there and table is not full.
+   *
+   * @return Id of the key or {@link #UNKNOWN} if the key is not in the table and table is full.
+   */
+  public int intern(CharSequence key) {
+    final int hash = hash(key);
+    final int mask = slots.length - 1;
+    int i = hash & mask;
+    for (; ; i = (i + 1) & mask) {
+      final int id = slots[i];
+      if (id == UNKNOWN) {
+        break;
+      } else if (hashes[id] == hash && keys[id].contentEquals(key)) {
+        return id;
+      }
+    }
+    if (size == capacity) {
+      return UNKNOWN;
+    }
+    final int id = size++;
+    keys[id] = key.toString();
+    hashes[id] = hash;
+    slots[i] = id;
+    return id;
+  }
+
+  /**
+   * @return Canonical instance of the key. New instance if the key is not in the table and table is full.
+   */
+  public String canonical(CharSequence key) {
+    final int id = intern(key);
+    return id == UNKNOWN ? key.toString() : keys[id];
+  }
+
+  /**
+   * @return Key with given id.
+   */
+  public String key(int id) {
+    if (id < 0 || id >= size) {
+      throw new IndexOutOfBoundsException("No key with id " + id + ".");
+    }
+    return keys[id];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  private static int hash(CharSequence key) {
+    int h = 0;
+    for (int i = 0; i < key.length(); i++) {
+      h = 31 * h + key.charAt(i);
+    }
+    return h ^ (h >>> 16);
+  }
+}
@@ -0,0 +1,12 @@
+package net.readmarks.jsono;
+
+/**
+ * Input exceeds one of {@link ParserLimits}.
+ */
+public class LimitExceededException extends JsonParser.ParseException {
+  private static final long serialVersionUID = 1L;
+
+  LimitExceededException(String s) {
+    super(s);
+  }
+}
@@ -0,0 +1,74 @@
+package net.readmarks.jsono;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Parses UTF-8 encoded files without copying their contents to heap.
+ * A file is memory mapped in windows of bounded size which are passed to
+ * {@link FlatJsonParser#parseNext(java.nio.ByteBuffer)} as they are, so files larger than 2GB are supported.
+ * Windows do not need to be aligned to tokens or characters.
+ * <p>
+ * If a handler suspends the parser (see {@link FlatJsonParser#suspend()}) parsing stops and the offset
+ * of the first unparsed byte is returned, parsing can be continued from there after {@link FlatJsonParser#resume()}.
+ * <p>
+ * Mapped windows are released when they are garbage collected.
+ */
+public final class MappedFile {
+  /**
+   * Default size of mapped window.
+   */
+  public static final int DEFAULT_WINDOW = 1 << 28;
+
+  private MappedFile() {
+  }
+
+  /**
+   * Parses whole file. Does not call {@link FlatJsonParser#end()} so the file may be followed by other input.
+   *
+   * @return Offset in the file where parsing stopped, size of the file unless the parser was suspended.
+   */
+  public static long parse(Path file, FlatJsonParser parser) throws IOException {
+    return parse(file, parser, DEFAULT_WINDOW);
+  }
+
+  /**
+   * @param window Max number of bytes mapped at once.
+   * @see #parse(Path, FlatJsonParser)
+   */
+  public static long parse(Path file, FlatJsonParser parser, int window) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      return parse(channel, 0, channel.size(), parser, window);
+    }
+  }
+
+  /**
+   * Parses a region of a file.
+   *
+   * @param channel  Channel that supports mapping (e.g. of a file opened for reading).
+   * @param position Offset of the region in the file.
+   * @param size     Size of the region.
+   * @param window   Max number of bytes mapped at once.
+   * @return Offset in the file where parsing stopped, end of the region unless the parser was suspended.
+   */
+  public static long parse(FileChannel channel, long position, long size, FlatJsonParser parser, int window)
+          throws IOException {
+    if (window <= 0) {
+      throw new IllegalArgumentException("Window size should be positive. window=" + window + ".");
+    }
+    final long end = position + size;
+    for (long pos = position; pos < end; pos += window) {
+      final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(window, end - pos));
+      buffer.order(ByteOrder.nativeOrder());
+      parser.parseNext(buffer);
+      if (buffer.hasRemaining()) {
+        return pos + buffer.position();
+      }
+    }
+    return end;
+  }
+}
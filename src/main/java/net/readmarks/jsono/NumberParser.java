@@ -0,0 +1,376 @@
+package net.readmarks.jsono;
+
+import net.readmarks.jsono.JsonParser.ParseException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Incremental parser of JSON numbers. Validates number grammar as chars arrive
+ * and accumulates significant digits into a long.
+ * <p>
+ * Integers that fit into long are reported with {@link EventHandler#onLong(long)}, larger ones as {@link BigInteger}.
+ * Numbers with fraction or exponent part are reported with {@link EventHandler#onDouble(double)},
+ * numbers beyond double range as {@link BigDecimal}. Doubles are converted with Clinger's fast path
+ * or Eisel-Lemire algorithm, falling back to {@link Double#parseDouble(String)} in the rare cases
+ * these can not guarantee correct rounding.
+ * <p>
+ * An instance is reused for subsequent numbers, see {@link #start()}.
+ */
+final class NumberParser {
+  // Grammar states
+  private static final int START = 0;
+  private static final int MINUS = 1;
+  /** Integer part is single '0'. */
+  private static final int ZERO = 2;
+  private static final int INT = 3;
+  /** After '.', expecting a digit. */
+  private static final int FRAC_START = 4;
+  private static final int FRAC = 5;
+  /** After 'e' or 'E', expecting sign or a digit. */
+  private static final int EXP_START = 6;
+  /** After exponent sign, expecting a digit. */
+  private static final int EXP_SIGN = 7;
+  private static final int EXP = 8;
+
+  /** Max number of decimal digits that always fit into unsigned long. */
+  private static final int MAX_DIGITS = 19;
+  /**
+   * Exponent value is saturated at this magnitude. It is larger than magnitude of any scale (that is bounded
+   * by the number's length), so a saturated exponent is out of double range after the scale is applied.
+   */
+  private static final long MAX_EXPONENT = 1L << 40;
+
+  /**
+   * Text of the number is kept for numbers that are out of range of the fast conversions.
+   */
+  private final StringBuilder text = new StringBuilder();
+  private int maxLength = Integer.MAX_VALUE;
+  private int state;
+  private boolean negative;
+  /** Significant digits as unsigned long. */
+  private long digits;
+  private int digitCount;
+  /** More significant digits than fit into {@link #digits}. */
+  private boolean truncated;
+  /** Decimal exponent adjustment for fraction digits. */
+  private int scale;
+  private long exponent;
+  private boolean negativeExponent;
+
+  /**
+   * @param maxLength Max number of chars in a number, see {@link ParserLimits#setMaxNumberLength(int)}.
+   */
+  void setMaxLength(int maxLength) {
+    this.maxLength = maxLength;
+  }
+
+  /**
+   * Prepares the parser for next number.
+   */
+  void start() {
+    text.setLength(0);
+    state = START;
+    negative = false;
+    digits = 0;
+    digitCount = 0;
+    truncated = false;
+    scale = 0;
+    exponent = 0;
+    negativeExponent = false;
+  }
+
+  /**
+   * @return Number of chars of current number.
+   */
+  int length() {
+    return text.length();
+  }
+
+  /**
+   * @param ch next char of input
+   * @return true if the char is a part of the number, false if the char is not consumed and ends the number.
+   * @throws ParseException if the char can only be part of a number but is not valid in this position.
+   */
+  boolean parse(final char ch) {
+    if (ch >= '0' && ch <= '9') {
+      final int digit = ch - '0';
+      switch (state) {
+        case START:
+        case MINUS:
+          if (digit == 0) {
+            state = ZERO;
+          } else {
+            state = INT;
+            addDigit(digit, false);
+          }
+          break;
+        case INT:
+          addDigit(digit, false);
+          break;
+        case FRAC_START:
+        case FRAC:
+          state = FRAC;
+          addDigit(digit, true);
+          break;
+        case EXP_START:
+        case EXP_SIGN:
+        case EXP:
+          state = EXP;
+          if (exponent < MAX_EXPONENT) {
+            exponent = exponent * 10 + digit;
+          }
+          break;
+        default:
+          throw unexpected(ch);
+      }
+    } else {
+      switch (ch) {
+        case '-':
+          if (state == START) {
+            negative = true;
+            state = MINUS;
+          } else if (state == EXP_START) {
+            negativeExponent = true;
+            state = EXP_SIGN;
+          } else {
+            throw unexpected(ch);
+          }
+          break;
+        case '+':
+          if (state != EXP_START) {
+            throw unexpected(ch);
+          }
+          state = EXP_SIGN;
+          break;
+        case '.':
+          if (state != ZERO && state != INT) {
+            throw unexpected(ch);
+          }
+          state = FRAC_START;
+          break;
+        case 'e':
+        case 'E':
+          if (state != ZERO && state != INT && state != FRAC) {
+            throw unexpected(ch);
+          }
+          state = EXP_START;
+          break;
+        default:
+          return false;
+      }
+    }
+    if (text.length() >= maxLength) {
+      throw new LimitExceededException("Number is longer than " + maxLength + " chars.");
+    }
+    text.append(ch);
+    return true;
+  }
+
+  /**
+   * @return false if the char ends a number, that is {@link #parse(char)} would return false for it.
+   */
+  static boolean isNumberChar(final char ch) {
+    return ch >= '0' && ch <= '9' || ch == '-' || ch == '+' || ch == '.' || ch == 'e' || ch == 'E';
+  }
+
+  private void addDigit(final int digit, final boolean fraction) {
+    if (digitCount == 0 && digit == 0) {
+      // Leading zeros of fraction are not significant
+      scale--;
+    } else if (digitCount < MAX_DIGITS) {
+      digits = digits * 10 + digit;
+      digitCount++;
+      if (fraction) {
+        scale--;
+      }
+    } else {
+      truncated = true;
+    }
+  }
+
+  private ParseException unexpected(final char ch) {
+    return new ParseException("Unexpected character '" + ch + "' in number '" + text + "'.");
+  }
+
+  /**
+   * Reports parsed number to the handler.
+   *
+   * @throws ParseException if the number is incomplete.
+   */
+  void complete(final EventHandler handler) {
+    switch (state) {
+      case ZERO:
+      case INT:
+        completeInteger(handler);
+        break;
+      case FRAC:
+      case EXP:
+        completeDouble(handler);
+        break;
+      default:
+        throw new ParseException("Incomplete number '" + text + "'.");
+    }
+  }
+
+  private void completeInteger(final EventHandler handler) {
+    if (!truncated) {
+      if (!negative && digits >= 0) {
+        handler.onLong(digits);
+        return;
+      } else if (negative && Long.compareUnsigned(digits, Long.MIN_VALUE) <= 0) {
+        handler.onLong(-digits);
+        return;
+      }
+    }
+    handler.onValue(new BigInteger(text.toString()));
+  }
+
+  private void completeDouble(final EventHandler handler) {
+    double value = Double.NaN;
+    if (!truncated) {
+      final long exp10 = scale + (negativeExponent ? -exponent : exponent);
+      value = toDouble(digits, (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, exp10)));
+      if (negative) {
+        value = -value;
+      }
+    }
+    if (Double.isNaN(value)) {
+      value = Double.parseDouble(text.toString());
+    }
+    if (Double.isInfinite(value)) {
+      final BigDecimal big;
+      try {
+        big = new BigDecimal(text.toString());
+      } catch (NumberFormatException e) {
+        throw new ParseException("Number '" + text + "' is out of range.");
+      }
+      handler.onValue(big);
+    } else {
+      handler.onDouble(value);
+    }
+  }
+
+  private static final double[] POWERS_OF_TEN = {
+          1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+          1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+  /**
+   * @param w unsigned decimal significand
+   * @param q decimal exponent
+   * @return Correctly rounded value of w * 10^q or NaN if it can not be computed with fast algorithms.
+   */
+  static double toDouble(final long w, final int q) {
+    if (w == 0 || q < Pow5.MIN_EXPONENT) {
+      return 0.0;
+    }
+    if (q > Pow5.MAX_EXPONENT) {
+      return Double.POSITIVE_INFINITY;
+    }
+    if (q >= -22 && q <= 22 && w >= 0 && w <= (1L << 53)) {
+      // Clinger's fast path, both w and 10^|q| are exact doubles
+      final double d = (double) w;
+      return q < 0 ? d / POWERS_OF_TEN[-q] : d * POWERS_OF_TEN[q];
+    }
+    return eiselLemire(w, q);
+  }
+
+  /**
+   * Eisel-Lemire algorithm, see Daniel Lemire, "Number Parsing at a Gigabyte per Second".
+   * Follows the fast_float implementation. Subnormal results are left to the slow path.
+   *
+   * @return Correctly rounded value of w * 10^q or NaN if result can not be determined.
+   */
+  private static double eiselLemire(long w, final int q) {
+    final int lz = Long.numberOfLeadingZeros(w);
+    w <<= lz;
+    final int index = 2 * (q - Pow5.MIN_EXPONENT);
+    long high = unsignedMultiplyHigh(w, Pow5.TABLE[index]);
+    long low = w * Pow5.TABLE[index];
+    // Only 55 leading bits of the product are needed, refine if the truncated part may affect them
+    final long precisionMask = 0xFFFFFFFFFFFFFFFFL >>> 55;
+    if ((high & precisionMask) == precisionMask) {
+      final long secondHigh = unsignedMultiplyHigh(w, Pow5.TABLE[index + 1]);
+      final long newLow = low + secondHigh;
+      if (Long.compareUnsigned(secondHigh, newLow) > 0) {
+        high++;
+      }
+      low = newLow;
+    }
+    if (low == -1L && (q < -27 || q > 55)) {
+      return Double.NaN;
+    }
+    final int upperBit = (int) (high >>> 63);
+    long mantissa = high >>> (upperBit + 9);
+    int power2 = (int) (((152170L + 65536L) * q) >> 16) + 63 + upperBit - lz + 1023;
+    if (power2 <= 0) {
+      return Double.NaN;
+    }
+    if (Long.compareUnsigned(low, 1) <= 0 && q >= -4 && q <= 23 && (mantissa & 3) == 1) {
+      // Exactly halfway between two doubles, round to even
+      if ((mantissa << (upperBit + 9)) == high) {
+        mantissa &= ~1L;
+      }
+    }
+    mantissa += mantissa & 1;
+    mantissa >>>= 1;
+    if (mantissa >= (2L << 52)) {
+      mantissa = 1L << 52;
+      power2++;
+    }
+    mantissa &= ~(1L << 52);
+    if (power2 >= 0x7FF) {
+      return Double.POSITIVE_INFINITY;
+    }
+    return Double.longBitsToDouble(mantissa | ((long) power2 << 52));
+  }
+
+  /**
+   * @return High 64 bits of unsigned 128-bit product.
+   */
+  static long unsignedMultiplyHigh(final long x, final long y) {
+    final long x0 = x & 0xFFFFFFFFL;
+    final long x1 = x >>> 32;
+    final long y0 = y & 0xFFFFFFFFL;
+    final long y1 = y >>> 32;
+    final long p01 = x0 * y1;
+    final long middle = x1 * y0 + ((x0 * y0) >>> 32) + (p01 & 0xFFFFFFFFL);
+    return x1 * y1 + (middle >>> 32) + (p01 >>> 32);
+  }
+
+  /**
+   * 128-bit approximations of powers of five, normalized so the most significant bit is set.
+   * Initialized on first use, so it is not loaded when only integers are parsed.
+   */
+  private static final class Pow5 {
+    static final int MIN_EXPONENT = -342;
+    static final int MAX_EXPONENT = 308;
+    /**
+     * Pairs of (high, low) 64-bit halves for exponents from {@link #MIN_EXPONENT} to {@link #MAX_EXPONENT}.
+     */
+    static final long[] TABLE = new long[2 * (MAX_EXPONENT - MIN_EXPONENT + 1)];
+
+    static {
+      final BigInteger two128 = BigInteger.ONE.shiftLeft(128);
+      final BigInteger five = BigInteger.valueOf(5);
+      for (int q = MIN_EXPONENT; q <= MAX_EXPONENT; q++) {
+        BigInteger c;
+        if (q < 0) {
+          final BigInteger power5 = five.pow(-q);
+          final int z = power5.bitLength();
+          final int b = q >= -27 ? z + 127 : 2 * z + 128;
+          c = BigInteger.ONE.shiftLeft(b).divide(power5).add(BigInteger.ONE);
+          while (c.compareTo(two128) >= 0) {
+            c = c.shiftRight(1);
+          }
+        } else {
+          c = five.pow(q);
+          c = c.shiftLeft(Math.max(0, 128 - c.bitLength())).shiftRight(Math.max(0, c.bitLength() - 128));
+        }
+        final int index = 2 * (q - MIN_EXPONENT);
+        TABLE[index] = c.shiftRight(64).longValue();
+        TABLE[index + 1] = c.longValue();
+      }
+    }
+  }
+}
@@ -0,0 +1,222 @@
+package net.readmarks.jsono;
+
+import net.readmarks.jsono.JsonParser.ParseException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Parses a large input that consists of many top-level documents on multiple threads.
+ * The input is split into chunks at record boundaries, chunks are parsed in parallel by independent
+ * {@link FlatJsonParser}s, one per worker thread.
+ * <p>
+ * By default input is expected to be newline delimited JSON (NDJSON, one document per line) so it
+ * can be split at any line feed. For other sequences of concatenated documents (e.g. pretty printed ones)
+ * see {@link #setNewlineDelimited(boolean)}.
+ * <p>
+ * Events of each chunk go to a separate handler, results that the handlers produce are delivered
+ * to the output on the calling thread, see {@link #parse(ByteBuffer, Function, Consumer)}.
+ */
+public class ParallelParser {
+  private final ForkJoinPool pool;
+  private final ParserPool parsers;
+  private int chunkSize = 1 << 20;
+  private boolean ordered = true;
+  private boolean newlineDelimited = true;
+
+  public ParallelParser() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  public ParallelParser(ForkJoinPool pool) {
+    this(pool, new ParserPool());
+  }
+
+  /**
+   * @param parsers Provides parsers for worker threads.
+   */
+  public ParallelParser(ForkJoinPool pool, ParserPool parsers) {
+    this.pool = pool;
+    this.parsers = parsers;
+  }
+
+  /**
+   * @param size Approximate size of a chunk in bytes. Chunks are extended to the next record boundary.
+   */
+  public void setChunkSize(int size) {
+    if (size <= 0) {
+      throw new IllegalArgumentException("Chunk size should be positive. size=" + size + ".");
+    }
+    this.chunkSize = size;
+  }
+
+  /**
+   * @param ordered true to deliver results in input order (default),
+   *                false to deliver results of each chunk as soon as it is parsed.
+   */
+  public void setOrdered(boolean ordered) {
+    this.ordered = ordered;
+  }
+
+  /**
+   * @param newlineDelimited true if each document is on a separate line (default).
+   *                         Otherwise record boundaries are found by scanning the input on the calling thread,
+   *                         tracking only brackets and strings.
+   */
+  public void setNewlineDelimited(boolean newlineDelimited) {
+    this.newlineDelimited = newlineDelimited;
+  }
+
+  /**
+   * Parses all remaining bytes of UTF-8 encoded input. Buffer's position is advanced to its limit.
+   * The buffer should not be modified while it is parsed.
+   *
+   * @param input    Sequence of JSON documents.
+   * @param handlers Creates handler for a chunk of input given a consumer of results (e.g. {@code SimpleDeserializer::new}).
+   *                 Handlers are called from worker threads.
+   * @param out      Receives results on the calling thread.
+   * @throws ParseException if input is not valid or exceeds limits of the pooled parsers
+   *                        (see {@link ParserPool#ParserPool()}), with offset of the chunk as a suppressed exception.
+   */
+  public <T> void parse(ByteBuffer input, Function<Consumer<T>, EventHandler> handlers, Consumer<T> out) {
+    final int window = 2 * pool.getParallelism();
+    final CompletionService<List<T>> completed = new ExecutorCompletionService<>(pool);
+    final Deque<Future<List<T>>> pending = new ArrayDeque<>();
+    final BoundaryScanner scanner = newlineDelimited ? null : new BoundaryScanner(input.position());
+    try {
+      int start = input.position();
+      while (start < input.limit()) {
+        final int min = input.limit() - start > chunkSize ? start + chunkSize : input.limit();
+        final int end = scanner == null
+                ? nextLine(input, min, input.limit())
+                : scanner.next(input, min, input.limit());
+        final ByteBuffer chunk = input.duplicate().order(ByteOrder.nativeOrder());
+        chunk.limit(end).position(start);
+        final Callable<List<T>> task = () -> parseChunk(chunk, handlers);
+        // Completion queue would retain all results in ordered mode
+        pending.add(ordered ? pool.submit(task) : completed.submit(task));
+        start = end;
+        if (pending.size() >= window) {
+          deliver(ordered ? pending.removeFirst() : remove(pending, completed.take()), out);
+        }
+      }
+      while (!pending.isEmpty()) {
+        deliver(ordered ? pending.removeFirst() : remove(pending, completed.take()), out);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while parsing.", e);
+    } finally {
+      for (Future<List<T>> f : pending) {
+        f.cancel(false);
+      }
+    }
+    input.position(input.limit());
+  }
+
+  private static <T> Future<T> remove(Deque<Future<T>> pending, Future<T> future) {
+    pending.remove(future);
+    return future;
+  }
+
+  private static <T> void deliver(Future<List<T>> result, Consumer<T> out) throws InterruptedException {
+    final List<T> values;
+    try {
+      values = result.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+    values.forEach(out);
+  }
+
+  private <T> List<T> parseChunk(ByteBuffer chunk, Function<Consumer<T>, EventHandler> handlers) {
+    final int start = chunk.position();
+    final List<T> values = new ArrayList<>();
+    final FlatJsonParser parser = parsers.acquire(handlers.apply(values::add));
+    try {
+      parser.parseNext(chunk);
+      parser.end();
+    } catch (ParseException e) {
+      e.addSuppressed(new ParseException("Error in chunk at byte " + start + "."));
+      throw e;
+    } finally {
+      parsers.release(parser);
+    }
+    return values;
+  }
+
+  /**
+   * @return Index after next line feed at or after the position, or end.
+   */
+  private static int nextLine(ByteBuffer input, int pos, int end) {
+    while (pos < end) {
+      if (input.get(pos++) == '\n') {
+        return pos;
+      }
+    }
+    return end;
+  }
+
+  /**
+   * Finds ends of top-level documents. Tracks nesting depth and strings from the start of input,
+   * the input is scanned once as chunks are split.
+   */
+  private static final class BoundaryScanner {
+    private int pos;
+    private int depth = 0;
+    private boolean inString = false;
+    private boolean escape = false;
+
+    BoundaryScanner(int start) {
+      this.pos = start;
+    }
+
+    /**
+     * @return Index after the first document end at or after the position, or end.
+     */
+    int next(ByteBuffer input, int min, int end) {
+      while (pos < end) {
+        final byte b = input.get(pos++);
+        if (inString) {
+          if (escape) {
+            escape = false;
+          } else if (b == '\\') {
+            escape = true;
+          } else if (b == '"') {
+            inString = false;
+            if (depth == 0 && pos >= min) {
+              return pos;
+            }
+          }
+        } else if (b == '"') {
+          inString = true;
+        } else if (b == '[' || b == '{') {
+          depth++;
+        } else if (b == ']' || b == '}') {
+          depth--;
+          if (depth == 0 && pos >= min) {
+            return pos;
+          }
+        } else if (depth == 0 && pos >= min && (b == ' ' || b == '\n' || b == '\r' || b == '\t')) {
+          return pos;
+        }
+      }
+      return end;
+    }
+  }
+}
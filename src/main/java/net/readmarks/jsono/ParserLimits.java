@@ -0,0 +1,111 @@
+package net.readmarks.jsono;
+
+/**
+ * Limits of input documents that parsers enforce while parsing, so malicious or broken input
+ * can not make them (and handlers that accumulate values) use unbounded memory.
+ * Limits are checked before a value exceeding them is accumulated, parsers throw {@link LimitExceededException}.
+ * <p>
+ * Parsers copy the limits on {@code setLimits()}, later changes of this instance do not affect them.
+ * New instance has no limits, see also {@link #defaults()}.
+ *
+ * @see FlatJsonParser#setLimits(ParserLimits)
+ * @see JsonParser#setLimits(ParserLimits)
+ */
+public class ParserLimits {
+  private int maxDepth = Integer.MAX_VALUE;
+  private int maxStringLength = Integer.MAX_VALUE;
+  private int maxNumberLength = Integer.MAX_VALUE;
+  private int maxMapSize = Integer.MAX_VALUE;
+  private long maxEvents = Long.MAX_VALUE;
+  private long maxDocumentLength = Long.MAX_VALUE;
+
+  /**
+   * @return Limits used by makeDefault() methods of parsers: depth 1000, strings up to 16M chars,
+   * numbers up to 1000 chars.
+   */
+  public static ParserLimits defaults() {
+    final ParserLimits limits = new ParserLimits();
+    limits.setMaxDepth(1000);
+    limits.setMaxStringLength(1 << 24);
+    limits.setMaxNumberLength(1000);
+    return limits;
+  }
+
+  private static void checkPositive(long limit) {
+    if (limit <= 0) {
+      throw new IllegalArgumentException("Limit should be positive. limit=" + limit + ".");
+    }
+  }
+
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+
+  /**
+   * @param limit Max nesting depth of arrays and maps.
+   */
+  public void setMaxDepth(int limit) {
+    checkPositive(limit);
+    this.maxDepth = limit;
+  }
+
+  public int getMaxStringLength() {
+    return maxStringLength;
+  }
+
+  /**
+   * @param limit Max length of string values and map keys in chars, including strings that are delivered in chunks.
+   */
+  public void setMaxStringLength(int limit) {
+    checkPositive(limit);
+    this.maxStringLength = limit;
+  }
+
+  public int getMaxNumberLength() {
+    return maxNumberLength;
+  }
+
+  /**
+   * @param limit Max length of a number in chars.
+   */
+  public void setMaxNumberLength(int limit) {
+    checkPositive(limit);
+    this.maxNumberLength = limit;
+  }
+
+  public int getMaxMapSize() {
+    return maxMapSize;
+  }
+
+  /**
+   * @param limit Max number of keys in a map.
+   */
+  public void setMaxMapSize(int limit) {
+    checkPositive(limit);
+    this.maxMapSize = limit;
+  }
+
+  public long getMaxEvents() {
+    return maxEvents;
+  }
+
+  /**
+   * @param limit Max number of values (including arrays and maps) and map keys in a top-level document.
+   */
+  public void setMaxEvents(long limit) {
+    checkPositive(limit);
+    this.maxEvents = limit;
+  }
+
+  public long getMaxDocumentLength() {
+    return maxDocumentLength;
+  }
+
+  /**
+   * @param limit Max length of a top-level document in input units (chars, or bytes of UTF-8 input).
+   */
+  public void setMaxDocumentLength(long limit) {
+    checkPositive(limit);
+    this.maxDocumentLength = limit;
+  }
+}
@@ -0,0 +1,109 @@
+package net.readmarks.jsono;
+
+import java.util.function.Supplier;
+
+/**
+ * Keeps a reusable {@link FlatJsonParser} per thread, so parsing many small documents
+ * does not allocate a new parser and its buffers for every document.
+ * <p>
+ * Usage:
+ * <pre>
+ *   final FlatJsonParser parser = pool.acquire(handler);
+ *   try {
+ *     parser.parseNext(bytes, 0, bytes.length);
+ *     parser.end();
+ *   } finally {
+ *     pool.release(parser);
+ *   }
+ * </pre>
+ * If the thread's parser is already acquired (e.g. a document is parsed from within a handler of another one)
+ * a new parser instance is returned.
+ */
+public class ParserPool {
+  private static final EventHandler RELEASED = new EventHandler() {
+    @Override
+    public void onValue(Object x) {
+      throw new IllegalStateException("Parser is released.");
+    }
+
+    @Override
+    public void onArray() {
+      throw new IllegalStateException("Parser is released.");
+    }
+
+    @Override
+    public void onMap() {
+      throw new IllegalStateException("Parser is released.");
+    }
+
+    @Override
+    public void onMapKey() {
+      throw new IllegalStateException("Parser is released.");
+    }
+
+    @Override
+    public void onEnd() {
+      throw new IllegalStateException("Parser is released.");
+    }
+  };
+
+  private static class Slot {
+    final FlatJsonParser parser;
+    boolean inUse = false;
+
+    Slot(FlatJsonParser parser) {
+      this.parser = parser;
+    }
+  }
+
+  private final Supplier<FlatJsonParser> factory;
+  private final ThreadLocal<Slot> slots;
+
+  /**
+   * Pool of parsers with {@link ParserLimits#defaults()}.
+   */
+  public ParserPool() {
+    this(() -> {
+      final FlatJsonParser parser = new FlatJsonParser(RELEASED);
+      parser.setLimits(ParserLimits.defaults());
+      return parser;
+    });
+  }
+
+  /**
+   * @param factory Creates configured parser instances (e.g. with a key table).
+   *                The handler the parser is created with is replaced on acquire.
+   */
+  public ParserPool(Supplier<FlatJsonParser> factory) {
+    this.factory = factory;
+    this.slots = ThreadLocal.withInitial(() -> new Slot(factory.get()));
+  }
+
+  /**
+   * @param handler Will receive parsed JSON events.
+   * @return Reset parser bound to the handler.
+   */
+  public FlatJsonParser acquire(EventHandler handler) {
+    final Slot slot = slots.get();
+    final FlatJsonParser parser;
+    if (slot.inUse) {
+      parser = factory.get();
+    } else {
+      slot.inUse = true;
+      parser = slot.parser;
+    }
+    parser.reset(handler);
+    return parser;
+  }
+
+  /**
+   * Returns parser to the pool. The parser should not be used after this call.
+   */
+  public void release(FlatJsonParser parser) {
+    final Slot slot = slots.get();
+    if (slot.parser == parser) {
+      parser.reset(RELEASED);
+      slot.inUse = false;
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package net.readmarks.jsono;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * SIMD within a register: tests 8 bytes of input at once using long arithmetic.
+ * Words are read in little endian order, so byte at lowest address is the least significant one.
+ * Masks returned by the methods have high bit of each matching byte set.
+ */
+final class Swar {
+  private static final long ONES = 0x0101010101010101L;
+  private static final long HIGH_BITS = 0x8080808080808080L;
+  private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+  private Swar() {
+  }
+
+  /**
+   * @return true if words read from the buffer have to be byte-swapped to get little endian order.
+   */
+  static boolean needsSwap(final ByteBuffer in) {
+    return in.order() != ByteOrder.LITTLE_ENDIAN;
+  }
+
+  /**
+   * @return 8 bytes starting at index i in little endian order.
+   */
+  static long word(final ByteBuffer in, final int i, final boolean swap) {
+    final long w = in.getLong(i);
+    return swap ? Long.reverseBytes(w) : w;
+  }
+
+  /**
+   * @return Mask of zero bytes (exact, unlike the common "has zero byte" test).
+   */
+  static long zeroBytes(final long w) {
+    return ~(((w & LOW_BITS) + LOW_BITS) | w | LOW_BITS);
+  }
+
+  /**
+   * @return Mask of bytes equal to c.
+   */
+  static long equalBytes(final long w, final int c) {
+    return zeroBytes(w ^ (ONES * c));
+  }
+
+  /**
+   * @return Mask of bytes that can not be copied from a string literal as is: quote, backslash,
+   * control chars and non-ASCII bytes.
+   */
+  static long stringSpecials(final long w) {
+    return equalBytes(w, '"')
+            | equalBytes(w, '\\')
+            | zeroBytes(w & 0xE0E0E0E0E0E0E0E0L)
+            | (w & HIGH_BITS);
+  }
+
+  /**
+   * @return Mask of quote and backslash bytes.
+   */
+  static long stringEnds(final long w) {
+    return equalBytes(w, '"') | equalBytes(w, '\\');
+  }
+
+  /**
+   * @return Mask of quote, square and curly bracket bytes.
+   */
+  static long quotesAndBrackets(final long w) {
+    // Curly brackets differ from square ones only in bit 5
+    final long folded = w & ~(ONES * 0x20);
+    return equalBytes(w, '"') | equalBytes(folded, '[') | equalBytes(folded, ']');
+  }
+
+  /**
+   * @return Mask of bytes that are not JSON whitespace.
+   */
+  static long nonWhitespace(final long w) {
+    return ~(equalBytes(w, ' ') | equalBytes(w, '\n') | equalBytes(w, '\r') | equalBytes(w, '\t')) & HIGH_BITS;
+  }
+
+  /**
+   * @return Index of first byte in the mask, 8 if the mask is empty.
+   */
+  static int firstByte(final long mask) {
+    return Long.numberOfTrailingZeros(mask) >>> 3;
+  }
+}
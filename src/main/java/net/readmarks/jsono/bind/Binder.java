@@ -0,0 +1,357 @@
+package net.readmarks.jsono.bind;
+
+import net.readmarks.jsono.EventHandler;
+import net.readmarks.jsono.FlatJsonParser;
+import net.readmarks.jsono.handler.SimpleDeserializer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Builds objects of a class directly from JSON events, one per top-level map.
+ * Map entries are assigned to fields of the object as described by an {@link ObjectBinding},
+ * primitive fields are set from typed {@link EventHandler} callbacks without boxing.
+ * Entries with unknown keys are ignored (see also {@link #setParser(FlatJsonParser)}).
+ * <p>
+ * Usage:
+ * <pre>
+ *   FlatJsonParser.makeDefault(new Binder&lt;&gt;(Foo.class, foos::add))
+ * </pre>
+ *
+ * @see ObjectBinding
+ * @see JsonBindable
+ */
+public class Binder<T> implements EventHandler {
+  private static final int OBJECT = 0;
+  private static final int LIST = 1;
+
+  /**
+   * Object or list that is being built.
+   */
+  private static final class Frame {
+    int kind;
+    ObjectBinding<Object> binding;
+    Object target;
+    /**
+     * Field of the next value of an object.
+     */
+    int field;
+    FieldType fieldType;
+    List<Object> list;
+  }
+
+  private final ObjectBinding<Object> binding;
+  private final Consumer<? super T> out;
+
+  private Frame[] frames = new Frame[8];
+  private int depth = 0;
+  private boolean expectKey = false;
+  /**
+   * Nesting depth within an ignored value.
+   */
+  private int ignoreDepth = 0;
+  /**
+   * Receives values of {@link FieldType.Kind#ANY} fields that are arrays or maps.
+   */
+  private final SimpleDeserializer any = new SimpleDeserializer(this::addValue);
+  private int anyDepth = 0;
+  private FlatJsonParser parser;
+
+  /**
+   * Binds with a runtime binding, see {@link ObjectBinding#of(Class)}.
+   */
+  public Binder(Class<T> type, Consumer<? super T> out) {
+    this(ObjectBinding.of(type), out);
+  }
+
+  @SuppressWarnings("unchecked")
+  public Binder(ObjectBinding<T> binding, Consumer<? super T> out) {
+    this.binding = (ObjectBinding<Object>) binding;
+    this.out = out;
+    for (int i = 0; i < frames.length; i++) {
+      frames[i] = new Frame();
+    }
+  }
+
+  /**
+   * Enables skipping of values of unknown keys by the parser (see {@link FlatJsonParser#skipValue()}),
+   * so they are not parsed in full.
+   *
+   * @param parser The parser that sends events to this binder.
+   */
+  public void setParser(FlatJsonParser parser) {
+    this.parser = parser;
+  }
+
+  /**
+   * @return Type of the next value, null if it should be ignored.
+   */
+  private FieldType valueType() {
+    if (depth == 0) {
+      throw new IllegalArgumentException("Top-level value should be a map.");
+    }
+    final Frame frame = frames[depth - 1];
+    if (frame.kind == LIST) {
+      return frame.fieldType;
+    }
+    return frame.field == ObjectBinding.UNKNOWN ? null : frame.binding.fieldType(frame.field);
+  }
+
+  private void addValue(Object x) {
+    if (depth == 0) {
+      out.accept(castResult(x));
+      return;
+    }
+    final Frame frame = frames[depth - 1];
+    if (frame.kind == LIST) {
+      frame.list.add(x);
+    } else if (frame.field != ObjectBinding.UNKNOWN) {
+      frame.binding.setObject(frame.target, frame.field, x);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private T castResult(Object x) {
+    return (T) x;
+  }
+
+  private boolean forwarded() {
+    return ignoreDepth > 0 || anyDepth > 0;
+  }
+
+  private void scalar(Object x) {
+    final FieldType type = valueType();
+    if (type != null) {
+      if (type.getKind() != FieldType.Kind.VALUE && type.getKind() != FieldType.Kind.ANY) {
+        throw new IllegalArgumentException("Can not bind " + x + " to " + type.getType().getName() + ".");
+      }
+      addValue(type.convert(x));
+    }
+  }
+
+  @Override
+  public void onValue(Object x) {
+    if (anyDepth > 0) {
+      any.onValue(x);
+    } else if (ignoreDepth == 0) {
+      if (x == null) {
+        onNull();
+      } else if (x instanceof Long) {
+        onLong((Long) x);
+      } else if (x instanceof Double) {
+        onDouble((Double) x);
+      } else if (x instanceof Boolean) {
+        onBoolean((Boolean) x);
+      } else {
+        scalar(x);
+      }
+    }
+  }
+
+  @Override
+  public void onLong(long x) {
+    if (forwarded()) {
+      onForwarded(x);
+      return;
+    }
+    final FieldType type = valueType();
+    if (type == null) {
+      return;
+    }
+    final Frame frame = frames[depth - 1];
+    if (type.getKind() == FieldType.Kind.LONG && frame.kind == OBJECT) {
+      frame.binding.setLong(frame.target, frame.field, type.checkLong(x));
+    } else if (type.getKind() == FieldType.Kind.DOUBLE && frame.kind == OBJECT) {
+      frame.binding.setDouble(frame.target, frame.field, x);
+    } else {
+      scalar(x);
+    }
+  }
+
+  @Override
+  public void onDouble(double x) {
+    if (forwarded()) {
+      onForwarded(x);
+      return;
+    }
+    final FieldType type = valueType();
+    if (type == null) {
+      return;
+    }
+    final Frame frame = frames[depth - 1];
+    if (type.getKind() == FieldType.Kind.DOUBLE && frame.kind == OBJECT) {
+      frame.binding.setDouble(frame.target, frame.field, x);
+    } else {
+      scalar(x);
+    }
+  }
+
+  @Override
+  public void onBoolean(boolean x) {
+    if (forwarded()) {
+      onForwarded(x);
+      return;
+    }
+    final FieldType type = valueType();
+    if (type == null) {
+      return;
+    }
+    final Frame frame = frames[depth - 1];
+    if (type.getKind() == FieldType.Kind.BOOLEAN && frame.kind == OBJECT) {
+      frame.binding.setBoolean(frame.target, frame.field, x);
+    } else {
+      scalar(x);
+    }
+  }
+
+  @Override
+  public void onNull() {
+    if (forwarded()) {
+      onForwarded(null);
+      return;
+    }
+    final FieldType type = valueType();
+    // Primitive fields keep their values
+    if (type != null && type.getKind() != FieldType.Kind.LONG && type.getKind() != FieldType.Kind.DOUBLE
+            && type.getKind() != FieldType.Kind.BOOLEAN) {
+      addValue(null);
+    }
+  }
+
+  @Override
+  public void onString(CharSequence x) {
+    if (forwarded()) {
+      if (anyDepth > 0) {
+        any.onString(x);
+      }
+      return;
+    }
+    if (expectKey) {
+      expectKey = false;
+      final Frame frame = frames[depth - 1];
+      frame.field = frame.binding.field(x);
+      if (frame.field == ObjectBinding.UNKNOWN && parser != null) {
+        parser.skipValue();
+      }
+    } else {
+      scalar(x.toString());
+    }
+  }
+
+  private void onForwarded(Object x) {
+    if (anyDepth > 0) {
+      any.onValue(x);
+    }
+  }
+
+  private Frame push(int kind) {
+    if (depth == frames.length) {
+      frames = Arrays.copyOf(frames, depth * 2);
+      for (int i = depth; i < frames.length; i++) {
+        frames[i] = new Frame();
+      }
+    }
+    final Frame frame = frames[depth++];
+    frame.kind = kind;
+    return frame;
+  }
+
+  /**
+   * @return false if events of the container are not bound by this binder.
+   */
+  private boolean startContainer(FieldType.Kind expected) {
+    if (anyDepth > 0) {
+      anyDepth++;
+      return false;
+    }
+    if (ignoreDepth > 0) {
+      ignoreDepth++;
+      return false;
+    }
+    final FieldType type = depth == 0 ? null : valueType();
+    if (depth > 0 && type == null) {
+      ignoreDepth = 1;
+      return false;
+    }
+    if (type != null && type.getKind() == FieldType.Kind.ANY) {
+      anyDepth = 1;
+      return false;
+    }
+    if (type != null && type.getKind() != expected) {
+      throw new IllegalArgumentException("Can not bind " + (expected == FieldType.Kind.LIST ? "array" : "map")
+              + " to " + type.getType().getName() + ".");
+    }
+    return true;
+  }
+
+  @Override
+  public void onArray() {
+    if (startContainer(FieldType.Kind.LIST)) {
+      if (depth == 0) {
+        throw new IllegalArgumentException("Top-level value should be a map.");
+      }
+      final FieldType element = valueType().getElement();
+      final Frame frame = push(LIST);
+      frame.fieldType = element;
+      frame.list = new ArrayList<>();
+    } else if (anyDepth > 0) {
+      any.onArray();
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void onMap() {
+    if (startContainer(FieldType.Kind.OBJECT)) {
+      final ObjectBinding<Object> b = depth == 0 ? binding : (ObjectBinding<Object>) valueType().getBinding();
+      final Frame frame = push(OBJECT);
+      frame.binding = b;
+      frame.target = b.create();
+      frame.field = ObjectBinding.UNKNOWN;
+    } else if (anyDepth > 0) {
+      any.onMap();
+    }
+  }
+
+  @Override
+  public void onMapKey() {
+    if (anyDepth > 0) {
+      any.onMapKey();
+    } else if (ignoreDepth == 0) {
+      expectKey = true;
+    }
+  }
+
+  @Override
+  public void onEnd() {
+    if (ignoreDepth > 0) {
+      ignoreDepth--;
+    } else if (anyDepth > 0) {
+      anyDepth--;
+      // Deserializer passes completed value to addValue()
+      any.onEnd();
+    } else {
+      final Frame frame = frames[--depth];
+      final Object value = frame.kind == LIST ? frame.list : frame.target;
+      frame.target = null;
+      frame.list = null;
+      frame.binding = null;
+      addValue(value);
+    }
+  }
+
+  @Override
+  public void onReset() {
+    for (int i = 0; i < depth; i++) {
+      frames[i].target = null;
+      frames[i].list = null;
+    }
+    depth = 0;
+    expectKey = false;
+    ignoreDepth = 0;
+    anyDepth = 0;
+    any.onReset();
+  }
+}
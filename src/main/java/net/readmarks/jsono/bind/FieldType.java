@@ -0,0 +1,184 @@
+package net.readmarks.jsono.bind;
+
+import java.util.function.Supplier;
+
+/**
+ * Describes how JSON values are bound to a field (or to an element of a list field).
+ *
+ * @see ObjectBinding#fieldType(int)
+ */
+public final class FieldType {
+  public enum Kind {
+    /** Primitive integral field, set with {@link ObjectBinding#setLong(Object, int, long)}. */
+    LONG,
+    /** Primitive floating point field, set with {@link ObjectBinding#setDouble(Object, int, double)}. */
+    DOUBLE,
+    /** Primitive boolean field, set with {@link ObjectBinding#setBoolean(Object, int, boolean)}. */
+    BOOLEAN,
+    /** Scalar reference type (string, boxed primitive or enum), set with {@link ObjectBinding#setObject(Object, int, Object)}. */
+    VALUE,
+    /** Object that is bound with another {@link ObjectBinding}. */
+    OBJECT,
+    /** List of elements of another field type. */
+    LIST,
+    /** Any JSON value, arrays and maps are deserialized as with {@link net.readmarks.jsono.handler.SimpleDeserializer}. */
+    ANY
+  }
+
+  /**
+   * Field of type {@link Object} (or of a {@link java.util.Map}).
+   */
+  public static final FieldType ANY = new FieldType(Kind.ANY, Object.class, Long.MIN_VALUE, Long.MAX_VALUE, null, null);
+
+  private final Kind kind;
+  private final Class<?> type;
+  private final long min;
+  private final long max;
+  private final Supplier<? extends ObjectBinding<?>> bindingSupplier;
+  private final FieldType element;
+  private ObjectBinding<?> binding;
+
+  private FieldType(Kind kind, Class<?> type, long min, long max,
+                    Supplier<? extends ObjectBinding<?>> binding, FieldType element) {
+    this.kind = kind;
+    this.type = type;
+    this.min = min;
+    this.max = max;
+    this.bindingSupplier = binding;
+    this.element = element;
+  }
+
+  /**
+   * @param type A primitive type.
+   */
+  public static FieldType primitive(Class<?> type) {
+    if (type == long.class) {
+      return new FieldType(Kind.LONG, type, Long.MIN_VALUE, Long.MAX_VALUE, null, null);
+    } else if (type == int.class) {
+      return new FieldType(Kind.LONG, type, Integer.MIN_VALUE, Integer.MAX_VALUE, null, null);
+    } else if (type == short.class) {
+      return new FieldType(Kind.LONG, type, Short.MIN_VALUE, Short.MAX_VALUE, null, null);
+    } else if (type == byte.class) {
+      return new FieldType(Kind.LONG, type, Byte.MIN_VALUE, Byte.MAX_VALUE, null, null);
+    } else if (type == double.class || type == float.class) {
+      return new FieldType(Kind.DOUBLE, type, Long.MIN_VALUE, Long.MAX_VALUE, null, null);
+    } else if (type == boolean.class) {
+      return new FieldType(Kind.BOOLEAN, type, Long.MIN_VALUE, Long.MAX_VALUE, null, null);
+    }
+    throw new IllegalArgumentException("Unsupported primitive type " + type + ".");
+  }
+
+  /**
+   * @param type {@link String}, a boxed primitive type or an enum.
+   */
+  public static FieldType value(Class<?> type) {
+    if (type == Long.class) {
+      return new FieldType(Kind.VALUE, type, Long.MIN_VALUE, Long.MAX_VALUE, null, null);
+    } else if (type == Integer.class) {
+      return new FieldType(Kind.VALUE, type, Integer.MIN_VALUE, Integer.MAX_VALUE, null, null);
+    } else if (type == Short.class) {
+      return new FieldType(Kind.VALUE, type, Short.MIN_VALUE, Short.MAX_VALUE, null, null);
+    } else if (type == Byte.class) {
+      return new FieldType(Kind.VALUE, type, Byte.MIN_VALUE, Byte.MAX_VALUE, null, null);
+    } else if (type == String.class || type == Double.class || type == Float.class || type == Boolean.class
+            || type.isEnum()) {
+      return new FieldType(Kind.VALUE, type, Long.MIN_VALUE, Long.MAX_VALUE, null, null);
+    }
+    throw new IllegalArgumentException("Unsupported value type " + type + ".");
+  }
+
+  /**
+   * @param binding Provides binding of the field's class. Is called on first use, so bindings may refer to each other.
+   */
+  public static FieldType object(Class<?> type, Supplier<? extends ObjectBinding<?>> binding) {
+    return new FieldType(Kind.OBJECT, type, Long.MIN_VALUE, Long.MAX_VALUE, binding, null);
+  }
+
+  public static FieldType list(FieldType element) {
+    return new FieldType(Kind.LIST, java.util.List.class, Long.MIN_VALUE, Long.MAX_VALUE, null, element);
+  }
+
+  public Kind getKind() {
+    return kind;
+  }
+
+  public Class<?> getType() {
+    return type;
+  }
+
+  /**
+   * @return Type of elements of a {@link Kind#LIST}.
+   */
+  public FieldType getElement() {
+    return element;
+  }
+
+  /**
+   * @return Binding of an {@link Kind#OBJECT}.
+   */
+  public ObjectBinding<?> getBinding() {
+    if (binding == null) {
+      binding = bindingSupplier.get();
+    }
+    return binding;
+  }
+
+  /**
+   * Checks range of an integral value.
+   */
+  long checkLong(long x) {
+    if (x < min || x > max) {
+      throw new IllegalArgumentException("Value " + x + " is out of range of " + type.getName() + ".");
+    }
+    return x;
+  }
+
+  /**
+   * Converts a scalar JSON value to the type of a {@link Kind#VALUE} or of an {@link Kind#ANY}.
+   */
+  Object convert(Object x) {
+    if (x == null || kind == Kind.ANY) {
+      return x;
+    }
+    if (type == String.class) {
+      if (x instanceof String) {
+        return x;
+      }
+    } else if (type == Boolean.class) {
+      if (x instanceof Boolean) {
+        return x;
+      }
+    } else if (type.isEnum()) {
+      if (x instanceof String) {
+        return enumValue(type, (String) x);
+      }
+    } else if (x instanceof Long) {
+      final long v = checkLong((Long) x);
+      if (type == Long.class) {
+        return v;
+      } else if (type == Integer.class) {
+        return (int) v;
+      } else if (type == Short.class) {
+        return (short) v;
+      } else if (type == Byte.class) {
+        return (byte) v;
+      } else if (type == Double.class) {
+        return (double) v;
+      } else if (type == Float.class) {
+        return (float) v;
+      }
+    } else if (x instanceof Double) {
+      if (type == Double.class) {
+        return x;
+      } else if (type == Float.class) {
+        return ((Double) x).floatValue();
+      }
+    }
+    throw new IllegalArgumentException("Can not convert " + x + " to " + type.getName() + ".");
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static Object enumValue(Class<?> type, String name) {
+    return Enum.valueOf((Class) type, name);
+  }
+}
@@ -0,0 +1,22 @@
+package net.readmarks.jsono.bind;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class for which the jsono-processor annotation processor generates a handler at build time.
+ * For class {@code Foo} the handler is {@code Foo_JsonHandler}, a {@link Binder} in the same package
+ * with an {@link ObjectBinding} that assigns fields directly (see {@code Foo_JsonHandler.BINDING}).
+ * <p>
+ * The class should have a non-private no-argument constructor. Its non-static non-transient non-final fields
+ * (and ones of its superclasses) are bound, they should not be private. Fields of other classes should
+ * be of types supported by {@link FieldType}, classes of nested objects should be annotated too.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface JsonBindable {
+}
@@ -0,0 +1,69 @@
+package net.readmarks.jsono.bind;
+
+/**
+ * Creates instances of a class and sets their fields, used by {@link Binder}.
+ * Fields are addressed by indexes that are assigned by the binding.
+ * <p>
+ * Implementations are either created at runtime with {@link #of(Class)}, or are generated
+ * for classes annotated with {@link JsonBindable} at build time.
+ * Setters of each field are called only for its {@link FieldType.Kind}:
+ * {@link #setLong(Object, int, long)}, {@link #setDouble(Object, int, double)},
+ * {@link #setBoolean(Object, int, boolean)} for primitive fields and {@link #setObject(Object, int, Object)}
+ * for others.
+ */
+public abstract class ObjectBinding<T> {
+  /**
+   * Index returned by {@link #field(CharSequence)} for unknown keys.
+   */
+  public static final int UNKNOWN = -1;
+
+  /**
+   * @return Runtime binding of the class. Bound fields are non-static non-transient non-final fields
+   * of the class and of its superclasses, they are looked up with reflection once per class and
+   * are set with method handles, primitive fields without boxing.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> ObjectBinding<T> of(Class<T> type) {
+    return (ObjectBinding<T>) ReflectiveBinding.BINDINGS.get(type);
+  }
+
+  public abstract T create();
+
+  /**
+   * @return Index of the field for a map key, or {@link #UNKNOWN}.
+   */
+  public abstract int field(CharSequence key);
+
+  public abstract FieldType fieldType(int field);
+
+  public void setLong(T target, int field, long x) {
+    throw new UnsupportedOperationException("Field " + field + " is not integral.");
+  }
+
+  public void setDouble(T target, int field, double x) {
+    throw new UnsupportedOperationException("Field " + field + " is not floating point.");
+  }
+
+  public void setBoolean(T target, int field, boolean x) {
+    throw new UnsupportedOperationException("Field " + field + " is not boolean.");
+  }
+
+  public void setObject(T target, int field, Object x) {
+    throw new UnsupportedOperationException("Field " + field + " is primitive.");
+  }
+
+  /**
+   * Compares key contents with a string without copying the key.
+   */
+  protected static boolean matches(CharSequence key, String name) {
+    if (key.length() != name.length()) {
+      return false;
+    }
+    for (int i = 0; i < name.length(); i++) {
+      if (key.charAt(i) != name.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,191 @@
+package net.readmarks.jsono.bind;
+
+import net.readmarks.jsono.KeyTable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binding that is created at runtime. Fields are looked up with reflection once per class,
+ * values are set with method handles adapted to primitive argument types, so primitive fields are set without boxing.
+ * Bindings are cached per class.
+ * <p>
+ * This is the slow fallback for classes that are not annotated with {@link JsonBindable}.
+ * The setters are held in an array, not in static final fields, so the JIT compiler does not treat them
+ * as constants and can not inline them: every field assignment stays an indirect call.
+ * {@code LambdaMetafactory} does not help here since it binds methods, not fields.
+ * Handlers generated by the annotation processor assign fields directly.
+ * <p>
+ * Bound fields are non-static non-transient non-final fields of the class and of its superclasses.
+ * A field that is hidden by a field of a subclass is not bound.
+ */
+final class ReflectiveBinding extends ObjectBinding<Object> {
+  static final ClassValue<ReflectiveBinding> BINDINGS = new ClassValue<ReflectiveBinding>() {
+    @Override
+    protected ReflectiveBinding computeValue(Class<?> type) {
+      return new ReflectiveBinding(type);
+    }
+  };
+
+  private static final MethodType LONG_SETTER = MethodType.methodType(void.class, Object.class, long.class);
+  private static final MethodType DOUBLE_SETTER = MethodType.methodType(void.class, Object.class, double.class);
+  private static final MethodType BOOLEAN_SETTER = MethodType.methodType(void.class, Object.class, boolean.class);
+  private static final MethodType OBJECT_SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
+  private final MethodHandle constructor;
+  private final KeyTable keys;
+  private final FieldType[] types;
+  /**
+   * Setters adapted to one of the *_SETTER types according to the field's kind.
+   */
+  private final MethodHandle[] setters;
+
+  private ReflectiveBinding(Class<?> type) {
+    final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    try {
+      final java.lang.reflect.Constructor<?> c = type.getDeclaredConstructor();
+      c.setAccessible(true);
+      constructor = lookup.unreflectConstructor(c).asType(MethodType.methodType(Object.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new IllegalArgumentException("No accessible no-argument constructor in " + type.getName() + ".", e);
+    }
+    final List<Field> fields = new ArrayList<>();
+    for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+      for (Field f : c.getDeclaredFields()) {
+        if ((f.getModifiers() & (Modifier.STATIC | Modifier.TRANSIENT | Modifier.FINAL)) == 0 && !f.isSynthetic()) {
+          fields.add(f);
+        }
+      }
+    }
+    keys = new KeyTable(fields.size());
+    types = new FieldType[fields.size()];
+    setters = new MethodHandle[fields.size()];
+    for (Field f : fields) {
+      if (keys.find(f.getName()) != KeyTable.UNKNOWN) {
+        continue;
+      }
+      final int id = keys.register(f.getName());
+      types[id] = fieldType(f.getGenericType());
+      try {
+        f.setAccessible(true);
+        final MethodHandle setter = lookup.unreflectSetter(f);
+        setters[id] = MethodHandles.explicitCastArguments(setter, setterType(types[id].getKind()));
+      } catch (IllegalAccessException e) {
+        throw new IllegalArgumentException("Field " + f + " is not accessible.", e);
+      }
+    }
+  }
+
+  private static MethodType setterType(FieldType.Kind kind) {
+    switch (kind) {
+      case LONG:
+        return LONG_SETTER;
+      case DOUBLE:
+        return DOUBLE_SETTER;
+      case BOOLEAN:
+        return BOOLEAN_SETTER;
+      default:
+        return OBJECT_SETTER;
+    }
+  }
+
+  static FieldType fieldType(Type type) {
+    if (type instanceof Class) {
+      final Class<?> c = (Class<?>) type;
+      if (c.isPrimitive()) {
+        return FieldType.primitive(c);
+      } else if (c == Object.class || Map.class.isAssignableFrom(c)) {
+        return FieldType.ANY;
+      } else if (c == List.class || c == Collection.class || c == ArrayList.class || c == Iterable.class) {
+        return FieldType.list(FieldType.ANY);
+      } else if (c == String.class || c == Long.class || c == Integer.class || c == Short.class || c == Byte.class
+              || c == Double.class || c == Float.class || c == Boolean.class || c.isEnum()) {
+        return FieldType.value(c);
+      } else if (c.isArray() || c.isInterface() || Modifier.isAbstract(c.getModifiers())) {
+        throw new IllegalArgumentException("Unsupported field type " + c.getName() + ".");
+      }
+      return FieldType.object(c, () -> of(c));
+    } else if (type instanceof ParameterizedType) {
+      final ParameterizedType p = (ParameterizedType) type;
+      final FieldType raw = fieldType(p.getRawType());
+      if (raw.getKind() == FieldType.Kind.LIST) {
+        return FieldType.list(fieldType(p.getActualTypeArguments()[0]));
+      }
+      return raw;
+    }
+    throw new IllegalArgumentException("Unsupported field type " + type + ".");
+  }
+
+  @Override
+  public Object create() {
+    try {
+      return constructor.invokeExact();
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  @Override
+  public int field(CharSequence key) {
+    return keys.find(key);
+  }
+
+  @Override
+  public FieldType fieldType(int field) {
+    return types[field];
+  }
+
+  @Override
+  public void setLong(Object target, int field, long x) {
+    try {
+      setters[field].invokeExact(target, x);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  @Override
+  public void setDouble(Object target, int field, double x) {
+    try {
+      setters[field].invokeExact(target, x);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  @Override
+  public void setBoolean(Object target, int field, boolean x) {
+    try {
+      setters[field].invokeExact(target, x);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  @Override
+  public void setObject(Object target, int field, Object x) {
+    try {
+      setters[field].invokeExact(target, x);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  private static RuntimeException rethrow(Throwable e) {
+    if (e instanceof RuntimeException) {
+      return (RuntimeException) e;
+    } else if (e instanceof Error) {
+      throw (Error) e;
+    }
+    return new IllegalStateException(e);
+  }
+}
@@ -0,0 +1,80 @@
+package net.readmarks.jsono.handler;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable map that keeps keys and values in a single array and looks keys up by linear search.
+ * Is intended for maps with a few entries, it takes less memory than a {@link java.util.HashMap} and
+ * does not allocate entry objects.
+ */
+final class ArrayMap extends AbstractMap<String, Object> {
+  /**
+   * Keys at even indexes followed by their values. Keys are unique.
+   */
+  private final Object[] entries;
+
+  ArrayMap(Object[] entries) {
+    this.entries = entries;
+  }
+
+  @Override
+  public int size() {
+    return entries.length / 2;
+  }
+
+  private int indexOf(Object key) {
+    for (int i = 0; i < entries.length; i += 2) {
+      if (entries[i].equals(key)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return indexOf(key) >= 0;
+  }
+
+  @Override
+  public Object get(Object key) {
+    final int i = indexOf(key);
+    return i < 0 ? null : entries[i + 1];
+  }
+
+  @Override
+  public Set<Entry<String, Object>> entrySet() {
+    return new AbstractSet<Entry<String, Object>>() {
+      @Override
+      public Iterator<Entry<String, Object>> iterator() {
+        return new Iterator<Entry<String, Object>>() {
+          private int i = 0;
+
+          @Override
+          public boolean hasNext() {
+            return i < entries.length;
+          }
+
+          @Override
+          public Entry<String, Object> next() {
+            if (i >= entries.length) {
+              throw new NoSuchElementException();
+            }
+            final Entry<String, Object> entry = new SimpleImmutableEntry<>((String) entries[i], entries[i + 1]);
+            i += 2;
+            return entry;
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return ArrayMap.this.size();
+      }
+    };
+  }
+}
@@ -0,0 +1,420 @@
+package net.readmarks.jsono.handler;
+
+import net.readmarks.jsono.EventHandler;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Passes events to handlers that run on their own threads, so a slow handler does not stall parsing
+ * nor the other handlers.
+ * <p>
+ * Events are published to a preallocated ring buffer with primitive slots (a single producer, the parser's thread),
+ * each handler (consumer) has a thread that reads all events in order. Strings are copied to per slot
+ * char arrays that are reused, so publishing does not allocate once the arrays have grown to the string sizes.
+ * When the buffer is full the parser waits for the slowest handler (backpressure), the buffer capacity
+ * bounds how far handlers can lag behind.
+ * <p>
+ * {@link CharSequence}s that handlers receive are valid only during the call.
+ * Values passed to {@link #onValue(Object)} are shared with handlers, so they should be immutable.
+ * Call {@link #close()} after the last event, it waits until handlers have received all events.
+ */
+public class AsyncHandler implements EventHandler, Closeable {
+  private static final byte VALUE = 0;
+  private static final byte LONG = 1;
+  private static final byte DOUBLE = 2;
+  private static final byte BOOLEAN = 3;
+  private static final byte NULL = 4;
+  private static final byte STRING = 5;
+  private static final byte KEY = 6;
+  private static final byte STRING_CHUNK = 7;
+  private static final byte STRING_END = 8;
+  private static final byte ARRAY = 9;
+  private static final byte MAP = 10;
+  private static final byte MAP_KEY = 11;
+  private static final byte END = 12;
+  private static final byte RESET = 13;
+  private static final byte CLOSE = 14;
+
+  private static final int INITIAL_CHARS = 32;
+
+  /**
+   * Sequence that is padded to avoid false sharing with neighbouring ones.
+   */
+  @SuppressWarnings("unused")
+  private static final class Sequence extends AtomicLong {
+    private static final long serialVersionUID = 1L;
+
+    private long p1, p2, p3, p4, p5, p6, p7;
+
+    Sequence(long initial) {
+      super(initial);
+    }
+  }
+
+  /**
+   * Reusable view of chars of a slot.
+   */
+  private static final class Chars implements CharSequence {
+    char[] chars;
+    int length;
+
+    @Override
+    public int length() {
+      return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+      if (index >= length) {
+        throw new IndexOutOfBoundsException("index=" + index + ", length=" + length);
+      }
+      return chars[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return toString().substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+      return new String(chars, 0, length);
+    }
+  }
+
+  private final int mask;
+  private final byte[] types;
+  /**
+   * Long values, double bits, booleans, key ids or string lengths.
+   */
+  private final long[] longs;
+  /**
+   * Values of {@link #onValue(Object)} and canonical keys of {@link #onKey(int, String)}.
+   */
+  private final Object[] refs;
+  /**
+   * Number of handlers that have not yet received the value in {@link #refs}, null if there is one handler.
+   * The last one clears the slot, so values are not retained until the slot is reused.
+   */
+  private final AtomicIntegerArray readers;
+  private final char[][] chars;
+
+  private final WaitStrategy wait;
+  private final Sequence cursor = new Sequence(-1);
+  private final Sequence[] sequences;
+  private final Thread[] threads;
+  private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+  /**
+   * Last claimed sequence, accessed only by the producer.
+   */
+  private long next = -1;
+  /**
+   * Minimum of consumer sequences as of the last check, accessed only by the producer.
+   */
+  private long gating = -1;
+  private boolean closed = false;
+  private final boolean acceptsChunks;
+
+  public AsyncHandler(int capacity, WaitStrategy wait, EventHandler... handlers) {
+    this(capacity, wait, Executors.defaultThreadFactory(), handlers);
+  }
+
+  /**
+   * Starts a thread for each handler.
+   *
+   * @param capacity Number of events in the ring buffer, a power of 2.
+   * @param wait     Waiting of both consumer threads and the producer.
+   * @param threads  Creates consumer threads.
+   */
+  public AsyncHandler(int capacity, WaitStrategy wait, ThreadFactory threads, EventHandler... handlers) {
+    if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Capacity should be a power of 2. capacity=" + capacity + ".");
+    }
+    mask = capacity - 1;
+    types = new byte[capacity];
+    longs = new long[capacity];
+    refs = new Object[capacity];
+    chars = new char[capacity][];
+    for (int i = 0; i < capacity; i++) {
+      chars[i] = new char[INITIAL_CHARS];
+    }
+    readers = handlers.length > 1 ? new AtomicIntegerArray(capacity) : null;
+    this.wait = wait;
+    sequences = new Sequence[handlers.length];
+    this.threads = new Thread[handlers.length];
+    for (int i = 0; i < handlers.length; i++) {
+      final Sequence sequence = new Sequence(-1);
+      final EventHandler handler = handlers[i];
+      sequences[i] = sequence;
+      this.threads[i] = threads.newThread(() -> consume(handler, sequence));
+    }
+    acceptsChunks = Arrays.stream(handlers).allMatch(EventHandler::acceptsStringChunks);
+    for (Thread t : this.threads) {
+      t.start();
+    }
+  }
+
+  /**
+   * @return Index of the slot for the next event, waits while the buffer is full.
+   */
+  private int claim() {
+    if (closed) {
+      throw new IllegalStateException("Handler is closed.");
+    }
+    final long wrap = ++next - (mask + 1);
+    int attempt = 0;
+    while (wrap > gating) {
+      long min = Long.MAX_VALUE;
+      for (Sequence s : sequences) {
+        min = Math.min(min, s.get());
+      }
+      gating = min;
+      if (wrap > gating) {
+        wait.idle(attempt++);
+      }
+    }
+    return (int) next & mask;
+  }
+
+  private void publish(int slot, byte type) {
+    types[slot] = type;
+    // Ordered store, slot contents become visible to consumers before the cursor
+    cursor.lazySet(next);
+  }
+
+  private void publishChars(byte type, CharSequence x) {
+    final int slot = claim();
+    final int length = x.length();
+    char[] cs = chars[slot];
+    if (cs.length < length) {
+      cs = new char[Math.max(length, cs.length * 2)];
+      chars[slot] = cs;
+    }
+    if (x instanceof String) {
+      ((String) x).getChars(0, length, cs, 0);
+    } else {
+      for (int i = 0; i < length; i++) {
+        cs[i] = x.charAt(i);
+      }
+    }
+    longs[slot] = length;
+    publish(slot, type);
+  }
+
+  private void consume(EventHandler handler, Sequence sequence) {
+    final Chars view = new Chars();
+    long n = sequence.get() + 1;
+    int attempt = 0;
+    try {
+      while (true) {
+        final long available = cursor.get();
+        if (available < n) {
+          wait.idle(attempt++);
+          continue;
+        }
+        attempt = 0;
+        for (; n <= available; n++) {
+          final int slot = (int) n & mask;
+          final byte type = types[slot];
+          if (type == CLOSE) {
+            sequence.lazySet(n);
+            return;
+          }
+          dispatch(handler, slot, type, view);
+          if (type == VALUE || type == KEY) {
+            release(slot);
+          }
+        }
+        sequence.lazySet(available);
+      }
+    } catch (Throwable e) {
+      error.compareAndSet(null, e);
+      // Failed consumer does not hold the producer back
+      sequence.set(Long.MAX_VALUE);
+    }
+  }
+
+  private void release(int slot) {
+    if (readers == null || readers.decrementAndGet(slot) == 0) {
+      refs[slot] = null;
+    }
+  }
+
+  private void dispatch(EventHandler handler, int slot, byte type, Chars view) {
+    switch (type) {
+      case VALUE:
+        handler.onValue(refs[slot]);
+        break;
+      case LONG:
+        handler.onLong(longs[slot]);
+        break;
+      case DOUBLE:
+        handler.onDouble(Double.longBitsToDouble(longs[slot]));
+        break;
+      case BOOLEAN:
+        handler.onBoolean(longs[slot] != 0);
+        break;
+      case NULL:
+        handler.onNull();
+        break;
+      case STRING:
+        view.chars = chars[slot];
+        view.length = (int) longs[slot];
+        handler.onString(view);
+        break;
+      case KEY:
+        handler.onKey((int) longs[slot], (String) refs[slot]);
+        break;
+      case STRING_CHUNK:
+        view.chars = chars[slot];
+        view.length = (int) longs[slot];
+        handler.onStringChunk(view);
+        break;
+      case STRING_END:
+        handler.onStringEnd();
+        break;
+      case ARRAY:
+        handler.onArray();
+        break;
+      case MAP:
+        handler.onMap();
+        break;
+      case MAP_KEY:
+        handler.onMapKey();
+        break;
+      case END:
+        handler.onEnd();
+        break;
+      case RESET:
+        handler.onReset();
+        break;
+      default:
+        throw new IllegalStateException("Unexpected event type " + type + ".");
+    }
+  }
+
+  private void setRef(int slot, Object x) {
+    refs[slot] = x;
+    if (readers != null) {
+      readers.lazySet(slot, sequences.length);
+    }
+  }
+
+  @Override
+  public void onValue(Object x) {
+    final int slot = claim();
+    setRef(slot, x);
+    publish(slot, VALUE);
+  }
+
+  @Override
+  public void onLong(long x) {
+    final int slot = claim();
+    longs[slot] = x;
+    publish(slot, LONG);
+  }
+
+  @Override
+  public void onDouble(double x) {
+    final int slot = claim();
+    longs[slot] = Double.doubleToRawLongBits(x);
+    publish(slot, DOUBLE);
+  }
+
+  @Override
+  public void onBoolean(boolean x) {
+    final int slot = claim();
+    longs[slot] = x ? 1 : 0;
+    publish(slot, BOOLEAN);
+  }
+
+  @Override
+  public void onNull() {
+    publish(claim(), NULL);
+  }
+
+  @Override
+  public void onString(CharSequence x) {
+    publishChars(STRING, x);
+  }
+
+  @Override
+  public void onKey(int keyId, String key) {
+    final int slot = claim();
+    longs[slot] = keyId;
+    setRef(slot, key);
+    publish(slot, KEY);
+  }
+
+  @Override
+  public boolean acceptsStringChunks() {
+    return acceptsChunks;
+  }
+
+  @Override
+  public void onStringChunk(CharSequence chunk) {
+    publishChars(STRING_CHUNK, chunk);
+  }
+
+  @Override
+  public void onStringEnd() {
+    publish(claim(), STRING_END);
+  }
+
+  @Override
+  public void onArray() {
+    publish(claim(), ARRAY);
+  }
+
+  @Override
+  public void onMap() {
+    publish(claim(), MAP);
+  }
+
+  @Override
+  public void onMapKey() {
+    publish(claim(), MAP_KEY);
+  }
+
+  @Override
+  public void onEnd() {
+    publish(claim(), END);
+  }
+
+  @Override
+  public void onReset() {
+    publish(claim(), RESET);
+  }
+
+  /**
+   * Waits until handlers have received all published events and stops their threads.
+   *
+   * @throws IllegalStateException if a handler has thrown an exception (that handler stopped receiving events).
+   */
+  @Override
+  public void close() {
+    if (!closed) {
+      publish(claim(), CLOSE);
+      closed = true;
+      try {
+        for (Thread t : threads) {
+          t.join();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for handlers.", e);
+      }
+    }
+    final Throwable e = error.get();
+    if (e != null) {
+      throw new IllegalStateException("Handler failed.", e);
+    }
+  }
+}
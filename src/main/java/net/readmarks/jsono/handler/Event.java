@@ -21,5 +21,11 @@ public enum Event {
   /**
    * @see EventHandler#onEnd()
    */
-  END
+  END,
+  /**
+   * JSON null where null items are not allowed.
+   *
+   * @see net.readmarks.jsono.JsonProcessor
+   */
+  NULL
 }
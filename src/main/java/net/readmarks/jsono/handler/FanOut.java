@@ -0,0 +1,641 @@
+package net.readmarks.jsono.handler;
+
+import net.readmarks.jsono.EventHandler;
+
+/**
+ * Sends each event to several handlers, in the order they were given, see {@link #of(EventHandler...)}.
+ * <p>
+ * Events are passed to a handler that is specialized for the number of handlers
+ * (a chain of {@link HandlerUtil#then(EventHandler, EventHandler)} adds a level of nesting per handler).
+ * A single handler is called as is. There are separate classes for 2, 3 and 4 handlers that keep them in fields,
+ * so the call sites of each class only see handlers of its instances. More handlers are called in a loop.
+ * <p>
+ * A handler that does not need further events can drop itself with {@link #remove(EventHandler)},
+ * also from within an event callback. The remaining handlers get a new specialization,
+ * so removed handlers cost nothing afterwards.
+ */
+public final class FanOut implements EventHandler {
+  /**
+   * Receives events when all handlers are removed.
+   */
+  private static final EventHandler NONE = new EventHandler() {
+    @Override
+    public void onValue(Object x) {
+    }
+
+    @Override
+    public boolean acceptsStringChunks() {
+      return true;
+    }
+
+    @Override
+    public void onStringChunk(CharSequence chunk) {
+    }
+
+    @Override
+    public void onStringEnd() {
+    }
+
+    @Override
+    public void onArray() {
+    }
+
+    @Override
+    public void onMap() {
+    }
+
+    @Override
+    public void onMapKey() {
+    }
+
+    @Override
+    public void onEnd() {
+    }
+  };
+
+  private EventHandler[] handlers;
+  private EventHandler target;
+
+  private FanOut(EventHandler[] handlers) {
+    this.handlers = handlers;
+    this.target = specialize(handlers);
+  }
+
+  public static FanOut of(EventHandler... handlers) {
+    return new FanOut(handlers.clone());
+  }
+
+  private static EventHandler specialize(EventHandler[] hs) {
+    switch (hs.length) {
+      case 0:
+        return NONE;
+      case 1:
+        return hs[0];
+      case 2:
+        return new FanOut2(hs);
+      case 3:
+        return new FanOut3(hs);
+      case 4:
+        return new FanOut4(hs);
+      default:
+        return new FanOutN(hs);
+    }
+  }
+
+  /**
+   * Stops sending events to the handler. When called during an event, that event
+   * is still sent to all handlers that were present when it started.
+   *
+   * @return false if the handler was not found.
+   */
+  public boolean remove(EventHandler handler) {
+    for (int i = 0; i < handlers.length; i++) {
+      if (handlers[i] == handler) {
+        final EventHandler[] hs = new EventHandler[handlers.length - 1];
+        System.arraycopy(handlers, 0, hs, 0, i);
+        System.arraycopy(handlers, i + 1, hs, i, hs.length - i);
+        handlers = hs;
+        target = specialize(hs);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return Number of handlers that were not removed.
+   */
+  public int size() {
+    return handlers.length;
+  }
+
+  @Override
+  public boolean acceptsStringChunks() {
+    return target.acceptsStringChunks();
+  }
+
+  @Override
+  public void onValue(Object x) {
+    target.onValue(x);
+  }
+
+  @Override
+  public void onLong(long x) {
+    target.onLong(x);
+  }
+
+  @Override
+  public void onDouble(double x) {
+    target.onDouble(x);
+  }
+
+  @Override
+  public void onBoolean(boolean x) {
+    target.onBoolean(x);
+  }
+
+  @Override
+  public void onNull() {
+    target.onNull();
+  }
+
+  @Override
+  public void onString(CharSequence x) {
+    target.onString(x);
+  }
+
+  @Override
+  public void onKey(int keyId, String key) {
+    target.onKey(keyId, key);
+  }
+
+  @Override
+  public void onStringChunk(CharSequence chunk) {
+    target.onStringChunk(chunk);
+  }
+
+  @Override
+  public void onStringEnd() {
+    target.onStringEnd();
+  }
+
+  @Override
+  public void onArray() {
+    target.onArray();
+  }
+
+  @Override
+  public void onMap() {
+    target.onMap();
+  }
+
+  @Override
+  public void onMapKey() {
+    target.onMapKey();
+  }
+
+  @Override
+  public void onEnd() {
+    target.onEnd();
+  }
+
+  @Override
+  public void onReset() {
+    target.onReset();
+  }
+
+  private static final class FanOut2 implements EventHandler {
+    private final EventHandler a, b;
+
+    FanOut2(EventHandler[] handlers) {
+      a = handlers[0];
+      b = handlers[1];
+    }
+
+    @Override
+    public boolean acceptsStringChunks() {
+      return a.acceptsStringChunks() && b.acceptsStringChunks();
+    }
+
+    @Override
+    public void onValue(Object x) {
+      a.onValue(x);
+      b.onValue(x);
+    }
+
+    @Override
+    public void onLong(long x) {
+      a.onLong(x);
+      b.onLong(x);
+    }
+
+    @Override
+    public void onDouble(double x) {
+      a.onDouble(x);
+      b.onDouble(x);
+    }
+
+    @Override
+    public void onBoolean(boolean x) {
+      a.onBoolean(x);
+      b.onBoolean(x);
+    }
+
+    @Override
+    public void onNull() {
+      a.onNull();
+      b.onNull();
+    }
+
+    @Override
+    public void onString(CharSequence x) {
+      a.onString(x);
+      b.onString(x);
+    }
+
+    @Override
+    public void onKey(int keyId, String key) {
+      a.onKey(keyId, key);
+      b.onKey(keyId, key);
+    }
+
+    @Override
+    public void onStringChunk(CharSequence chunk) {
+      a.onStringChunk(chunk);
+      b.onStringChunk(chunk);
+    }
+
+    @Override
+    public void onStringEnd() {
+      a.onStringEnd();
+      b.onStringEnd();
+    }
+
+    @Override
+    public void onArray() {
+      a.onArray();
+      b.onArray();
+    }
+
+    @Override
+    public void onMap() {
+      a.onMap();
+      b.onMap();
+    }
+
+    @Override
+    public void onMapKey() {
+      a.onMapKey();
+      b.onMapKey();
+    }
+
+    @Override
+    public void onEnd() {
+      a.onEnd();
+      b.onEnd();
+    }
+
+    @Override
+    public void onReset() {
+      a.onReset();
+      b.onReset();
+    }
+  }
+
+  private static final class FanOut3 implements EventHandler {
+    private final EventHandler a, b, c;
+
+    FanOut3(EventHandler[] handlers) {
+      a = handlers[0];
+      b = handlers[1];
+      c = handlers[2];
+    }
+
+    @Override
+    public boolean acceptsStringChunks() {
+      return a.acceptsStringChunks() && b.acceptsStringChunks() && c.acceptsStringChunks();
+    }
+
+    @Override
+    public void onValue(Object x) {
+      a.onValue(x);
+      b.onValue(x);
+      c.onValue(x);
+    }
+
+    @Override
+    public void onLong(long x) {
+      a.onLong(x);
+      b.onLong(x);
+      c.onLong(x);
+    }
+
+    @Override
+    public void onDouble(double x) {
+      a.onDouble(x);
+      b.onDouble(x);
+      c.onDouble(x);
+    }
+
+    @Override
+    public void onBoolean(boolean x) {
+      a.onBoolean(x);
+      b.onBoolean(x);
+      c.onBoolean(x);
+    }
+
+    @Override
+    public void onNull() {
+      a.onNull();
+      b.onNull();
+      c.onNull();
+    }
+
+    @Override
+    public void onString(CharSequence x) {
+      a.onString(x);
+      b.onString(x);
+      c.onString(x);
+    }
+
+    @Override
+    public void onKey(int keyId, String key) {
+      a.onKey(keyId, key);
+      b.onKey(keyId, key);
+      c.onKey(keyId, key);
+    }
+
+    @Override
+    public void onStringChunk(CharSequence chunk) {
+      a.onStringChunk(chunk);
+      b.onStringChunk(chunk);
+      c.onStringChunk(chunk);
+    }
+
+    @Override
+    public void onStringEnd() {
+      a.onStringEnd();
+      b.onStringEnd();
+      c.onStringEnd();
+    }
+
+    @Override
+    public void onArray() {
+      a.onArray();
+      b.onArray();
+      c.onArray();
+    }
+
+    @Override
+    public void onMap() {
+      a.onMap();
+      b.onMap();
+      c.onMap();
+    }
+
+    @Override
+    public void onMapKey() {
+      a.onMapKey();
+      b.onMapKey();
+      c.onMapKey();
+    }
+
+    @Override
+    public void onEnd() {
+      a.onEnd();
+      b.onEnd();
+      c.onEnd();
+    }
+
+    @Override
+    public void onReset() {
+      a.onReset();
+      b.onReset();
+      c.onReset();
+    }
+  }
+
+  private static final class FanOut4 implements EventHandler {
+    private final EventHandler a, b, c, d;
+
+    FanOut4(EventHandler[] handlers) {
+      a = handlers[0];
+      b = handlers[1];
+      c = handlers[2];
+      d = handlers[3];
+    }
+
+    @Override
+    public boolean acceptsStringChunks() {
+      return a.acceptsStringChunks() && b.acceptsStringChunks() && c.acceptsStringChunks() && d.acceptsStringChunks();
+    }
+
+    @Override
+    public void onValue(Object x) {
+      a.onValue(x);
+      b.onValue(x);
+      c.onValue(x);
+      d.onValue(x);
+    }
+
+    @Override
+    public void onLong(long x) {
+      a.onLong(x);
+      b.onLong(x);
+      c.onLong(x);
+      d.onLong(x);
+    }
+
+    @Override
+    public void onDouble(double x) {
+      a.onDouble(x);
+      b.onDouble(x);
+      c.onDouble(x);
+      d.onDouble(x);
+    }
+
+    @Override
+    public void onBoolean(boolean x) {
+      a.onBoolean(x);
+      b.onBoolean(x);
+      c.onBoolean(x);
+      d.onBoolean(x);
+    }
+
+    @Override
+    public void onNull() {
+      a.onNull();
+      b.onNull();
+      c.onNull();
+      d.onNull();
+    }
+
+    @Override
+    public void onString(CharSequence x) {
+      a.onString(x);
+      b.onString(x);
+      c.onString(x);
+      d.onString(x);
+    }
+
+    @Override
+    public void onKey(int keyId, String key) {
+      a.onKey(keyId, key);
+      b.onKey(keyId, key);
+      c.onKey(keyId, key);
+      d.onKey(keyId, key);
+    }
+
+    @Override
+    public void onStringChunk(CharSequence chunk) {
+      a.onStringChunk(chunk);
+      b.onStringChunk(chunk);
+      c.onStringChunk(chunk);
+      d.onStringChunk(chunk);
+    }
+
+    @Override
+    public void onStringEnd() {
+      a.onStringEnd();
+      b.onStringEnd();
+      c.onStringEnd();
+      d.onStringEnd();
+    }
+
+    @Override
+    public void onArray() {
+      a.onArray();
+      b.onArray();
+      c.onArray();
+      d.onArray();
+    }
+
+    @Override
+    public void onMap() {
+      a.onMap();
+      b.onMap();
+      c.onMap();
+      d.onMap();
+    }
+
+    @Override
+    public void onMapKey() {
+      a.onMapKey();
+      b.onMapKey();
+      c.onMapKey();
+      d.onMapKey();
+    }
+
+    @Override
+    public void onEnd() {
+      a.onEnd();
+      b.onEnd();
+      c.onEnd();
+      d.onEnd();
+    }
+
+    @Override
+    public void onReset() {
+      a.onReset();
+      b.onReset();
+      c.onReset();
+      d.onReset();
+    }
+  }
+
+  private static final class FanOutN implements EventHandler {
+    private final EventHandler[] handlers;
+
+    FanOutN(EventHandler[] handlers) {
+      this.handlers = handlers;
+    }
+
+    @Override
+    public boolean acceptsStringChunks() {
+      for (EventHandler h : handlers) {
+        if (!h.acceptsStringChunks()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public void onValue(Object x) {
+      for (EventHandler h : handlers) {
+        h.onValue(x);
+      }
+    }
+
+    @Override
+    public void onLong(long x) {
+      for (EventHandler h : handlers) {
+        h.onLong(x);
+      }
+    }
+
+    @Override
+    public void onDouble(double x) {
+      for (EventHandler h : handlers) {
+        h.onDouble(x);
+      }
+    }
+
+    @Override
+    public void onBoolean(boolean x) {
+      for (EventHandler h : handlers) {
+        h.onBoolean(x);
+      }
+    }
+
+    @Override
+    public void onNull() {
+      for (EventHandler h : handlers) {
+        h.onNull();
+      }
+    }
+
+    @Override
+    public void onString(CharSequence x) {
+      for (EventHandler h : handlers) {
+        h.onString(x);
+      }
+    }
+
+    @Override
+    public void onKey(int keyId, String key) {
+      for (EventHandler h : handlers) {
+        h.onKey(keyId, key);
+      }
+    }
+
+    @Override
+    public void onStringChunk(CharSequence chunk) {
+      for (EventHandler h : handlers) {
+        h.onStringChunk(chunk);
+      }
+    }
+
+    @Override
+    public void onStringEnd() {
+      for (EventHandler h : handlers) {
+        h.onStringEnd();
+      }
+    }
+
+    @Override
+    public void onArray() {
+      for (EventHandler h : handlers) {
+        h.onArray();
+      }
+    }
+
+    @Override
+    public void onMap() {
+      for (EventHandler h : handlers) {
+        h.onMap();
+      }
+    }
+
+    @Override
+    public void onMapKey() {
+      for (EventHandler h : handlers) {
+        h.onMapKey();
+      }
+    }
+
+    @Override
+    public void onEnd() {
+      for (EventHandler h : handlers) {
+        h.onEnd();
+      }
+    }
+
+    @Override
+    public void onReset() {
+      for (EventHandler h : handlers) {
+        h.onReset();
+      }
+    }
+  }
+}
@@ -8,38 +8,9 @@ public class HandlerUtil {
   /**
    * Same as {@link java.util.function.Consumer#andThen(Consumer)}
    * but for pair of {@link net.readmarks.jsono.EventHandler}s.
+   * To combine more handlers use {@link FanOut} instead of nested calls.
    */
   public static EventHandler then(final EventHandler a, final EventHandler b) {
-    return new EventHandler() {
-      @Override
-      public void onValue(Object x) {
-        a.onValue(x);
-        b.onValue(x);
-      }
-
-      @Override
-      public void onArray() {
-        a.onArray();
-        b.onArray();
-      }
-
-      @Override
-      public void onMap() {
-        a.onMap();
-        b.onMap();
-      }
-
-      @Override
-      public void onMapKey() {
-        a.onMapKey();
-        b.onMapKey();
-      }
-
-      @Override
-      public void onEnd() {
-        a.onEnd();
-        b.onEnd();
-      }
-    };
+    return FanOut.of(a, b);
   }
 }
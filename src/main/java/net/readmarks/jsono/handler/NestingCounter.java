@@ -10,6 +10,8 @@ import net.readmarks.jsono.EventHandler;
  * Can be used to get current depth e.g. for JSON querying purposes.
  * Does not check whether begin/end tokens are matching (e.g. {[}] case). That is expected to be validated already
  * by upstream parser (event source);
+ * <p>
+ * Parsers can limit depth themselves, along with other sizes of documents, see {@link net.readmarks.jsono.ParserLimits}.
  */
 public class NestingCounter implements EventHandler {
   private final int limit;
@@ -48,6 +50,43 @@ public class NestingCounter implements EventHandler {
   public void onValue(Object x) {
   }
 
+  @Override
+  public void onLong(long x) {
+  }
+
+  @Override
+  public void onDouble(double x) {
+  }
+
+  @Override
+  public void onBoolean(boolean x) {
+  }
+
+  @Override
+  public void onNull() {
+  }
+
+  @Override
+  public void onString(CharSequence x) {
+  }
+
+  @Override
+  public void onKey(int keyId, String key) {
+  }
+
+  @Override
+  public boolean acceptsStringChunks() {
+    return true;
+  }
+
+  @Override
+  public void onStringChunk(CharSequence chunk) {
+  }
+
+  @Override
+  public void onStringEnd() {
+  }
+
   @Override
   public void onArray() {
     down();
@@ -66,4 +105,9 @@ public class NestingCounter implements EventHandler {
   public void onEnd() {
     up();
   }
+
+  @Override
+  public void onReset() {
+    depth = 0;
+  }
 }
@@ -0,0 +1,527 @@
+package net.readmarks.jsono.handler;
+
+import net.readmarks.jsono.EventHandler;
+import net.readmarks.jsono.FlatJsonParser;
+import net.readmarks.jsono.KeyTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Matches a stream of JSON events against many path subscriptions at once.
+ * Paths use the same syntax as {@link PathQuery}, events of each matched value are passed
+ * to the subscriber of the path (so a subscriber sees a sequence of complete top-level values).
+ * <p>
+ * Subscribed paths are kept in a trie. Sets of trie nodes that match current position in the document
+ * are turned into automaton states as they are encountered, so each event advances a single state
+ * with a lookup of the map key (by its id in a {@link KeyTable}) or array index, regardless of number of
+ * subscriptions. Only delivery of matched values costs time proportional to the number of their subscribers.
+ * <p>
+ * Changes of subscriptions take effect from next top-level value, the value that is being parsed
+ * may or may not be matched against them. Not thread safe.
+ *
+ * @see PathQuery
+ */
+public class PathMatcher implements EventHandler {
+  private static final EventHandler[] NO_SUBSCRIBERS = new EventHandler[0];
+
+  /**
+   * Trie node, corresponds to a path prefix.
+   */
+  private static final class Node {
+    final int id;
+    final Map<String, Node> fields = new HashMap<>();
+    final Map<Integer, Node> indexes = new HashMap<>();
+    Node any;
+    final List<EventHandler> subscribers = new ArrayList<>();
+
+    Node(int id) {
+      this.id = id;
+    }
+  }
+
+  /**
+   * Automaton state, a set of trie nodes. Transitions are built on first use.
+   */
+  private static final class State {
+    final Node[] nodes;
+    final EventHandler[] subscribers;
+    boolean built = false;
+    /** Ids of keys with specific transitions, sorted. */
+    int[] keyIds;
+    State[] keyTargets;
+    /** Array indexes with specific transitions, sorted. */
+    int[] indexes;
+    State[] indexTargets;
+    /** Transition for other keys and indexes. */
+    State other;
+
+    State(Node[] nodes, EventHandler[] subscribers) {
+      this.nodes = nodes;
+      this.subscribers = subscribers;
+    }
+
+    boolean isDead() {
+      return nodes.length == 0;
+    }
+  }
+
+  private static final class NodeSet {
+    final int[] ids;
+    final int hash;
+
+    NodeSet(Node[] nodes) {
+      ids = new int[nodes.length];
+      for (int i = 0; i < nodes.length; i++) {
+        ids[i] = nodes[i].id;
+      }
+      hash = Arrays.hashCode(ids);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof NodeSet && Arrays.equals(ids, ((NodeSet) o).ids);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  private final KeyTable keys;
+  private final Node root = new Node(0);
+  private int nodeCount = 1;
+  private final Map<NodeSet, State> states = new HashMap<>();
+  /** Null if subscriptions were changed. */
+  private State rootState;
+  /** Number of subscribers that do not accept string chunks. */
+  private int plainSubscribers = 0;
+  private FlatJsonParser parser;
+
+  /** States of open containers. */
+  private State[] stack = new State[16];
+  /** Next element index of open arrays, -1 for maps. */
+  private int[] nextIndex = new int[16];
+  private int depth = 0;
+  /** State of current map entry. */
+  private State entryState;
+  private boolean expectKey = false;
+  /** State of current chunked string value, null if not within chunked string. */
+  private State chunkedString;
+
+  /** Subscribers of open matched containers. */
+  private EventHandler[] active = new EventHandler[8];
+  /** Depth of matched container of each active subscriber. */
+  private int[] activeDepth = new int[8];
+  private int activeCount = 0;
+
+  public PathMatcher() {
+    this(4096);
+  }
+
+  /**
+   * @param maxKeys Max number of distinct map keys in subscribed paths.
+   */
+  public PathMatcher(int maxKeys) {
+    this.keys = new KeyTable(maxKeys);
+  }
+
+  /**
+   * @param path       Path expression, see {@link PathQuery}.
+   * @param subscriber Receives events of values that match the path.
+   * @throws IllegalArgumentException if the expression is not valid.
+   * @throws IllegalStateException    if there are too many distinct keys in subscribed paths.
+   */
+  public void subscribe(String path, EventHandler subscriber) {
+    Node node = root;
+    for (Object step : PathQuery.parse(path)) {
+      if (step == null) {
+        if (node.any == null) {
+          node.any = new Node(nodeCount++);
+        }
+        node = node.any;
+      } else if (step instanceof String) {
+        keys.register((String) step);
+        node = node.fields.computeIfAbsent((String) step, k -> new Node(nodeCount++));
+      } else {
+        node = node.indexes.computeIfAbsent((Integer) step, k -> new Node(nodeCount++));
+      }
+    }
+    node.subscribers.add(subscriber);
+    if (!subscriber.acceptsStringChunks()) {
+      plainSubscribers++;
+    }
+    invalidate();
+  }
+
+  /**
+   * Removes subscription added with {@link #subscribe(String, EventHandler)}.
+   *
+   * @return false if there is no such subscription.
+   */
+  public boolean unsubscribe(String path, EventHandler subscriber) {
+    Node node = root;
+    for (Object step : PathQuery.parse(path)) {
+      if (step == null) {
+        node = node.any;
+      } else if (step instanceof String) {
+        node = node.fields.get(step);
+      } else {
+        node = node.indexes.get(step);
+      }
+      if (node == null) {
+        return false;
+      }
+    }
+    if (!node.subscribers.remove(subscriber)) {
+      return false;
+    }
+    if (!subscriber.acceptsStringChunks()) {
+      plainSubscribers--;
+    }
+    invalidate();
+    return true;
+  }
+
+  /**
+   * Lets the matcher skip values that do not contain matching ones.
+   *
+   * @param parser Parser that this matcher receives events from, null disables skipping (default).
+   */
+  public void setParser(FlatJsonParser parser) {
+    this.parser = parser;
+  }
+
+  private void invalidate() {
+    states.clear();
+    rootState = null;
+  }
+
+  private State state(Collection<Node> nodeSet) {
+    final Node[] nodes = nodeSet.toArray(new Node[0]);
+    Arrays.sort(nodes, (a, b) -> Integer.compare(a.id, b.id));
+    return states.computeIfAbsent(new NodeSet(nodes), k -> {
+      final List<EventHandler> subscribers = new ArrayList<>();
+      for (Node node : nodes) {
+        subscribers.addAll(node.subscribers);
+      }
+      return new State(nodes, subscribers.isEmpty() ? NO_SUBSCRIBERS : subscribers.toArray(NO_SUBSCRIBERS));
+    });
+  }
+
+  private void build(State state) {
+    final List<Node> anyChildren = new ArrayList<>();
+    final Map<String, List<Node>> fields = new HashMap<>();
+    final Map<Integer, List<Node>> indexes = new TreeMap<>();
+    for (Node node : state.nodes) {
+      if (node.any != null) {
+        anyChildren.add(node.any);
+      }
+      node.fields.forEach((key, child) -> fields.computeIfAbsent(key, k -> new ArrayList<>()).add(child));
+      node.indexes.forEach((index, child) -> indexes.computeIfAbsent(index, k -> new ArrayList<>()).add(child));
+    }
+    // Keys and indexes that have specific transitions also match wildcards
+    final Map<Integer, State> keyTargets = new TreeMap<>();
+    fields.forEach((key, children) -> {
+      children.addAll(anyChildren);
+      keyTargets.put(keys.find(key), state(children));
+    });
+    state.keyIds = keyTargets.keySet().stream().mapToInt(Integer::intValue).toArray();
+    state.keyTargets = keyTargets.values().toArray(new State[0]);
+    state.indexes = indexes.keySet().stream().mapToInt(Integer::intValue).toArray();
+    state.indexTargets = new State[state.indexes.length];
+    int i = 0;
+    for (List<Node> children : indexes.values()) {
+      children.addAll(anyChildren);
+      state.indexTargets[i++] = state(children);
+    }
+    state.other = state(anyChildren);
+    state.built = true;
+  }
+
+  private State keyTarget(State state, CharSequence key) {
+    if (state.isDead()) {
+      return state;
+    }
+    if (!state.built) {
+      build(state);
+    }
+    if (state.keyIds.length > 0) {
+      final int id = keys.find(key);
+      final int pos = id == KeyTable.UNKNOWN ? -1 : Arrays.binarySearch(state.keyIds, id);
+      if (pos >= 0) {
+        return state.keyTargets[pos];
+      }
+    }
+    return state.other;
+  }
+
+  private State indexTarget(State state, int index) {
+    if (state.isDead()) {
+      return state;
+    }
+    if (!state.built) {
+      build(state);
+    }
+    if (state.indexes.length > 0) {
+      final int pos = Arrays.binarySearch(state.indexes, index);
+      if (pos >= 0) {
+        return state.indexTargets[pos];
+      }
+    }
+    return state.other;
+  }
+
+  /**
+   * Should be called when a value starts.
+   *
+   * @return State of the value.
+   */
+  private State startValue() {
+    if (depth == 0) {
+      if (rootState == null) {
+        rootState = state(Arrays.asList(root));
+      }
+      return rootState;
+    } else if (nextIndex[depth - 1] < 0) {
+      return entryState;
+    } else {
+      return indexTarget(stack[depth - 1], nextIndex[depth - 1]++);
+    }
+  }
+
+  /**
+   * Should be called when a value ends.
+   */
+  private void endValue() {
+    if (depth > 0 && nextIndex[depth - 1] >= 0) {
+      skipElements();
+    }
+  }
+
+  /**
+   * Skips following elements of innermost array up to the next one that may match.
+   */
+  private void skipElements() {
+    if (parser == null || activeCount > 0) {
+      return;
+    }
+    final State array = stack[depth - 1];
+    final int index = nextIndex[depth - 1];
+    int count = Integer.MAX_VALUE;
+    if (!array.isDead()) {
+      if (!array.built) {
+        build(array);
+      }
+      if (!array.other.isDead()) {
+        return;
+      }
+      final int pos = Arrays.binarySearch(array.indexes, index);
+      final int next = pos >= 0 ? pos : -pos - 1;
+      if (next < array.indexes.length) {
+        count = array.indexes[next] - index;
+      }
+    }
+    parser.skipValues(count);
+    if (count != Integer.MAX_VALUE) {
+      nextIndex[depth - 1] += count;
+    }
+  }
+
+  private void onKey(CharSequence key) {
+    expectKey = false;
+    entryState = keyTarget(stack[depth - 1], key);
+    if (parser != null && activeCount == 0 && entryState.isDead()) {
+      parser.skipValue();
+    }
+  }
+
+  private void startContainer(boolean array) {
+    final State state = startValue();
+    for (EventHandler subscriber : state.subscribers) {
+      if (activeCount == active.length) {
+        active = Arrays.copyOf(active, activeCount * 2);
+        activeDepth = Arrays.copyOf(activeDepth, activeCount * 2);
+      }
+      active[activeCount] = subscriber;
+      activeDepth[activeCount++] = depth;
+    }
+    for (int i = 0; i < activeCount; i++) {
+      if (array) {
+        active[i].onArray();
+      } else {
+        active[i].onMap();
+      }
+    }
+    if (depth == stack.length) {
+      stack = Arrays.copyOf(stack, depth * 2);
+      nextIndex = Arrays.copyOf(nextIndex, depth * 2);
+    }
+    stack[depth] = state;
+    nextIndex[depth] = array ? 0 : -1;
+    depth++;
+    if (array) {
+      skipElements();
+    }
+  }
+
+  @Override
+  public void onValue(Object x) {
+    for (int i = 0; i < activeCount; i++) {
+      active[i].onValue(x);
+    }
+    if (expectKey) {
+      onKey((CharSequence) x);
+      return;
+    }
+    for (EventHandler subscriber : startValue().subscribers) {
+      subscriber.onValue(x);
+    }
+    endValue();
+  }
+
+  @Override
+  public void onLong(long x) {
+    for (int i = 0; i < activeCount; i++) {
+      active[i].onLong(x);
+    }
+    for (EventHandler subscriber : startValue().subscribers) {
+      subscriber.onLong(x);
+    }
+    endValue();
+  }
+
+  @Override
+  public void onDouble(double x) {
+    for (int i = 0; i < activeCount; i++) {
+      active[i].onDouble(x);
+    }
+    for (EventHandler subscriber : startValue().subscribers) {
+      subscriber.onDouble(x);
+    }
+    endValue();
+  }
+
+  @Override
+  public void onBoolean(boolean x) {
+    for (int i = 0; i < activeCount; i++) {
+      active[i].onBoolean(x);
+    }
+    for (EventHandler subscriber : startValue().subscribers) {
+      subscriber.onBoolean(x);
+    }
+    endValue();
+  }
+
+  @Override
+  public void onNull() {
+    for (int i = 0; i < activeCount; i++) {
+      active[i].onNull();
+    }
+    for (EventHandler subscriber : startValue().subscribers) {
+      subscriber.onNull();
+    }
+    endValue();
+  }
+
+  @Override
+  public void onString(CharSequence x) {
+    for (int i = 0; i < activeCount; i++) {
+      active[i].onString(x);
+    }
+    if (expectKey) {
+      onKey(x);
+      return;
+    }
+    for (EventHandler subscriber : startValue().subscribers) {
+      subscriber.onString(x);
+    }
+    endValue();
+  }
+
+  @Override
+  public void onKey(int keyId, String key) {
+    for (int i = 0; i < activeCount; i++) {
+      active[i].onKey(keyId, key);
+    }
+    onKey(key);
+  }
+
+  @Override
+  public boolean acceptsStringChunks() {
+    return plainSubscribers == 0;
+  }
+
+  @Override
+  public void onStringChunk(CharSequence chunk) {
+    for (int i = 0; i < activeCount; i++) {
+      active[i].onStringChunk(chunk);
+    }
+    if (chunkedString == null) {
+      chunkedString = startValue();
+    }
+    for (EventHandler subscriber : chunkedString.subscribers) {
+      subscriber.onStringChunk(chunk);
+    }
+  }
+
+  @Override
+  public void onStringEnd() {
+    for (int i = 0; i < activeCount; i++) {
+      active[i].onStringEnd();
+    }
+    for (EventHandler subscriber : chunkedString.subscribers) {
+      subscriber.onStringEnd();
+    }
+    chunkedString = null;
+    endValue();
+  }
+
+  @Override
+  public void onArray() {
+    startContainer(true);
+  }
+
+  @Override
+  public void onMap() {
+    startContainer(false);
+  }
+
+  @Override
+  public void onMapKey() {
+    for (int i = 0; i < activeCount; i++) {
+      active[i].onMapKey();
+    }
+    expectKey = true;
+  }
+
+  @Override
+  public void onEnd() {
+    for (int i = 0; i < activeCount; i++) {
+      active[i].onEnd();
+    }
+    depth--;
+    while (activeCount > 0 && activeDepth[activeCount - 1] == depth) {
+      active[--activeCount] = null;
+    }
+    endValue();
+  }
+
+  @Override
+  public void onReset() {
+    for (int i = 0; i < activeCount; i++) {
+      active[i].onReset();
+      active[i] = null;
+    }
+    activeCount = 0;
+    depth = 0;
+    expectKey = false;
+    chunkedString = null;
+  }
+}
@@ -0,0 +1,404 @@
+package net.readmarks.jsono.handler;
+
+import net.readmarks.jsono.EventHandler;
+import net.readmarks.jsono.FlatJsonParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Selects values from a stream of JSON events with a JSONPath-like expression
+ * and passes events of the selected values to a target handler.
+ * <p>
+ * Supported expressions start with root "$" followed by steps:
+ * <ul>
+ * <li>".name" or "['name']" selects map entry with given key,</li>
+ * <li>"[n]" selects array element with given index,</li>
+ * <li>".*" or "[*]" selects all map entries or array elements.</li>
+ * </ul>
+ * For example "$.items[*].id" selects "id" entries of all items of array "items".
+ * <p>
+ * Each selected value is passed to the target as a complete sequence of events (a scalar value or
+ * a balanced subtree), so the target sees a sequence of top-level values.
+ * E.g. {@link SimpleDeserializer} as the target receives deserialized selected values, see {@link #values(String, Consumer)}.
+ * Memory used by the query depends on length of the path expression only,
+ * other values are dropped as their events arrive.
+ * <p>
+ * If the query is bound to a {@link FlatJsonParser} with {@link #setParser(FlatJsonParser)}, values that can not
+ * contain selected ones are skipped by the parser without reporting their events.
+ */
+public class PathQuery implements EventHandler {
+  // Kinds of path steps
+  private static final int FIELD = 0;
+  private static final int INDEX = 1;
+  private static final int ANY = 2;
+
+  // Value positions
+  private static final int OFF_PATH = 0;
+  /** Value is on the path to selected values. */
+  private static final int ON_PATH = 1;
+  private static final int SELECTED = 2;
+
+  private final String path;
+  private final int[] kinds;
+  private final String[] names;
+  private final int[] indexes;
+  private final EventHandler target;
+  private FlatJsonParser parser;
+
+  /** Number of open containers. */
+  private int depth = 0;
+  /** Number of leading open containers that are on the path. */
+  private int onPath = 0;
+  /** Next element index of open arrays on the path, -1 for maps. */
+  private final int[] nextIndex;
+  /** Key of current entry of the innermost map on the path matches the step. */
+  private boolean entryMatches = false;
+  private boolean expectKey = false;
+  /** Nesting depth within selected container, 0 if not within selected value. */
+  private int selectedDepth = 0;
+  private boolean inChunkedString = false;
+  private boolean forwardChunks = false;
+
+  /**
+   * @param path   Path expression.
+   * @param target Receives events of selected values.
+   * @throws IllegalArgumentException if the expression is not valid.
+   */
+  public PathQuery(String path, EventHandler target) {
+    this.path = path;
+    this.target = target;
+    final List<Object> steps = parse(path);
+    this.kinds = new int[steps.size()];
+    this.names = new String[steps.size()];
+    this.indexes = new int[steps.size()];
+    for (int i = 0; i < steps.size(); i++) {
+      final Object step = steps.get(i);
+      if (step == null) {
+        kinds[i] = ANY;
+      } else if (step instanceof String) {
+        kinds[i] = FIELD;
+        names[i] = (String) step;
+      } else {
+        kinds[i] = INDEX;
+        indexes[i] = (Integer) step;
+      }
+    }
+    this.nextIndex = new int[steps.size() + 1];
+  }
+
+  /**
+   * @param path Path expression.
+   * @param out  Receives selected values deserialized with {@link SimpleDeserializer}.
+   */
+  public static PathQuery values(String path, Consumer<Object> out) {
+    return new PathQuery(path, new SimpleDeserializer(out));
+  }
+
+  /**
+   * Lets the query skip values that can not contain selected ones.
+   *
+   * @param parser Parser that this query receives events from, null disables skipping (default).
+   */
+  public void setParser(FlatJsonParser parser) {
+    this.parser = parser;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  /**
+   * @return Steps of the path, null for "*", String for a map key, Integer for an array index.
+   */
+  static List<Object> parse(String path) {
+    if (!path.startsWith("$")) {
+      throw new IllegalArgumentException("Path should start with '$'. path=" + path);
+    }
+    final List<Object> steps = new ArrayList<>();
+    int i = 1;
+    while (i < path.length()) {
+      final char ch = path.charAt(i++);
+      if (ch == '.') {
+        if (i < path.length() && path.charAt(i) == '*') {
+          steps.add(null);
+          i++;
+        } else {
+          final int start = i;
+          while (i < path.length() && path.charAt(i) != '.' && path.charAt(i) != '[') {
+            i++;
+          }
+          if (i == start) {
+            throw new IllegalArgumentException("Expecting key name at " + start + ". path=" + path);
+          }
+          steps.add(path.substring(start, i));
+        }
+      } else if (ch == '[') {
+        final int close;
+        if (path.startsWith("*]", i)) {
+          steps.add(null);
+          close = i + 1;
+        } else if (i < path.length() && (path.charAt(i) == '\'' || path.charAt(i) == '"')) {
+          close = path.indexOf(path.charAt(i), i + 1) + 1;
+          if (close == 0) {
+            throw new IllegalArgumentException("Unterminated key name at " + i + ". path=" + path);
+          }
+          steps.add(path.substring(i + 1, close - 1));
+        } else {
+          int end = i;
+          while (end < path.length() && path.charAt(end) >= '0' && path.charAt(end) <= '9') {
+            end++;
+          }
+          if (end == i || end - i > 9) {
+            throw new IllegalArgumentException("Expecting array index at " + i + ". path=" + path);
+          }
+          steps.add(Integer.parseInt(path.substring(i, end)));
+          close = end;
+        }
+        if (close >= path.length() || path.charAt(close) != ']') {
+          throw new IllegalArgumentException("Expecting ']' at " + close + ". path=" + path);
+        }
+        i = close + 1;
+      } else {
+        throw new IllegalArgumentException("Unexpected character '" + ch + "' at " + (i - 1) + ". path=" + path);
+      }
+    }
+    return steps;
+  }
+
+  /**
+   * Should be called when a value starts outside of selected values.
+   *
+   * @return Position of the value.
+   */
+  private int startValue() {
+    if (onPath != depth) {
+      return OFF_PATH;
+    }
+    if (depth > 0) {
+      final boolean matches = nextIndex[depth] < 0 ? entryMatches : elementMatches(depth - 1, nextIndex[depth]++);
+      if (!matches) {
+        return OFF_PATH;
+      }
+    }
+    return depth == kinds.length ? SELECTED : ON_PATH;
+  }
+
+  /**
+   * Should be called when a value ends outside of selected values.
+   */
+  private void endValue() {
+    if (onPath == depth && depth > 0 && nextIndex[depth] >= 0) {
+      skipElements();
+    }
+  }
+
+  /**
+   * Skips following elements of innermost array on the path up to the next one that matches the step.
+   */
+  private void skipElements() {
+    final int step = depth - 1;
+    if (parser == null || kinds[step] == ANY) {
+      return;
+    }
+    if (kinds[step] == INDEX && indexes[step] >= nextIndex[depth]) {
+      final int count = indexes[step] - nextIndex[depth];
+      parser.skipValues(count);
+      nextIndex[depth] += count;
+    } else {
+      // No more matching elements
+      parser.skipValues(Integer.MAX_VALUE);
+    }
+  }
+
+  private boolean elementMatches(int step, int index) {
+    return kinds[step] == ANY || (kinds[step] == INDEX && indexes[step] == index);
+  }
+
+  private void onKey(CharSequence key) {
+    expectKey = false;
+    if (onPath == depth && depth > 0) {
+      final int step = depth - 1;
+      entryMatches = kinds[step] == ANY || (kinds[step] == FIELD && names[step].contentEquals(key));
+      if (!entryMatches && parser != null) {
+        parser.skipValue();
+      }
+    }
+  }
+
+  private boolean startScalar() {
+    return selectedDepth > 0 || startValue() == SELECTED;
+  }
+
+  private void endScalar() {
+    if (selectedDepth == 0) {
+      endValue();
+    }
+  }
+
+  private void startContainer(boolean array) {
+    if (selectedDepth > 0) {
+      selectedDepth++;
+    } else {
+      final int position = startValue();
+      if (position == SELECTED) {
+        selectedDepth = 1;
+      } else {
+        depth++;
+        if (position == ON_PATH) {
+          onPath = depth;
+          nextIndex[depth] = array ? 0 : -1;
+          if (array) {
+            skipElements();
+          }
+        }
+        return;
+      }
+    }
+    if (array) {
+      target.onArray();
+    } else {
+      target.onMap();
+    }
+  }
+
+  @Override
+  public void onValue(Object x) {
+    if (expectKey && selectedDepth == 0) {
+      onKey((CharSequence) x);
+      return;
+    }
+    if (startScalar()) {
+      target.onValue(x);
+    }
+    endScalar();
+  }
+
+  @Override
+  public void onLong(long x) {
+    if (startScalar()) {
+      target.onLong(x);
+    }
+    endScalar();
+  }
+
+  @Override
+  public void onDouble(double x) {
+    if (startScalar()) {
+      target.onDouble(x);
+    }
+    endScalar();
+  }
+
+  @Override
+  public void onBoolean(boolean x) {
+    if (startScalar()) {
+      target.onBoolean(x);
+    }
+    endScalar();
+  }
+
+  @Override
+  public void onNull() {
+    if (startScalar()) {
+      target.onNull();
+    }
+    endScalar();
+  }
+
+  @Override
+  public void onString(CharSequence x) {
+    if (selectedDepth > 0) {
+      target.onString(x);
+    } else if (expectKey) {
+      onKey(x);
+    } else {
+      if (startValue() == SELECTED) {
+        target.onString(x);
+      }
+      endValue();
+    }
+  }
+
+  @Override
+  public void onKey(int keyId, String key) {
+    if (selectedDepth > 0) {
+      target.onKey(keyId, key);
+    } else {
+      onKey(key);
+    }
+  }
+
+  @Override
+  public boolean acceptsStringChunks() {
+    return target.acceptsStringChunks();
+  }
+
+  @Override
+  public void onStringChunk(CharSequence chunk) {
+    if (!inChunkedString) {
+      inChunkedString = true;
+      forwardChunks = startScalar();
+    }
+    if (forwardChunks) {
+      target.onStringChunk(chunk);
+    }
+  }
+
+  @Override
+  public void onStringEnd() {
+    inChunkedString = false;
+    if (forwardChunks) {
+      target.onStringEnd();
+    }
+    endScalar();
+  }
+
+  @Override
+  public void onArray() {
+    startContainer(true);
+  }
+
+  @Override
+  public void onMap() {
+    startContainer(false);
+  }
+
+  @Override
+  public void onMapKey() {
+    if (selectedDepth > 0) {
+      target.onMapKey();
+    } else {
+      expectKey = true;
+    }
+  }
+
+  @Override
+  public void onEnd() {
+    if (selectedDepth > 0) {
+      target.onEnd();
+      selectedDepth--;
+      if (selectedDepth == 0) {
+        endValue();
+      }
+    } else {
+      if (onPath == depth) {
+        onPath--;
+      }
+      depth--;
+      endValue();
+    }
+  }
+
+  @Override
+  public void onReset() {
+    depth = 0;
+    onPath = 0;
+    entryMatches = false;
+    expectKey = false;
+    selectedDepth = 0;
+    inChunkedString = false;
+    target.onReset();
+  }
+}
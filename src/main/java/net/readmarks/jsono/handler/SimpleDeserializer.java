@@ -4,6 +4,8 @@ import net.readmarks.jsono.EventHandler;
 import net.readmarks.jsono.JsonParser;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -13,10 +15,19 @@ import java.util.function.Supplier;
 /**
  * Converts series of JSON events into Java data structures.
  * JSON objects are represented as {@link HashMap}s, JSON arrays as {@link ArrayList}s.
+ * <p>
+ * In compact mode (see {@link #setCompact(boolean)}) maps are immutable: maps with a few entries are array backed,
+ * larger ones are unmodifiable views of presized {@link HashMap}s. Lists are {@link ArrayList}s of exact size.
+ * Repeated string values can share instances, see {@link #setStringCacheSize(int)}.
  *
  * @see JsonParser
  */
 public class SimpleDeserializer implements EventHandler {
+  /**
+   * Max number of entries of a map that is array backed in compact mode.
+   */
+  public static final int COMPACT_MAP_MAX_SIZE = 8;
+
   abstract class State implements Consumer<Object>, Supplier<Object> {
     final State parent;
 
@@ -56,6 +67,35 @@ public class SimpleDeserializer implements EventHandler {
     }
   }
 
+  /**
+   * Collects map entries or array elements on the shared stack of values, the container is built at the end.
+   */
+  class CompactValue extends State {
+    private final boolean isMap;
+    private final int start = stackSize;
+
+    CompactValue(State parent, boolean isMap) {
+      super(parent);
+      this.isMap = isMap;
+    }
+
+    @Override
+    public void accept(Object o) {
+      if (stackSize == stack.length) {
+        stack = Arrays.copyOf(stack, stackSize * 2);
+      }
+      stack[stackSize++] = o;
+    }
+
+    @Override
+    public Object get() {
+      final Object result = isMap ? compactMap(start, stackSize) : compactList(start, stackSize);
+      Arrays.fill(stack, start, stackSize, null);
+      stackSize = start;
+      return result;
+    }
+  }
+
   class ArrayValue extends State {
     final List<Object> result = new ArrayList<>();
 
@@ -76,7 +116,7 @@ public class SimpleDeserializer implements EventHandler {
 
   final private Consumer<Object> out;
 
-  private State state = new State(null) {
+  private final State root = new State(null) {
     @Override
     public Object get() {
       throw new UnsupportedOperationException("Unbalanced onEnd() call.");
@@ -88,23 +128,110 @@ public class SimpleDeserializer implements EventHandler {
     }
   };
 
+  private State state = root;
+
+  private boolean compact = false;
+  /**
+   * Entries of unfinished containers in compact mode.
+   */
+  private Object[] stack = new Object[64];
+  private int stackSize = 0;
+  private StringCache stringCache;
+
   public SimpleDeserializer(Consumer<Object> out) {
     this.out = out;
   }
 
+  /**
+   * @param compact true to build compact immutable maps and exactly sized lists, false (default)
+   *                to build {@link HashMap}s and {@link ArrayList}s with default capacity.
+   */
+  public void setCompact(boolean compact) {
+    this.compact = compact;
+  }
+
+  /**
+   * Same as {@link #setStringCacheSize(int, int)} for strings of up to 64 chars.
+   */
+  public void setStringCacheSize(int size) {
+    setStringCacheSize(size, 64);
+  }
+
+  /**
+   * Enables sharing of instances of equal strings (values and keys).
+   * Strings are cached in a bounded table where a new string replaces one with the same hash slot,
+   * so the cache does not grow with the input.
+   *
+   * @param size      Max number of cached strings, 0 disables caching (default).
+   * @param maxLength Strings longer than this are not cached.
+   */
+  public void setStringCacheSize(int size, int maxLength) {
+    if (size < 0) {
+      throw new IllegalArgumentException("Cache size should not be negative. size=" + size + ".");
+    }
+    if (maxLength < 0) {
+      throw new IllegalArgumentException("Max length should not be negative. maxLength=" + maxLength + ".");
+    }
+    this.stringCache = size == 0 ? null : new StringCache(size, maxLength);
+  }
+
+  private Object compactMap(int from, int to) {
+    final int size = (to - from) / 2;
+    if (size > COMPACT_MAP_MAX_SIZE) {
+      final Map<String, Object> map = new HashMap<>((int) (size / 0.75f) + 1);
+      for (int i = from; i < to; i += 2) {
+        map.put((String) stack[i], stack[i + 1]);
+      }
+      return Collections.unmodifiableMap(map);
+    }
+    // Later duplicate key replaces previous value as in HashMap
+    final Object[] entries = new Object[to - from];
+    int length = 0;
+    for (int i = from; i < to; i += 2) {
+      int k = 0;
+      while (k < length && !entries[k].equals(stack[i])) {
+        k += 2;
+      }
+      entries[k] = stack[i];
+      entries[k + 1] = stack[i + 1];
+      if (k == length) {
+        length += 2;
+      }
+    }
+    return new ArrayMap(length == entries.length ? entries : Arrays.copyOf(entries, length));
+  }
+
+  private Object compactList(int from, int to) {
+    final List<Object> list = new ArrayList<>(to - from);
+    for (int i = from; i < to; i++) {
+      list.add(stack[i]);
+    }
+    return list;
+  }
+
   @Override
   public void onValue(Object x) {
     state.accept(x);
   }
 
+  @Override
+  public void onString(CharSequence x) {
+    state.accept(stringCache == null ? x.toString() : stringCache.get(x));
+  }
+
+  @Override
+  public void onKey(int keyId, String key) {
+    state.accept(key);
+  }
+
   @Override
   public void onArray() {
-    state = new ArrayValue(state);
+    state = compact ? new CompactValue(state, false) : new ArrayValue(state);
   }
 
   @Override
   public void onMap() {
-    state = new MapValue(state);
+    state = compact ? new CompactValue(state, true) : new MapValue(state);
   }
 
   @Override
@@ -118,4 +245,11 @@ public class SimpleDeserializer implements EventHandler {
     p.accept(state.get());
     state = p;
   }
+
+  @Override
+  public void onReset() {
+    state = root;
+    Arrays.fill(stack, 0, stackSize, null);
+    stackSize = 0;
+  }
 }
@@ -0,0 +1,54 @@
+package net.readmarks.jsono.handler;
+
+/**
+ * Bounded cache of string instances, used to share instances of repeated string values.
+ * Strings are looked up by contents of a {@link CharSequence}, so a hit does not allocate.
+ * Each string has a single slot determined by its hash, a miss replaces the slot's string.
+ */
+final class StringCache {
+  private final String[] strings;
+  private final int[] hashes;
+  /**
+   * Strings longer than this are not cached.
+   */
+  private final int maxLength;
+
+  StringCache(int size, int maxLength) {
+    final int capacity = Integer.highestOneBit(Math.max(1, size) * 2 - 1);
+    this.strings = new String[capacity];
+    this.hashes = new int[capacity];
+    this.maxLength = maxLength;
+  }
+
+  String get(CharSequence chars) {
+    final int length = chars.length();
+    if (length > maxLength) {
+      return chars.toString();
+    }
+    int hash = 0;
+    for (int i = 0; i < length; i++) {
+      hash = 31 * hash + chars.charAt(i);
+    }
+    final int slot = (hash ^ (hash >>> 16)) & (strings.length - 1);
+    final String cached = strings[slot];
+    if (cached != null && hashes[slot] == hash && contentEquals(cached, chars)) {
+      return cached;
+    }
+    final String string = chars.toString();
+    strings[slot] = string;
+    hashes[slot] = hash;
+    return string;
+  }
+
+  private static boolean contentEquals(String s, CharSequence chars) {
+    if (s.length() != chars.length()) {
+      return false;
+    }
+    for (int i = 0; i < s.length(); i++) {
+      if (s.charAt(i) != chars.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,337 @@
+package net.readmarks.jsono.handler;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact read-only representation of a JSON document, see {@link TapeBuilder}.
+ * <p>
+ * The document is a sequence of 64 bit words (the tape) where every value takes one word
+ * (two for numbers that do not fit into 56 bits), and a single char array holding all strings
+ * (and the text of numbers that do not fit long or double).
+ * So a document is two objects on heap regardless of its size.
+ * A word starts with an 8 bit type tag, start of an array or a map also holds the index of its end
+ * and the number of its elements, so containers can be stepped over without visiting their contents.
+ * <p>
+ * Values are addressed by their index on the tape, the document's value is at {@link #ROOT}.
+ * Map entries are stored as a key word followed by the value. Map lookup compares keys in place.
+ * <p>
+ * Array elements are accessed by index in constant time: if every element of an array is one word
+ * its position is computed, otherwise arrays of more than {@link #LINEAR_MAX} elements are followed by
+ * a table of element positions (4 bytes per element) after their end word. Elements of shorter arrays
+ * are found by stepping over the preceding ones. Containers with {@link #MAX_COUNT} or more elements
+ * also keep their exact size after the end word.
+ */
+public final class Tape {
+  public enum Type {
+    ARRAY, MAP, STRING, LONG, DOUBLE, BOOLEAN, NULL,
+    /**
+     * Number that does not fit long or double, see {@link #numberValue(int)}.
+     */
+    NUMBER
+  }
+
+  /**
+   * Index of the document's value.
+   */
+  public static final int ROOT = 0;
+
+  static final int TAG_SHIFT = 56;
+  static final long PAYLOAD = (1L << TAG_SHIFT) - 1;
+  /**
+   * Max element count that is stored in a container word.
+   */
+  static final int MAX_COUNT = 0xFFFFFF;
+  /**
+   * Max number of elements of an array that does not have a table of element positions.
+   */
+  static final int LINEAR_MAX = 8;
+  /**
+   * Flag of an end word that is followed by the container's size and, for arrays,
+   * by the table of element positions (two per word).
+   */
+  static final long INDEXED = 1L << 32;
+
+  // Tags
+  static final long ARRAY = 1;
+  static final long MAP = 2;
+  static final long END = 3;
+  static final long STRING = 4;
+  static final long KEY = 5;
+  /** Long value within the word's 56 bits. */
+  static final long SMALL_LONG = 6;
+  /** Long value in the next word. */
+  static final long LONG = 7;
+  /** Double value in the next word. */
+  static final long DOUBLE = 8;
+  static final long TRUE = 9;
+  static final long FALSE = 10;
+  static final long NULL = 11;
+  /** Decimal text of a {@link BigInteger} in the strings. */
+  static final long BIG_INTEGER = 12;
+  /** Decimal text of a {@link BigDecimal} in the strings. */
+  static final long BIG_DECIMAL = 13;
+
+  private final long[] tape;
+  /**
+   * Strings, each one is preceded by its length in two chars.
+   */
+  private final char[] strings;
+
+  Tape(long[] tape, char[] strings) {
+    this.tape = tape;
+    this.strings = strings;
+  }
+
+  private long tag(int value) {
+    return tape[value] >>> TAG_SHIFT;
+  }
+
+  public Type type(int value) {
+    final long tag = tag(value);
+    if (tag == ARRAY) {
+      return Type.ARRAY;
+    } else if (tag == MAP) {
+      return Type.MAP;
+    } else if (tag == STRING) {
+      return Type.STRING;
+    } else if (tag == SMALL_LONG || tag == LONG) {
+      return Type.LONG;
+    } else if (tag == DOUBLE) {
+      return Type.DOUBLE;
+    } else if (tag == TRUE || tag == FALSE) {
+      return Type.BOOLEAN;
+    } else if (tag == NULL) {
+      return Type.NULL;
+    } else if (tag == BIG_INTEGER || tag == BIG_DECIMAL) {
+      return Type.NUMBER;
+    }
+    throw new IllegalArgumentException("No value at " + value + ".");
+  }
+
+  private void check(int value, long tag) {
+    if (tag(value) != tag) {
+      throw new IllegalArgumentException("Value at " + value + " is " + type(value) + ".");
+    }
+  }
+
+  public long longValue(int value) {
+    if (tag(value) == SMALL_LONG) {
+      return (tape[value] << (64 - TAG_SHIFT)) >> (64 - TAG_SHIFT);
+    }
+    check(value, LONG);
+    return tape[value + 1];
+  }
+
+  /**
+   * @return Value of a {@link Type#DOUBLE} or of a {@link Type#LONG}.
+   */
+  public double doubleValue(int value) {
+    if (tag(value) == DOUBLE) {
+      return Double.longBitsToDouble(tape[value + 1]);
+    }
+    return longValue(value);
+  }
+
+  /**
+   * @return Value of a {@link Type#NUMBER}, {@link BigInteger} or {@link BigDecimal}.
+   */
+  public Number numberValue(int value) {
+    if (tag(value) == BIG_INTEGER) {
+      return new BigInteger(string((int) tape[value]));
+    }
+    check(value, BIG_DECIMAL);
+    return new BigDecimal(string((int) tape[value]));
+  }
+
+  public boolean booleanValue(int value) {
+    if (tag(value) == TRUE) {
+      return true;
+    }
+    check(value, FALSE);
+    return false;
+  }
+
+  public String stringValue(int value) {
+    check(value, STRING);
+    return string((int) tape[value]);
+  }
+
+  /**
+   * Same as {@link #stringValue(int)} but does not copy the string.
+   */
+  public CharSequence charsValue(int value) {
+    check(value, STRING);
+    final int offset = (int) tape[value];
+    return CharBuffer.wrap(strings, offset + 2, stringLength(offset));
+  }
+
+  private int stringLength(int offset) {
+    return strings[offset] << 16 | strings[offset + 1];
+  }
+
+  private String string(int offset) {
+    return new String(strings, offset + 2, stringLength(offset));
+  }
+
+  private boolean stringEquals(int offset, String s) {
+    final int length = stringLength(offset);
+    if (length != s.length()) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (strings[offset + 2 + i] != s.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void checkContainer(int value) {
+    final long tag = tag(value);
+    if (tag != ARRAY && tag != MAP) {
+      throw new IllegalArgumentException("Value at " + value + " is " + type(value) + ".");
+    }
+  }
+
+  /**
+   * @return Number of elements of an array or of entries of a map.
+   */
+  public int size(int container) {
+    checkContainer(container);
+    final int count = (int) (tape[container] >>> 32) & MAX_COUNT;
+    return count < MAX_COUNT ? count : (int) tape[end(container) + 1];
+  }
+
+  /**
+   * @return Index of the end of an array or of a map.
+   * Elements (or map entries) of the container are between its index and its end.
+   */
+  public int end(int container) {
+    checkContainer(container);
+    return (int) tape[container];
+  }
+
+  /**
+   * @return Index after the value (next element of an array, or next key of a map).
+   */
+  public int next(int value) {
+    final long tag = tag(value);
+    if (tag == ARRAY || tag == MAP) {
+      final int end = (int) tape[value];
+      return end + 1 + indexLength(end);
+    } else if (tag == LONG || tag == DOUBLE) {
+      return value + 2;
+    } else if (tag == END) {
+      throw new IllegalArgumentException("No value at " + value + ".");
+    }
+    return value + 1;
+  }
+
+  /**
+   * @return Number of words after the end word of a container.
+   */
+  private int indexLength(int end) {
+    if ((tape[end] & INDEXED) == 0) {
+      return 0;
+    }
+    final int start = (int) tape[end];
+    final int count = (int) tape[end + 1];
+    return tag(start) == ARRAY && end - start - 1 != count ? 1 + (count + 1) / 2 : 1;
+  }
+
+  /**
+   * @return Index of array's element, or -1 if the index is out of range.
+   */
+  public int element(int array, int index) {
+    check(array, ARRAY);
+    final int count = size(array);
+    if (index < 0 || index >= count) {
+      return -1;
+    }
+    final int end = end(array);
+    if (end - array - 1 == count) {
+      return array + 1 + index;
+    }
+    if ((tape[end] & INDEXED) != 0) {
+      final long positions = tape[end + 2 + index / 2];
+      return (int) (index % 2 == 0 ? positions : positions >>> 32);
+    }
+    int i = array + 1;
+    for (int k = 0; k < index; k++) {
+      i = next(i);
+    }
+    return i;
+  }
+
+  /**
+   * @return Index of value of the map's entry, or -1 if there is no such key.
+   */
+  public int field(int map, String key) {
+    check(map, MAP);
+    final int end = end(map);
+    for (int i = map + 1; i < end; i = next(i + 1)) {
+      if (stringEquals((int) tape[i], key)) {
+        return i + 1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @param entry Index of a map entry (the first one is after the map's index,
+   *              next one is after the value of previous, see {@link #next(int)}).
+   */
+  public String key(int entry) {
+    check(entry, KEY);
+    return string((int) tape[entry]);
+  }
+
+  /**
+   * Converts a value to the same representation as {@link SimpleDeserializer} produces.
+   */
+  public Object toObject(int value) {
+    switch (type(value)) {
+      case ARRAY: {
+        final List<Object> list = new ArrayList<>(size(value));
+        final int end = end(value);
+        for (int i = value + 1; i < end; i = next(i)) {
+          list.add(toObject(i));
+        }
+        return list;
+      }
+      case MAP: {
+        final Map<String, Object> map = new HashMap<>();
+        final int end = end(value);
+        for (int i = value + 1; i < end; i = next(i + 1)) {
+          map.put(key(i), toObject(i + 1));
+        }
+        return map;
+      }
+      case STRING:
+        return stringValue(value);
+      case LONG:
+        return longValue(value);
+      case DOUBLE:
+        return doubleValue(value);
+      case BOOLEAN:
+        return booleanValue(value);
+      case NUMBER:
+        return numberValue(value);
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * @return Approximate heap size of the document in bytes.
+   */
+  public long memorySize() {
+    return 3 * 16 + 8L * tape.length + 2L * strings.length;
+  }
+}
@@ -0,0 +1,278 @@
+package net.readmarks.jsono.handler;
+
+import net.readmarks.jsono.EventHandler;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import static net.readmarks.jsono.handler.Tape.*;
+
+/**
+ * Converts series of JSON events into {@link Tape}s, one per top-level value.
+ * Unlike {@link SimpleDeserializer} does not allocate objects per value: the document is written
+ * into reused buffers that are copied into the tape when the document is complete.
+ */
+public class TapeBuilder implements EventHandler {
+  private final Consumer<Tape> out;
+
+  private long[] tape = new long[64];
+  private int tapeLength = 0;
+  private char[] strings = new char[256];
+  private int stringsLength = 0;
+
+  /**
+   * Indexes of open containers.
+   */
+  private int[] starts = new int[16];
+  private int[] counts = new int[16];
+  private int depth = 0;
+  /**
+   * Positions of elements of open arrays, see {@link Tape#element(int, int)}.
+   */
+  private int[] positions = new int[64];
+  private int positionsLength = 0;
+  private boolean isKey = false;
+  /**
+   * Offset of a string that is delivered in chunks, or -1.
+   */
+  private int chunkedString = -1;
+
+  public TapeBuilder(Consumer<Tape> out) {
+    this.out = out;
+  }
+
+  private void add(long word) {
+    if (tapeLength == tape.length) {
+      tape = Arrays.copyOf(tape, tapeLength * 2);
+    }
+    tape[tapeLength++] = word;
+  }
+
+  /**
+   * Counts a value that is about to be added as an element of the current container.
+   */
+  private void element() {
+    if (depth > 0) {
+      counts[depth - 1]++;
+      if (tape[starts[depth - 1]] >>> TAG_SHIFT == ARRAY) {
+        if (positionsLength == positions.length) {
+          positions = Arrays.copyOf(positions, positionsLength * 2);
+        }
+        positions[positionsLength++] = tapeLength;
+      }
+    }
+  }
+
+  private void addValue(long tag, long payload) {
+    if (!isKey) {
+      element();
+    }
+    add(tag << TAG_SHIFT | payload & PAYLOAD);
+    if (depth == 0) {
+      complete();
+    }
+  }
+
+  private void complete() {
+    out.accept(new Tape(Arrays.copyOf(tape, tapeLength), Arrays.copyOf(strings, stringsLength)));
+    tapeLength = 0;
+    stringsLength = 0;
+  }
+
+  private void reserveStrings(int length) {
+    if (stringsLength + length > strings.length) {
+      strings = Arrays.copyOf(strings, Math.max(strings.length * 2, stringsLength + length));
+    }
+  }
+
+  private int startString() {
+    reserveStrings(2);
+    final int offset = stringsLength;
+    stringsLength += 2;
+    return offset;
+  }
+
+  private void appendString(CharSequence s) {
+    reserveStrings(s.length());
+    if (s instanceof String) {
+      ((String) s).getChars(0, s.length(), strings, stringsLength);
+      stringsLength += s.length();
+    } else {
+      for (int i = 0; i < s.length(); i++) {
+        strings[stringsLength++] = s.charAt(i);
+      }
+    }
+  }
+
+  private void setStringLength(int offset) {
+    final int length = stringsLength - offset - 2;
+    strings[offset] = (char) (length >>> 16);
+    strings[offset + 1] = (char) length;
+  }
+
+  private void endString(int offset) {
+    setStringLength(offset);
+    final boolean key = isKey;
+    addValue(key ? KEY : STRING, offset);
+    isKey = false;
+  }
+
+  private void addNumber(long tag, Number x) {
+    final int offset = startString();
+    appendString(x.toString());
+    setStringLength(offset);
+    addValue(tag, offset);
+  }
+
+  @Override
+  public void onValue(Object x) {
+    if (x == null) {
+      onNull();
+    } else if (x instanceof String) {
+      onString((String) x);
+    } else if (x instanceof Boolean) {
+      onBoolean((Boolean) x);
+    } else if (x instanceof BigInteger) {
+      addNumber(BIG_INTEGER, (BigInteger) x);
+    } else if (x instanceof BigDecimal) {
+      addNumber(BIG_DECIMAL, (BigDecimal) x);
+    } else if (x instanceof Double || x instanceof Float) {
+      onDouble(((Number) x).doubleValue());
+    } else if (x instanceof Long || x instanceof Integer || x instanceof Short || x instanceof Byte) {
+      onLong(((Number) x).longValue());
+    } else {
+      throw new IllegalArgumentException("Unsupported value " + x);
+    }
+  }
+
+  @Override
+  public void onLong(long x) {
+    if (x == (x << (64 - TAG_SHIFT)) >> (64 - TAG_SHIFT)) {
+      addValue(SMALL_LONG, x);
+    } else {
+      addWide(LONG, x);
+    }
+  }
+
+  private void addWide(long tag, long value) {
+    element();
+    add(tag << TAG_SHIFT);
+    add(value);
+    if (depth == 0) {
+      complete();
+    }
+  }
+
+  @Override
+  public void onDouble(double x) {
+    addWide(DOUBLE, Double.doubleToRawLongBits(x));
+  }
+
+  @Override
+  public void onBoolean(boolean x) {
+    addValue(x ? TRUE : FALSE, 0);
+  }
+
+  @Override
+  public void onNull() {
+    addValue(NULL, 0);
+  }
+
+  @Override
+  public void onString(CharSequence x) {
+    final int offset = startString();
+    appendString(x);
+    endString(offset);
+  }
+
+  @Override
+  public boolean acceptsStringChunks() {
+    return true;
+  }
+
+  @Override
+  public void onStringChunk(CharSequence chunk) {
+    if (chunkedString < 0) {
+      chunkedString = startString();
+    }
+    appendString(chunk);
+  }
+
+  @Override
+  public void onStringEnd() {
+    final int offset = chunkedString;
+    chunkedString = -1;
+    endString(offset);
+  }
+
+  private void start(long tag) {
+    element();
+    if (depth == starts.length) {
+      starts = Arrays.copyOf(starts, depth * 2);
+      counts = Arrays.copyOf(counts, depth * 2);
+    }
+    starts[depth] = tapeLength;
+    counts[depth] = 0;
+    depth++;
+    add(tag << TAG_SHIFT);
+  }
+
+  @Override
+  public void onArray() {
+    start(ARRAY);
+  }
+
+  @Override
+  public void onMap() {
+    start(MAP);
+  }
+
+  @Override
+  public void onMapKey() {
+    isKey = true;
+  }
+
+  @Override
+  public void onEnd() {
+    if (depth == 0) {
+      throw new UnsupportedOperationException("Unbalanced onEnd() call.");
+    }
+    depth--;
+    final int start = starts[depth];
+    final int count = counts[depth];
+    final boolean array = tape[start] >>> TAG_SHIFT == ARRAY;
+    // Positions of elements that are one word each are computed
+    final boolean positioned = array && tapeLength - start - 1 != count;
+    final boolean indexed = count >= MAX_COUNT || positioned && count > LINEAR_MAX;
+    tape[start] |= (long) Math.min(count, MAX_COUNT) << 32 | tapeLength;
+    add(END << TAG_SHIFT | (indexed ? INDEXED : 0) | start);
+    if (indexed) {
+      add(count);
+      if (positioned) {
+        final int base = positionsLength - count;
+        for (int i = 0; i < count; i += 2) {
+          final long second = i + 1 < count ? (long) positions[base + i + 1] << 32 : 0;
+          add(second | positions[base + i] & 0xFFFFFFFFL);
+        }
+      }
+    }
+    if (array) {
+      positionsLength -= count;
+    }
+    if (depth == 0) {
+      complete();
+    }
+  }
+
+  @Override
+  public void onReset() {
+    tapeLength = 0;
+    stringsLength = 0;
+    depth = 0;
+    positionsLength = 0;
+    isKey = false;
+    chunkedString = -1;
+  }
+}
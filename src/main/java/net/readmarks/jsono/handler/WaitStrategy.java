@@ -0,0 +1,47 @@
+package net.readmarks.jsono.handler;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * What a thread of {@link AsyncHandler} does while it waits for events (consumers)
+ * or for free space in the ring buffer (producer).
+ */
+public enum WaitStrategy {
+  /**
+   * Polls continuously, lowest latency. Keeps a core busy, suitable when there are spare cores.
+   */
+  BUSY_SPIN {
+    @Override
+    void idle(int attempt) {
+    }
+  },
+  /**
+   * Yields to other threads between polls.
+   */
+  YIELD {
+    @Override
+    void idle(int attempt) {
+      Thread.yield();
+    }
+  },
+  /**
+   * Spins, then yields, then sleeps for short periods. Uses little CPU when there are no events.
+   */
+  PARK {
+    @Override
+    void idle(int attempt) {
+      if (attempt >= 200) {
+        LockSupport.parkNanos(PARK_NANOS);
+      } else if (attempt >= 100) {
+        Thread.yield();
+      }
+    }
+  };
+
+  private static final long PARK_NANOS = 50_000;
+
+  /**
+   * @param attempt Number of consecutive unsuccessful polls before this one.
+   */
+  abstract void idle(int attempt);
+}
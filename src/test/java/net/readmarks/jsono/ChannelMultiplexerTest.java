@@ -0,0 +1,161 @@
+package net.readmarks.jsono;
+
+import net.readmarks.jsono.JsonParser.ParseException;
+import net.readmarks.jsono.handler.SimpleDeserializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ChannelMultiplexerTest {
+  private ServerSocketChannel server;
+  private ChannelMultiplexer multiplexer;
+  private Thread thread;
+  private final Map<SocketChannel, List<Object>> documents = new ConcurrentHashMap<>();
+  private final Map<SocketChannel, Throwable> errors = new ConcurrentHashMap<>();
+  private CountDownLatch closed;
+
+  @Before
+  public void setUp() throws IOException {
+    server = ServerSocketChannel.open();
+    server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1000);
+    multiplexer = new ChannelMultiplexer();
+    multiplexer.setBufferSize(64);
+    multiplexer.setCloseListener((channel, error) -> {
+      if (error != null) {
+        errors.put(channel, error);
+      }
+      closed.countDown();
+    });
+    thread = new Thread(multiplexer);
+    thread.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    multiplexer.close();
+    thread.join(10000);
+    server.close();
+  }
+
+  private static void write(SocketChannel client, String text) throws IOException {
+    final ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    while (bytes.hasRemaining()) {
+      client.write(bytes);
+    }
+  }
+
+  private SocketChannel connect() throws IOException {
+    return SocketChannel.open(server.getLocalAddress());
+  }
+
+  @Test
+  public void manyConnections() throws Exception {
+    final int n = 500;
+    closed = new CountDownLatch(n);
+    multiplexer.listen(server, channel -> {
+      final List<Object> values = Collections.synchronizedList(new ArrayList<>());
+      documents.put(channel, values);
+      return new SimpleDeserializer(values::add);
+    });
+    final List<SocketChannel> clients = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      clients.add(connect());
+    }
+    // Interleave partial documents of all connections
+    final String document = "{\"text\": \"♫ long enough to span read buffers ♫\", \"values\": [1, 2.5, null]}\n";
+    final byte[] bytes = document.getBytes(StandardCharsets.UTF_8);
+    final int[] bounds = {0, 7, 50, bytes.length};
+    for (int k = 1; k < bounds.length; k++) {
+      for (SocketChannel client : clients) {
+        final ByteBuffer part = ByteBuffer.wrap(bytes, bounds[k - 1], bounds[k] - bounds[k - 1]);
+        while (part.hasRemaining()) {
+          client.write(part);
+        }
+      }
+    }
+    for (SocketChannel client : clients) {
+      write(client, document);
+      client.close();
+    }
+    assertTrue(closed.await(30, TimeUnit.SECONDS));
+    assertEquals(Collections.emptyMap(), errors);
+    assertEquals(n, documents.size());
+    final List<Object> expected = new ArrayList<>();
+    final FlatJsonParser parser = FlatJsonParser.makeDefault(new SimpleDeserializer(expected::add));
+    parser.parseNext(document + document);
+    parser.end();
+    for (List<Object> values : documents.values()) {
+      assertEquals(expected, values);
+    }
+  }
+
+  @Test
+  public void invalidInput() throws Exception {
+    closed = new CountDownLatch(2);
+    final List<Object> values = Collections.synchronizedList(new ArrayList<>());
+    final SocketChannel valid = connect();
+    final SocketChannel validAccepted = server.accept();
+    final SocketChannel invalid = connect();
+    final SocketChannel invalidAccepted = server.accept();
+    multiplexer.register(validAccepted, new SimpleDeserializer(values::add));
+    multiplexer.register(invalidAccepted, new SimpleDeserializer(values::add));
+    write(valid, "[1]");
+    write(invalid, "[1}");
+    valid.close();
+    assertTrue(closed.await(30, TimeUnit.SECONDS));
+    assertEquals(1, errors.size());
+    assertTrue(errors.get(invalidAccepted) instanceof ParseException);
+    assertNull(errors.get(validAccepted));
+    assertEquals(Collections.singletonList(Arrays.asList(1L)), values);
+    // Connection is closed by the multiplexer
+    assertEquals(-1, invalid.read(ByteBuffer.allocate(1)));
+    invalid.close();
+  }
+
+  @Test
+  public void failedListen() throws Exception {
+    closed = new CountDownLatch(1);
+    final CountDownLatch serverError = new CountDownLatch(1);
+    final Map<ServerSocketChannel, Throwable> serverErrors = new ConcurrentHashMap<>();
+    multiplexer.setServerErrorListener((channel, error) -> {
+      serverErrors.put(channel, error);
+      serverError.countDown();
+    });
+    final List<Object> values = Collections.synchronizedList(new ArrayList<>());
+    final SocketChannel client = connect();
+    multiplexer.register(server.accept(), new SimpleDeserializer(values::add));
+    write(client, "[1]");
+    final ServerSocketChannel closedServer = ServerSocketChannel.open();
+    closedServer.close();
+    multiplexer.listen(closedServer, channel -> new SimpleDeserializer(values::add));
+    assertTrue(serverError.await(30, TimeUnit.SECONDS));
+    assertTrue(serverErrors.get(closedServer) instanceof ClosedChannelException);
+    // Existing connection is still served
+    write(client, " [2]");
+    client.close();
+    assertTrue(closed.await(30, TimeUnit.SECONDS));
+    assertEquals(Collections.emptyMap(), errors);
+    assertEquals(Arrays.asList(Arrays.asList(1L), Arrays.asList(2L)), values);
+  }
+}
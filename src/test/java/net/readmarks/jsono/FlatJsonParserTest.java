@@ -0,0 +1,477 @@
+package net.readmarks.jsono;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import net.readmarks.jsono.handler.StreamingHandler;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static net.readmarks.jsono.handler.Event.*;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Behaviour specific to {@link FlatJsonParser}. Common cases are covered by {@link JsonParserTest}.
+ */
+public class FlatJsonParserTest {
+  private static Object[] parse(String json) {
+    final Stream.Builder<Object> result = Stream.builder();
+    final FlatJsonParser p = new FlatJsonParser(new StreamingHandler(result::add));
+    p.parseNext(json);
+    p.end();
+    return result.build().toArray();
+  }
+
+  private static Object[] parseUtf8(byte[] json, int splitPos) {
+    final Stream.Builder<Object> result = Stream.builder();
+    final FlatJsonParser p = new FlatJsonParser(new StreamingHandler(result::add));
+    p.parseNext(json, 0, splitPos);
+    final ByteBuffer rest = ByteBuffer.allocateDirect(json.length - splitPos);
+    rest.put(json, splitPos, json.length - splitPos).flip();
+    p.parseNext(rest);
+    p.end();
+    return result.build().toArray();
+  }
+
+  private static Object[] parseUtf8(int... bytes) {
+    final byte[] json = new byte[bytes.length];
+    for (int i = 0; i < bytes.length; i++) {
+      json[i] = (byte) bytes[i];
+    }
+    return parseUtf8(json, 0);
+  }
+
+  @Test
+  public void parseUtf8() {
+    final String json = "{\"\u00e9t\u00e9\": [\"\u266b \ud83c\udfb5\", \"a\\u0041\", -12.5e1, true]}";
+    final byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+    final Object[] expected = parse(json);
+    assertEquals("\u00e9t\u00e9", expected[2]);
+    assertEquals("\u266b \ud83c\udfb5", expected[4]);
+    for (int i = 0; i <= bytes.length; i++) {
+      assertArrayEquals("Split at " + i, expected, parseUtf8(bytes, i));
+    }
+  }
+
+  @Test
+  public void parseUtf8WordBoundaries() {
+    // Runs of whitespace and string chars of various lengths, so special bytes fall on every position in a word
+    final StringBuilder json = new StringBuilder("[");
+    for (int i = 0; i < 20; i++) {
+      json.append("\n").append("                    ", 0, i)
+              .append("\"").append("abcdefghijklmnopqrstuvwxyz", 0, i)
+              .append(i % 3 == 0 ? "\\n" : i % 3 == 1 ? "\u00e9" : "\u266b\\t")
+              .append("0123456789", 0, i % 10).append("\",\t\r\n");
+    }
+    json.append("\"\"]");
+    final Object[] expected = parse(json.toString());
+    final byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+    for (ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+      for (int i = 0; i <= bytes.length; i++) {
+        final Stream.Builder<Object> result = Stream.builder();
+        final FlatJsonParser p = new FlatJsonParser(new StreamingHandler(result::add));
+        p.parseNext(ByteBuffer.wrap(bytes, 0, i).order(order));
+        p.parseNext(ByteBuffer.wrap(bytes, i, bytes.length - i).order(order));
+        p.end();
+        assertArrayEquals("Split at " + i + ", " + order, expected, result.build().toArray());
+      }
+    }
+  }
+
+  @Test(expected = JsonParser.ParseException.class)
+  public void utf8Overlong() {
+    parseUtf8('"', 0xC0, 0x80, '"');
+  }
+
+  @Test(expected = JsonParser.ParseException.class)
+  public void utf8OverlongThreeBytes() {
+    parseUtf8('"', 0xE0, 0x80, 0xAF, '"');
+  }
+
+  @Test(expected = JsonParser.ParseException.class)
+  public void utf8Surrogate() {
+    parseUtf8('"', 0xED, 0xA0, 0x80, '"');
+  }
+
+  @Test(expected = JsonParser.ParseException.class)
+  public void utf8OutOfRange() {
+    parseUtf8('"', 0xF4, 0x90, 0x80, 0x80, '"');
+  }
+
+  @Test(expected = JsonParser.ParseException.class)
+  public void utf8MissingContinuation() {
+    parseUtf8('"', 0xE2, 0x99, '"');
+  }
+
+  @Test(expected = JsonParser.ParseException.class)
+  public void utf8UnexpectedContinuation() {
+    parseUtf8('"', 0x99, '"');
+  }
+
+  @Test(expected = JsonParser.ParseException.class)
+  public void utf8OutsideOfString() {
+    parseUtf8('[', 0xC3, 0xA9, ']');
+  }
+
+  private static class ChunkCollector extends StreamingHandler {
+    final StringBuilder chunks = new StringBuilder();
+    int maxChunk = 0;
+
+    ChunkCollector(Stream.Builder<Object> sink) {
+      super(sink::add);
+    }
+
+    @Override
+    public boolean acceptsStringChunks() {
+      return true;
+    }
+
+    @Override
+    public void onStringChunk(CharSequence chunk) {
+      maxChunk = Math.max(maxChunk, chunk.length());
+      chunks.append(chunk);
+    }
+
+    @Override
+    public void onStringEnd() {
+      onValue(chunks.toString());
+      chunks.setLength(0);
+    }
+  }
+
+  @Test
+  public void parseStringChunks() throws IOException {
+    final StringBuilder longString = new StringBuilder();
+    for (int i = 0; i < 300; i++) {
+      longString.append("a\u00e9\u266b\ud83c\udfb5\n\"").append(i);
+    }
+    final StringWriter quoted = new StringWriter();
+    try (JsonGenerator generator = PrintJson.defaultGenerator(quoted)) {
+      generator.writeString(longString.toString());
+    }
+    final String json = "{\"key\": [\"short\", " + quoted + "]}";
+    final Object[] expected = {MAP, KEY, "key", ARRAY, "short", longString.toString(), END, END};
+    {
+      final Stream.Builder<Object> result = Stream.builder();
+      final ChunkCollector collector = new ChunkCollector(result);
+      final FlatJsonParser p = new FlatJsonParser(collector);
+      p.setStringChunkSize(64);
+      p.parseNext(json);
+      p.end();
+      assertArrayEquals(expected, result.build().toArray());
+      assertTrue(collector.maxChunk >= 64 && collector.maxChunk <= 65);
+    }
+    {
+      final Stream.Builder<Object> result = Stream.builder();
+      final ChunkCollector collector = new ChunkCollector(result);
+      final FlatJsonParser p = new FlatJsonParser(collector);
+      p.setStringChunkSize(64);
+      final byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+      for (int pos = 0; pos < bytes.length; pos += 7) {
+        p.parseNext(bytes, pos, Math.min(7, bytes.length - pos));
+      }
+      p.end();
+      assertArrayEquals(expected, result.build().toArray());
+      assertTrue(collector.maxChunk >= 64 && collector.maxChunk <= 65);
+    }
+    {
+      // Handlers that do not accept chunks receive whole strings
+      final Stream.Builder<Object> result = Stream.builder();
+      final FlatJsonParser p = new FlatJsonParser(new StreamingHandler(result::add));
+      p.setStringChunkSize(64);
+      p.parseNext(json);
+      p.end();
+      assertArrayEquals(expected, result.build().toArray());
+    }
+  }
+
+  @Test
+  public void parseKeysWithTable() {
+    final KeyTable keys = new KeyTable(3, "id");
+    final Stream.Builder<Object> result = Stream.builder();
+    final FlatJsonParser p = new FlatJsonParser(new StreamingHandler(result::add) {
+      @Override
+      public void onKey(int keyId, String key) {
+        result.add(keyId);
+        result.add(key);
+      }
+    });
+    p.setKeyTable(keys);
+    p.parseNext("[{\"id\": 1, \"a\": \"id\"}, {\"a\": 2, \"b\": 3, \"c\": 4}]");
+    p.end();
+    assertArrayEquals(new Object[]{
+                    ARRAY,
+                    MAP, KEY, 0, "id", 1L, KEY, 1, "a", "id", END,
+                    MAP, KEY, 1, "a", 2L, KEY, 2, "b", 3L, KEY, KeyTable.UNKNOWN, "c", 4L, END,
+                    END},
+            result.build().toArray());
+  }
+
+  /**
+   * Skips values of map keys starting with "skip" and first element of arrays.
+   */
+  private static class SkippingHandler extends StreamingHandler {
+    FlatJsonParser parser;
+
+    SkippingHandler(Stream.Builder<Object> sink) {
+      super(sink::add);
+    }
+
+    @Override
+    public void onArray() {
+      super.onArray();
+      parser.skipValue();
+    }
+
+    @Override
+    public void onValue(Object x) {
+      super.onValue(x);
+      if (x instanceof String && ((String) x).startsWith("skip")) {
+        parser.skipValue();
+      }
+    }
+  }
+
+  @Test
+  public void suspendAfterEachEvent() {
+    final String json = "{\"a\": [1, \"x\"], \"b\": 2.5} 3";
+    final Object[] expected = parse(json);
+    final Stream.Builder<Object> result = Stream.builder();
+    final FlatJsonParser[] parser = new FlatJsonParser[1];
+    parser[0] = new FlatJsonParser(new StreamingHandler(x -> {
+      result.add(x);
+      parser[0].suspend();
+    }));
+    final ByteBuffer bytes = ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8));
+    final CharBuffer chars = CharBuffer.wrap(json.toCharArray());
+    int events = 0;
+    while (bytes.hasRemaining()) {
+      parser[0].resume();
+      parser[0].parseNext(bytes);
+      events++;
+    }
+    parser[0].end();
+    assertArrayEquals(expected, result.build().toArray());
+    // Last call parses the trailing number that is completed by end()
+    assertEquals(expected.length, events);
+
+    final Stream.Builder<Object> charResult = Stream.builder();
+    parser[0] = new FlatJsonParser(new StreamingHandler(x -> {
+      charResult.add(x);
+      parser[0].suspend();
+    }));
+    while (chars.hasRemaining()) {
+      parser[0].resume();
+      parser[0].parseNext(chars);
+    }
+    parser[0].end();
+    assertArrayEquals(expected, charResult.build().toArray());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void suspendWithArrayInput() {
+    final FlatJsonParser[] parser = new FlatJsonParser[1];
+    parser[0] = new FlatJsonParser(new StreamingHandler(x -> parser[0].suspend()));
+    parser[0].parseNext("[1, 2]");
+  }
+
+  @Test
+  public void skipValues() {
+    final String json = "{\"skipMap\": {\"a\": [1, {\"b\": \"]}\\\"\"}], \"c\": null},"
+            + " \"x\": [\"first\", \"second\"],"
+            + " \"skipString\": \"[{\\\\\\\"\u266b\","
+            + " \"skipNumber\": -1.5e3,"
+            + " \"skipConst\":true,"
+            + " \"e\": [],"
+            + " \"y\": 2} \"skipTop\" [1, 2] 3";
+    final Object[] expected = {
+            MAP,
+            KEY, "skipMap",
+            KEY, "x", ARRAY, "second", END,
+            KEY, "skipString",
+            KEY, "skipNumber",
+            KEY, "skipConst",
+            KEY, "e", ARRAY, END,
+            KEY, "y", 2L,
+            END,
+            "skipTop", 3L};
+    final byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+    for (int i = 0; i <= json.length(); i++) {
+      final Stream.Builder<Object> result = Stream.builder();
+      final SkippingHandler handler = new SkippingHandler(result);
+      handler.parser = new FlatJsonParser(handler);
+      handler.parser.parseNext(json.substring(0, i));
+      handler.parser.parseNext(json.substring(i));
+      handler.parser.end();
+      assertArrayEquals("Split at " + i, expected, result.build().toArray());
+    }
+    for (int i = 0; i <= bytes.length; i++) {
+      final Stream.Builder<Object> result = Stream.builder();
+      final SkippingHandler handler = new SkippingHandler(result);
+      handler.parser = new FlatJsonParser(handler);
+      handler.parser.parseNext(bytes, 0, i);
+      handler.parser.parseNext(bytes, i, bytes.length - i);
+      handler.parser.end();
+      assertArrayEquals("Split at " + i, expected, result.build().toArray());
+    }
+  }
+
+  @Test(expected = JsonParser.ParseException.class)
+  public void skipUnterminatedValue() {
+    final SkippingHandler handler = new SkippingHandler(Stream.builder());
+    handler.parser = new FlatJsonParser(handler);
+    handler.parser.parseNext("{\"skip\": [1, [2]");
+    handler.parser.end();
+  }
+
+  @Test
+  public void parseDocumentSequence() {
+    assertArrayEquals(new Object[]{MAP, END, ARRAY, END, 1L, 2L, "a"}, parse("{} []\n1 2\"a\""));
+  }
+
+  @Test
+  public void parseDeepNesting() {
+    final int n = 100;
+    final StringBuilder json = new StringBuilder();
+    for (int i = 0; i < n; i++) {
+      json.append(i % 2 == 0 ? "[" : "{\"k\":");
+    }
+    json.append(0);
+    for (int i = n - 1; i >= 0; i--) {
+      json.append(i % 2 == 0 ? "]" : "}");
+    }
+    final Object[] events = parse(json.toString());
+    assertEquals(301, events.length);
+    assertArrayEquals(new Object[]{ARRAY, MAP, KEY, "k", ARRAY}, Arrays.copyOf(events, 5));
+    assertArrayEquals(new Object[]{0L, END, END}, Arrays.copyOfRange(events, 200, 203));
+  }
+
+  @Test(expected = JsonParser.ParseException.class)
+  public void trailingComma() {
+    parse("[1,]");
+  }
+
+  @Test(expected = JsonParser.ParseException.class)
+  public void leadingComma() {
+    parse("[,1]");
+  }
+
+  @Test(expected = JsonParser.ParseException.class)
+  public void missingColon() {
+    parse("{\"a\" 1}");
+  }
+
+  @Test(expected = JsonParser.ParseException.class)
+  public void unexpectedTopLevelChar() {
+    parse("x");
+  }
+
+  @Test(expected = JsonParser.ParseException.class)
+  public void invalidEscape() {
+    parse("\"\\x\"");
+  }
+
+  @Test(expected = JsonParser.ParseException.class)
+  public void unterminatedArray() {
+    parse("[1");
+  }
+
+  @Test
+  public void batchMode() {
+    final StringBuilder json = new StringBuilder();
+    for (int i = 0; i < 50; i++) {
+      json.append("{\"id\": ").append(i).append(", \"name\": \"");
+      for (int j = 0; j < i * 3; j++) {
+        json.append((char) ('a' + j % 26));
+      }
+      json.append("\", \"x\": [1.5, true, null, 123456789012345678901234567890, -1e400]} ");
+    }
+    final byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+    final Stream.Builder<Object> events = Stream.builder();
+    final FlatJsonParser plain = new FlatJsonParser(new ChunkCollector(events));
+    plain.setKeyTable(new KeyTable(4, "id", "name"));
+    plain.setStringChunkSize(64);
+    plain.parseNext(bytes, 0, bytes.length);
+    plain.end();
+    final Object[] expected = events.build().toArray();
+    for (int capacity : new int[]{1, 5, 1024}) {
+      final Stream.Builder<Object> result = Stream.builder();
+      final ChunkCollector collector = new ChunkCollector(result);
+      final int[] batches = {0};
+      final FlatJsonParser p = new FlatJsonParser(new StreamingHandler(x -> {
+        throw new AssertionError();
+      }));
+      p.setKeyTable(new KeyTable(4, "id", "name"));
+      p.setStringChunkSize(64);
+      p.setBatchHandler(new BatchHandler() {
+        @Override
+        public void onBatch(EventBatch batch) {
+          assertTrue(batch.size() > 0 && batch.size() <= capacity);
+          batches[0]++;
+          batch.replay(collector);
+        }
+
+        @Override
+        public boolean acceptsStringChunks() {
+          return true;
+        }
+      }, capacity);
+      for (int pos = 0; pos < bytes.length; pos += 100) {
+        final int before = batches[0];
+        p.parseNext(bytes, pos, Math.min(100, bytes.length - pos));
+        // Batch is flushed at the end of each input
+        assertTrue(batches[0] > before);
+      }
+      p.end();
+      assertArrayEquals("capacity " + capacity, expected, result.build().toArray());
+    }
+  }
+  @Test
+  public void batchDropsDeliveredValues() {
+    final EventBatch[] delivered = new EventBatch[1];
+    final Object[] value = new Object[1];
+    final FlatJsonParser p = new FlatJsonParser(new StreamingHandler(x -> {
+      throw new AssertionError();
+    }));
+    p.setBatchHandler(batch -> {
+      delivered[0] = batch;
+      value[0] = batch.value(1);
+    });
+    p.parseNext("[12345678901234567890]");
+    assertEquals(new BigInteger("12345678901234567890"), value[0]);
+    assertEquals(null, delivered[0].value(1));
+  }
+
+
+  @Test
+  public void batchColumns() {
+    final long[] sum = {0};
+    final int[] strings = {0};
+    final FlatJsonParser p = new FlatJsonParser(new StreamingHandler(x -> {
+    }));
+    p.setBatchHandler(batch -> {
+      final byte[] types = batch.types();
+      final long[] longs = batch.longs();
+      for (int i = 0; i < batch.size(); i++) {
+        if (types[i] == EventBatch.LONG) {
+          sum[0] += longs[i];
+        } else if (types[i] == EventBatch.STRING) {
+          assertEquals("s" + strings[0]++, batch.stringValue(i));
+        }
+      }
+    }, 3);
+    p.parseNext("[1, \"s0\", 2, 3, \"s1\", 4, [5, \"s2\"]]");
+    p.end();
+    assertEquals(15, sum[0]);
+    assertEquals(3, strings[0]);
+  }
+}
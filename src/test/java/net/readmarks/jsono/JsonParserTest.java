@@ -2,16 +2,40 @@ package net.readmarks.jsono;
 
 import net.readmarks.jsono.handler.StreamingHandler;
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 import static net.readmarks.jsono.handler.Event.*;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
+@RunWith(Parameterized.class)
 public class JsonParserTest {
-  private static Object[] parse(String json) {
+  @Parameterized.Parameters(name = "{0}")
+  public static Collection<Object[]> engines() {
+    return Arrays.asList(
+            new Object[]{"JsonParser", (Function<EventHandler, IncrementalParser>) JsonParser::new},
+            new Object[]{"FlatJsonParser", (Function<EventHandler, IncrementalParser>) FlatJsonParser::new});
+  }
+
+  private final Function<EventHandler, IncrementalParser> engine;
+
+  public JsonParserTest(String name, Function<EventHandler, IncrementalParser> engine) {
+    this.engine = engine;
+  }
+
+  private Object[] parse(String json) {
     final Stream.Builder<Object> result = Stream.builder();
-    final JsonParser p = new JsonParser(new StreamingHandler(result::add));
+    final IncrementalParser p = engine.apply(new StreamingHandler(result::add));
     for (int i = 0; i < json.length(); i++) {
       p.parseNext(json.charAt(i));
     }
@@ -19,6 +43,80 @@ public class JsonParserTest {
     return result.build().toArray();
   }
 
+  private Object[] parseSplit(String json, int splitPos) {
+    final Stream.Builder<Object> result = Stream.builder();
+    final IncrementalParser p = engine.apply(new StreamingHandler(result::add));
+    final char[] chars = json.toCharArray();
+    p.parseNext(chars, 0, splitPos);
+    p.parseNext(CharBuffer.wrap(json, splitPos, json.length()));
+    p.end();
+    return result.build().toArray();
+  }
+
+  @Test
+  public void parseBulk() {
+    final String json = "[null, {\"k\\u0041\" : [true,false, -1.5e3]},\n \"str\\ting\", 12345 ] 7";
+    final Object[] expected = parse(json);
+    for (int i = 0; i <= json.length(); i++) {
+      assertArrayEquals("Split at " + i, expected, parseSplit(json, i));
+    }
+  }
+
+  @Test
+  public void typedCallbacks() {
+    final StringBuilder calls = new StringBuilder();
+    final IncrementalParser p = engine.apply(new EventHandler() {
+      @Override
+      public void onValue(Object x) {
+        throw new AssertionError("Unexpected untyped value " + x);
+      }
+
+      @Override
+      public void onLong(long x) {
+        calls.append("long ").append(x).append(';');
+      }
+
+      @Override
+      public void onDouble(double x) {
+        calls.append("double ").append(x).append(';');
+      }
+
+      @Override
+      public void onBoolean(boolean x) {
+        calls.append("boolean ").append(x).append(';');
+      }
+
+      @Override
+      public void onNull() {
+        calls.append("null;");
+      }
+
+      @Override
+      public void onString(CharSequence x) {
+        calls.append("string ").append(x).append(';');
+      }
+
+      @Override
+      public void onArray() {
+      }
+
+      @Override
+      public void onMap() {
+      }
+
+      @Override
+      public void onMapKey() {
+      }
+
+      @Override
+      public void onEnd() {
+      }
+    });
+    p.parseNext("[1, 2.5, true, false, null, {\"k\": \"v\"}]");
+    p.end();
+    assertEquals("long 1;double 2.5;boolean true;boolean false;null;string k;string v;", calls.toString());
+  }
+
   @Test
   public void parseConstants() {
     assertArrayEquals(new Object[]{null}, parse("null"));
@@ -69,6 +167,37 @@ public class JsonParserTest {
     assertArrayEquals(new Object[]{ARRAY, 1234L, END}, parse("[1234]"));
   }
 
+  @Test
+  public void parseNumberRanges() {
+    assertArrayEquals(new Object[]{Long.MAX_VALUE}, parse("9223372036854775807"));
+    assertArrayEquals(new Object[]{Long.MIN_VALUE}, parse("-9223372036854775808"));
+    assertArrayEquals(new Object[]{new BigInteger("9223372036854775808")}, parse("9223372036854775808"));
+    assertArrayEquals(new Object[]{new BigInteger("-9223372036854775809")}, parse("-9223372036854775809"));
+    assertArrayEquals(new Object[]{new BigInteger("123456789012345678901234567890")},
+            parse("123456789012345678901234567890"));
+    assertArrayEquals(new Object[]{new BigDecimal("1.5e400")}, parse("1.5e400"));
+    assertArrayEquals(new Object[]{0.0}, parse("1e-400"));
+    assertArrayEquals(new Object[]{-0.0}, parse("-0.0"));
+    assertArrayEquals(new Object[]{0.1}, parse("0.1"));
+    assertArrayEquals(new Object[]{1e23}, parse("1e23"));
+    assertArrayEquals(new Object[]{Double.MAX_VALUE}, parse("1.7976931348623157e308"));
+    assertArrayEquals(new Object[]{Double.MIN_VALUE}, parse("4.9e-324"));
+    assertArrayEquals(new Object[]{1.2345678901234567}, parse("1.23456789012345678901234567890"));
+    assertArrayEquals(new Object[]{ARRAY, 1.5, -2L, 3e2, END}, parse("[1.5,-2,3E+2]"));
+  }
+
+  @Test
+  public void invalidNumbers() {
+    for (String json : new String[]{"01", "-", "1.", "1.e3", "1e", "1e+", "--1", "1-2", "[+1]", "0.1.2", "1ee2"}) {
+      try {
+        parse(json);
+        fail("Exception expected for '" + json + "'.");
+      } catch (JsonParser.ParseException e) {
+        // Expected
+      }
+    }
+  }
+
   @Test(expected = JsonParser.ParseException.class)
   public void noCommas() {
     parse("[1 2 3]");
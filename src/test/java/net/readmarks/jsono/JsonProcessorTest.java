@@ -0,0 +1,198 @@
+package net.readmarks.jsono;
+
+import net.readmarks.jsono.JsonParser.ParseException;
+import net.readmarks.jsono.handler.Event;
+import net.readmarks.jsono.handler.StreamingHandler;
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class JsonProcessorTest {
+  private static final String JSON = "{\"a\": [1, -2.5e3, true, null, \"x\\u00e9☺\"], \"b\": {}} 42 [[]] \"s\" 7";
+
+  /**
+   * Synchronous publisher of given buffers.
+   */
+  private static class BufferPublisher implements Publisher<ByteBuffer> {
+    final List<ByteBuffer> buffers;
+    int next = 0;
+    long requested = 0;
+    boolean cancelled = false;
+
+    BufferPublisher(ByteBuffer... buffers) {
+      this.buffers = Arrays.asList(buffers);
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+      subscriber.onSubscribe(new Subscription() {
+        @Override
+        public void request(long n) {
+          requested += n;
+          while (requested > 0 && next < buffers.size() && !cancelled) {
+            requested--;
+            subscriber.onNext(buffers.get(next++));
+          }
+          if (next == buffers.size() && !cancelled) {
+            next++;
+            subscriber.onComplete();
+          }
+        }
+
+        @Override
+        public void cancel() {
+          cancelled = true;
+        }
+      });
+    }
+  }
+
+  private static class Recorder implements Subscriber<Object> {
+    final List<Object> events = new ArrayList<>();
+    final int batch;
+    Subscription subscription;
+    Throwable error;
+    boolean completed;
+
+    /**
+     * @param batch Number of events requested at once, 0 to request them explicitly.
+     */
+    Recorder(int batch) {
+      this.batch = batch;
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+      subscription = s;
+      if (batch > 0) {
+        s.request(batch);
+      }
+    }
+
+    @Override
+    public void onNext(Object event) {
+      events.add(event);
+      if (batch > 0 && events.size() % batch == 0) {
+        subscription.request(batch);
+      }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      error = t;
+    }
+
+    @Override
+    public void onComplete() {
+      completed = true;
+    }
+  }
+
+  private static List<Object> expectedEvents(String json) {
+    final List<Object> events = new ArrayList<>();
+    final FlatJsonParser parser = FlatJsonParser.makeDefault(new StreamingHandler(events::add));
+    parser.parseNext(json);
+    parser.end();
+    events.replaceAll(x -> x == null ? Event.NULL : x);
+    return events;
+  }
+
+  private static ByteBuffer bytes(String s) {
+    return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static Recorder run(BufferPublisher publisher, int batch) {
+    final JsonProcessor processor = new JsonProcessor();
+    final Recorder recorder = new Recorder(batch);
+    processor.subscribe(recorder);
+    publisher.subscribe(processor);
+    return recorder;
+  }
+
+  @Test
+  public void deliverOnDemand() {
+    final List<Object> expected = expectedEvents(JSON);
+    final byte[] input = JSON.getBytes(StandardCharsets.UTF_8);
+    for (int batch : new int[]{1, 2, 5, Integer.MAX_VALUE}) {
+      for (int split = 0; split <= input.length; split++) {
+        final BufferPublisher publisher = new BufferPublisher(
+                ByteBuffer.wrap(input, 0, split).slice(),
+                ByteBuffer.wrap(input, split, input.length - split).slice());
+        final Recorder recorder = run(publisher, batch);
+        assertNull(recorder.error);
+        assertEquals("batch=" + batch + ", split=" + split, expected, recorder.events);
+        assertTrue(recorder.completed);
+      }
+    }
+  }
+
+  @Test
+  public void keepLeftoverInput() {
+    final ByteBuffer input = bytes("[1, 2, 3]");
+    final BufferPublisher publisher = new BufferPublisher(input, bytes(" 4"));
+    final Recorder recorder = run(publisher, 0);
+    assertEquals(0, publisher.next);
+    recorder.subscription.request(2);
+    assertEquals(Arrays.asList(Event.ARRAY, 1L), recorder.events);
+    assertEquals(1, publisher.next);
+    assertTrue(input.hasRemaining());
+    recorder.subscription.request(3);
+    assertEquals(Arrays.asList(Event.ARRAY, 1L, 2L, 3L, Event.END), recorder.events);
+    assertEquals(1, publisher.next);
+    assertFalse(recorder.completed);
+    recorder.subscription.request(1);
+    assertEquals(4L, recorder.events.get(5));
+    assertTrue(recorder.completed);
+  }
+
+  @Test
+  public void cancel() {
+    final BufferPublisher publisher = new BufferPublisher(bytes("[1, 2"), bytes(", 3]"));
+    final Recorder recorder = run(publisher, 0);
+    recorder.subscription.request(2);
+    recorder.subscription.cancel();
+    assertTrue(publisher.cancelled);
+    recorder.subscription.request(10);
+    assertEquals(Arrays.asList(Event.ARRAY, 1L), recorder.events);
+    assertFalse(recorder.completed);
+    assertNull(recorder.error);
+  }
+
+  @Test
+  public void parseError() {
+    final BufferPublisher publisher = new BufferPublisher(bytes("[1, }"), bytes("[]"));
+    final Recorder recorder = run(publisher, 1);
+    assertEquals(Arrays.asList(Event.ARRAY, 1L), recorder.events);
+    assertTrue(recorder.error instanceof ParseException);
+    assertTrue(publisher.cancelled);
+  }
+
+  @Test
+  public void incompleteInput() {
+    final Recorder recorder = run(new BufferPublisher(bytes("[1")), Integer.MAX_VALUE);
+    assertEquals(Arrays.asList(Event.ARRAY, 1L), recorder.events);
+    assertTrue(recorder.error instanceof ParseException);
+    assertFalse(recorder.completed);
+  }
+
+  @Test
+  public void singleSubscriber() {
+    final JsonProcessor processor = new JsonProcessor();
+    processor.subscribe(new Recorder(1));
+    final Recorder second = new Recorder(1);
+    processor.subscribe(second);
+    assertTrue(second.error instanceof IllegalStateException);
+  }
+}
@@ -0,0 +1,124 @@
+package net.readmarks.jsono;
+
+import net.readmarks.jsono.JsonParser.ParseException;
+import net.readmarks.jsono.JsonReader.Token;
+import net.readmarks.jsono.handler.Event;
+import net.readmarks.jsono.handler.StreamingHandler;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class JsonReaderTest {
+  private static final String JSON = "{\"a\": [1, -2.5e3, true, null, \"x\\u00e9♫\"], \"b\": {}, \"c\": false} 42 [[]] \"s\" 7 [12345678901234567890, 1e400]";
+
+  private static InputStream input(String json) {
+    return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Converts tokens to the same representation as {@link StreamingHandler} events.
+   */
+  private static List<Object> read(JsonReader reader) throws IOException {
+    final List<Object> events = new ArrayList<>();
+    Token token;
+    while ((token = reader.next()) != null) {
+      assertEquals(token, reader.currentToken());
+      switch (token) {
+        case ARRAY:
+          events.add(Event.ARRAY);
+          break;
+        case MAP:
+          events.add(Event.MAP);
+          break;
+        case END:
+          events.add(Event.END);
+          break;
+        case KEY:
+          events.add(Event.KEY);
+          events.add(reader.stringValue());
+          break;
+        case STRING:
+          events.add(reader.charsValue().toString());
+          break;
+        case LONG:
+          events.add(reader.longValue());
+          break;
+        case DOUBLE:
+          events.add(reader.doubleValue());
+          break;
+        case NUMBER:
+          events.add(reader.numberValue());
+          break;
+        case BOOLEAN:
+          events.add(reader.booleanValue());
+          break;
+        case NULL:
+          events.add(null);
+          break;
+      }
+    }
+    assertNull(reader.next());
+    return events;
+  }
+
+  @Test
+  public void readTokens() throws IOException {
+    final List<Object> expected = new ArrayList<>();
+    final FlatJsonParser parser = FlatJsonParser.makeDefault(new StreamingHandler(expected::add));
+    parser.parseNext(JSON);
+    parser.end();
+    assertEquals(new BigInteger("12345678901234567890"), expected.get(expected.size() - 3));
+    assertEquals(new BigDecimal("1e400"), expected.get(expected.size() - 2));
+    for (int bufferSize : new int[]{1, 2, 3, 7, 8192}) {
+      assertEquals(expected, read(new JsonReader(input(JSON), bufferSize)));
+    }
+  }
+
+  @Test
+  public void skipValues() throws IOException {
+    final JsonReader reader = new JsonReader(input("{\"a\": [1, {\"x\": \"]\"}], \"b\": 2, \"c\": {\"d\": []}} [3, [4]] 5"), 3);
+    assertEquals(Token.MAP, reader.next());
+    assertEquals(Token.KEY, reader.next());
+    reader.skipValue();
+    assertEquals(Token.KEY, reader.next());
+    assertEquals("b", reader.stringValue());
+    assertEquals(Token.LONG, reader.next());
+    assertEquals(2.0, reader.doubleValue(), 0);
+    assertEquals(Token.KEY, reader.next());
+    assertEquals(Token.MAP, reader.next());
+    reader.skipValue();
+    assertEquals(Token.END, reader.currentToken());
+    assertEquals(Token.END, reader.next());
+    assertEquals(Token.ARRAY, reader.next());
+    reader.skipValue();
+    assertEquals(Arrays.asList(5L), read(reader));
+  }
+
+  @Test(expected = ParseException.class)
+  public void invalidInput() throws IOException {
+    read(new JsonReader(input("[1, 2}")));
+  }
+
+  @Test(expected = ParseException.class)
+  public void incompleteInput() throws IOException {
+    read(new JsonReader(input("{\"a\": 1")));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void wrongValueType() throws IOException {
+    final JsonReader reader = new JsonReader(input("\"1\""));
+    reader.next();
+    reader.longValue();
+  }
+}
@@ -0,0 +1,48 @@
+package net.readmarks.jsono;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class KeyTableTest {
+  @Test
+  public void registerAndFind() {
+    final KeyTable t = new KeyTable(4, "id", "name");
+    assertEquals(0, t.find("id"));
+    assertEquals(1, t.find(new StringBuilder("name")));
+    assertEquals(KeyTable.UNKNOWN, t.find("other"));
+    assertEquals(1, t.register("name"));
+    assertEquals(2, t.register("other"));
+    assertEquals("other", t.key(2));
+    assertEquals(3, t.size());
+  }
+
+  @Test
+  public void canonicalInstances() {
+    final KeyTable t = new KeyTable(1);
+    final String a = t.canonical(new StringBuilder("key"));
+    assertSame(a, t.canonical(new StringBuilder("key")));
+    final String b = t.canonical(new StringBuilder("overflow"));
+    assertEquals("overflow", b);
+    assertNotSame(b, t.canonical(new StringBuilder("overflow")));
+    assertEquals(KeyTable.UNKNOWN, t.intern("overflow"));
+    assertEquals(1, t.size());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void registerOverflow() {
+    new KeyTable(1, "a", "b");
+  }
+
+  @Test
+  public void manyKeys() {
+    final KeyTable t = new KeyTable(1000);
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(i, t.register("k" + i));
+    }
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(i, t.find(new StringBuilder("k").append(i)));
+    }
+    assertEquals(KeyTable.UNKNOWN, t.find("k1000"));
+  }
+}
@@ -0,0 +1,90 @@
+package net.readmarks.jsono;
+
+import net.readmarks.jsono.handler.StreamingHandler;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MappedFileTest {
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private static final String JSON = "{\"\u00e9t\u00e9\": [\"\u266b \ud83c\udfb5\", \"a\\u0041\", -12.5e1, true]}\n[1, 2]";
+
+  private static Object[] parse(String json) {
+    final Stream.Builder<Object> result = Stream.builder();
+    final FlatJsonParser parser = new FlatJsonParser(new StreamingHandler(result::add));
+    parser.parseNext(json);
+    parser.end();
+    return result.build().toArray();
+  }
+
+  @Test
+  public void parseInWindows() throws IOException {
+    final Path file = folder.newFile().toPath();
+    Files.write(file, JSON.getBytes(StandardCharsets.UTF_8));
+    final Object[] expected = parse(JSON);
+    for (int window : new int[]{1, 3, 7, MappedFile.DEFAULT_WINDOW}) {
+      final Stream.Builder<Object> result = Stream.builder();
+      final FlatJsonParser parser = new FlatJsonParser(new StreamingHandler(result::add));
+      MappedFile.parse(file, parser, window);
+      parser.end();
+      assertArrayEquals("Window " + window, expected, result.build().toArray());
+    }
+  }
+
+  @Test
+  public void parseRegion() throws IOException {
+    final Path file = folder.newFile().toPath();
+    final byte[] bytes = JSON.getBytes(StandardCharsets.UTF_8);
+    Files.write(file, bytes);
+    // Second document, after the line feed
+    final int start = JSON.substring(0, JSON.indexOf('\n') + 1).getBytes(StandardCharsets.UTF_8).length;
+    final Stream.Builder<Object> result = Stream.builder();
+    final FlatJsonParser parser = new FlatJsonParser(new StreamingHandler(result::add));
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      MappedFile.parse(channel, start, bytes.length - start, parser, 4);
+    }
+    parser.end();
+    assertArrayEquals(parse("[1, 2]"), result.build().toArray());
+  }
+
+  @Test
+  public void resumeAfterSuspend() throws IOException {
+    final Path file = folder.newFile().toPath();
+    final byte[] bytes = JSON.getBytes(StandardCharsets.UTF_8);
+    Files.write(file, bytes);
+    for (int window : new int[]{3, 7, MappedFile.DEFAULT_WINDOW}) {
+      final Stream.Builder<Object> result = Stream.builder();
+      final FlatJsonParser[] parser = new FlatJsonParser[1];
+      // Stops after every event
+      parser[0] = new FlatJsonParser(new StreamingHandler(event -> {
+        result.add(event);
+        parser[0].suspend();
+      }));
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        long pos = 0;
+        int stops = 0;
+        while (pos < bytes.length) {
+          pos = MappedFile.parse(channel, pos, bytes.length - pos, parser[0], window);
+          parser[0].resume();
+          stops++;
+        }
+        assertTrue(stops > 1);
+      }
+      parser[0].end();
+      assertArrayEquals("Window " + window, parse(JSON), result.build().toArray());
+    }
+  }
+}
@@ -1,15 +1,19 @@
 package net.readmarks.jsono;
 
 import com.fasterxml.jackson.core.JsonGenerator;
+import net.readmarks.jsono.handler.HandlerUtil;
+import net.readmarks.jsono.handler.NestingCounter;
+import net.readmarks.jsono.handler.SimpleDeserializer;
 import net.readmarks.jsono.handler.StreamingHandler;
-import net.readmarks.utf8.Utf8Decoder2;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class MicroBenchmark {
@@ -17,6 +21,8 @@ public class MicroBenchmark {
   public static void main(String[] args) throws IOException {
     mixedStructTest();
     deserializeStringsTest();
+    selectiveExtractTest();
+    parallelNdjsonTest();
   }
 
   private static void mixedStructTest() {
@@ -56,23 +62,146 @@ public class MicroBenchmark {
     }
     repeatedlyParse(jsonStringWriter.getBuffer().toString(),
             50);
+    repeatedlyParseChunked(jsonStringWriter.getBuffer().toString(),
+            50, 8192);
   }
 
-  private static void repeatedlyParse(String json, int iterations) {
+  private static void selectiveExtractTest() {
+    final StringBuilder json = new StringBuilder("[");
+    for (int i = 0; i < 1000; i++) {
+      json.append(i == 0 ? "" : ",")
+              .append("{\"payload\": {\"text\": \"Elvis \\u266b has left the building\", \"tags\": [\"a\", \"b\"],")
+              .append(" \"size\": [1.5, 2.5, 3.5]}, \"id\": ").append(i).append("}");
+    }
+    json.append("]");
+    final byte[] sourceBytes = json.toString().getBytes(StandardCharsets.UTF_8);
+    final int iterations = 2000;
+    final AtomicLong eventCount = new AtomicLong(0);
+    final long t1 = System.currentTimeMillis();
+    for (int ll = 0; ll < iterations; ll++) {
+      final FlatJsonParser[] parser = new FlatJsonParser[1];
+      parser[0] = FlatJsonParser.makeDefault(new StreamingHandler(event -> eventCount.incrementAndGet()) {
+        @Override
+        public void onString(CharSequence x) {
+          if ("payload".contentEquals(x)) {
+            parser[0].skipValue();
+          }
+          eventCount.incrementAndGet();
+        }
+      });
+      parser[0].parseNext(sourceBytes, 0, sourceBytes.length);
+      parser[0].end();
+    }
+    report("FlatJsonParser, UTF-8 bytes, skipping values", sourceBytes, iterations, eventCount,
+            System.currentTimeMillis() - t1);
+  }
+
+  private static void parallelNdjsonTest() {
+    final StringBuilder json = new StringBuilder();
+    for (int i = 0; i < 200000; i++) {
+      json.append("{\"id\": ").append(i).append(", \"name\": \"Thomas Thumbson\", \"tags\": [\"jr.\", \"III\"],")
+              .append(" \"score\": 314e-2, \"active\": true}\n");
+    }
+    final byte[] sourceBytes = json.toString().getBytes(StandardCharsets.UTF_8);
+    final int iterations = 20;
+    {
+      final AtomicLong eventCount = new AtomicLong(0);
+      final long t1 = System.currentTimeMillis();
+      for (int ll = 0; ll < iterations; ll++) {
+        final FlatJsonParser p = FlatJsonParser.makeDefault(new SimpleDeserializer(x -> eventCount.incrementAndGet()));
+        p.parseNext(sourceBytes, 0, sourceBytes.length);
+        p.end();
+      }
+      report("FlatJsonParser, NDJSON, 1 thread", sourceBytes, iterations, eventCount,
+              System.currentTimeMillis() - t1);
+    }
+    {
+      final AtomicLong eventCount = new AtomicLong(0);
+      final ParallelParser parser = new ParallelParser();
+      final long t1 = System.currentTimeMillis();
+      for (int ll = 0; ll < iterations; ll++) {
+        parser.parse(ByteBuffer.wrap(sourceBytes), SimpleDeserializer::new, x -> eventCount.incrementAndGet());
+      }
+      report("ParallelParser, NDJSON, " + ForkJoinPool.commonPool().getParallelism() + " threads",
+              sourceBytes, iterations, eventCount, System.currentTimeMillis() - t1);
+    }
+  }
+
+  private static void repeatedlyParseChunked(String json, int iterations, int chunkSize) {
     final byte[] sourceBytes = json.getBytes(StandardCharsets.UTF_8);
     final AtomicLong eventCount = new AtomicLong(0);
     final long t1 = System.currentTimeMillis();
     for (int ll = 0; ll < iterations; ll++) {
-      // Counter should normally be used in real applications so it's added here too.
-      final JsonParser p = JsonParser.makeDefault(
-              new StreamingHandler(event -> eventCount.incrementAndGet()));
-      final Utf8Decoder2 utf8parser = new Utf8Decoder2(p::parseNext, 2048);
-      utf8parser.put(sourceBytes);
-      utf8parser.end();
+      final FlatJsonParser p = FlatJsonParser.makeDefault(
+              new StreamingHandler(event -> eventCount.incrementAndGet()) {
+                @Override
+                public boolean acceptsStringChunks() {
+                  return true;
+                }
+
+                @Override
+                public void onStringChunk(CharSequence chunk) {
+                }
+
+                @Override
+                public void onStringEnd() {
+                  eventCount.incrementAndGet();
+                }
+              });
+      p.setStringChunkSize(chunkSize);
+      p.parseNext(sourceBytes, 0, sourceBytes.length);
       p.end();
     }
-    long elapsed = System.currentTimeMillis() - t1;
-    System.out.println("\n" + iterations + " iterations, " + (1e3 * elapsed / iterations) + " uSec/document.");
+    report("FlatJsonParser, UTF-8 bytes, string chunks of " + chunkSize, sourceBytes, iterations, eventCount,
+            System.currentTimeMillis() - t1);
+  }
+
+  private static void repeatedlyParse(String json, int iterations) {
+    final byte[] sourceBytes = json.getBytes(StandardCharsets.UTF_8);
+    {
+      final AtomicLong eventCount = new AtomicLong(0);
+      final long t1 = System.currentTimeMillis();
+      for (int ll = 0; ll < iterations; ll++) {
+        // Counter should normally be used in real applications so it's added here too.
+        final JsonParser p = JsonParser.makeDefault(
+                new StreamingHandler(event -> eventCount.incrementAndGet()));
+        p.parseNext(json);
+        p.end();
+      }
+      report("JsonParser, chars", sourceBytes, iterations, eventCount, System.currentTimeMillis() - t1);
+    }
+    {
+      final AtomicLong eventCount = new AtomicLong(0);
+      final long t1 = System.currentTimeMillis();
+      for (int ll = 0; ll < iterations; ll++) {
+        final FlatJsonParser p = FlatJsonParser.makeDefault(
+                new StreamingHandler(event -> eventCount.incrementAndGet()));
+        p.parseNext(sourceBytes, 0, sourceBytes.length);
+        p.end();
+      }
+      report("FlatJsonParser, UTF-8 bytes", sourceBytes, iterations, eventCount, System.currentTimeMillis() - t1);
+    }
+    {
+      final AtomicLong eventCount = new AtomicLong(0);
+      final long t1 = System.currentTimeMillis();
+      final ParserPool pool = new ParserPool();
+      final EventHandler handler = HandlerUtil.then(new NestingCounter(),
+              new StreamingHandler(event -> eventCount.incrementAndGet()));
+      for (int ll = 0; ll < iterations; ll++) {
+        final FlatJsonParser p = pool.acquire(handler);
+        try {
+          p.parseNext(sourceBytes, 0, sourceBytes.length);
+          p.end();
+        } finally {
+          pool.release(p);
+        }
+      }
+      report("FlatJsonParser, UTF-8 bytes, pooled", sourceBytes, iterations, eventCount, System.currentTimeMillis() - t1);
+    }
+  }
+
+  private static void report(String name, byte[] sourceBytes, int iterations, AtomicLong eventCount, long elapsed) {
+    System.out.println("\n" + name + ": " + iterations + " iterations, " + (1e3 * elapsed / iterations) + " uSec/document.");
     System.out.println("Parsed " + eventCount.get() + " events."
             + "\n" + (1.0 * eventCount.get() / elapsed) + " events/mSec"
             + "\n" + (iterations * sourceBytes.length / elapsed / 1024.0)+ " kB/mSec.");
@@ -0,0 +1,80 @@
+package net.readmarks.jsono;
+
+import net.readmarks.jsono.handler.StreamingHandler;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class NumberParserTest {
+  private static void assertConverted(long w, int q) {
+    final double result = NumberParser.toDouble(w, q);
+    if (!Double.isNaN(result)) {
+      final String text = Long.toUnsignedString(w) + "e" + q;
+      assertEquals(text, Double.doubleToLongBits(Double.parseDouble(text)), Double.doubleToLongBits(result));
+    }
+  }
+
+  @Test
+  public void convertEdgeCases() {
+    assertConverted(1, 23);
+    assertConverted(73177701707893310L, -1);
+    assertConverted(72057594037927933L, 0);
+    assertConverted(9007199254740993L, 0);
+    assertConverted(22250738585072011L, -324);
+    assertConverted(17976931348623157L, 292);
+    assertConverted(17976931348623158L, 292);
+    assertConverted(-1L, 0);
+    assertConverted(-1L, -342);
+    assertConverted(1, 308);
+    assertConverted(1, -342);
+  }
+
+  @Test
+  public void convertRandom() {
+    final Random random = new Random(0x5EED);
+    for (int i = 0; i < 200000; i++) {
+      final long w = random.nextLong() >>> random.nextInt(64);
+      final int q = random.nextInt(700) - 350;
+      assertConverted(w, q);
+    }
+  }
+
+  @Test
+  public void multiplyHigh() {
+    assertEquals(0L, NumberParser.unsignedMultiplyHigh(1L << 63, 1));
+    assertEquals(1L, NumberParser.unsignedMultiplyHigh(1L << 63, 2));
+    assertEquals(-2L, NumberParser.unsignedMultiplyHigh(-1L, -1L));
+  }
+
+  private static Object parse(String json) {
+    final List<Object> values = new ArrayList<>();
+    final FlatJsonParser parser = new FlatJsonParser(new StreamingHandler(values::add));
+    parser.parseNext(json);
+    parser.end();
+    return values.get(0);
+  }
+
+  private static String zeros(int n) {
+    return String.join("", Collections.nCopies(n, "0"));
+  }
+
+  @Test
+  public void largeExponentAndScale() {
+    assertEquals(1000.0, parse("0." + zeros(100001) + "1e100005"));
+    assertEquals(1.5, parse("15" + zeros(100000) + "e-100001"));
+    assertEquals(0.0, parse("0." + zeros(100001) + "1e-99999999999"));
+    assertEquals(new BigDecimal("0." + zeros(100001) + "1e2000000000"),
+            parse("0." + zeros(100001) + "1e2000000000"));
+  }
+
+  @Test(expected = JsonParser.ParseException.class)
+  public void exponentOutOfRange() {
+    parse("1e99999999999");
+  }
+}
@@ -0,0 +1,98 @@
+package net.readmarks.jsono;
+
+import net.readmarks.jsono.handler.SimpleDeserializer;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParallelParserTest {
+  private static List<Object> parseSequentially(String json) {
+    final List<Object> result = new ArrayList<>();
+    final FlatJsonParser parser = FlatJsonParser.makeDefault(new SimpleDeserializer(result::add));
+    parser.parseNext(json);
+    parser.end();
+    return result;
+  }
+
+  private static List<Object> parseInParallel(String json, boolean ordered, boolean newlineDelimited) {
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      final ParallelParser parser = new ParallelParser(pool);
+      parser.setChunkSize(100);
+      parser.setOrdered(ordered);
+      parser.setNewlineDelimited(newlineDelimited);
+      final List<Object> result = new ArrayList<>();
+      final ByteBuffer input = ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8));
+      parser.parse(input, SimpleDeserializer::new, result::add);
+      assertEquals(input.limit(), input.position());
+      return result;
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private static String records(String separator) {
+    final StringBuilder json = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      json.append("{\"id\": ").append(i).append(", \"text\": \"{[\\\"\\u266b ").append(i).append("\",")
+              .append(separator).append("\"tags\": [").append(separator).append("\"a\", 1.5, null]}")
+              .append(i % 7 == 0 ? "\n\n" : "\n");
+    }
+    return json.toString();
+  }
+
+  @Test
+  public void parseNdjson() {
+    final String json = records("");
+    final List<Object> expected = parseSequentially(json);
+    assertEquals(1000, expected.size());
+    assertEquals(expected, parseInParallel(json, true, true));
+
+    final List<Object> unordered = parseInParallel(json, false, true);
+    final Comparator<Object> byId = Comparator.comparing(x -> (Long) ((Map<?, ?>) x).get("id"));
+    unordered.sort(byId);
+    assertEquals(expected, unordered);
+  }
+
+  @Test
+  public void parseConcatenatedDocuments() {
+    final String json = records("\n  ") + "12 \"\\\"}\" [] 3";
+    assertEquals(parseSequentially(json), parseInParallel(json, true, false));
+  }
+
+  @Test
+  public void parseEmptyInput() {
+    assertEquals(Collections.emptyList(), parseInParallel("", true, true));
+  }
+
+  @Test(expected = JsonParser.ParseException.class)
+  public void invalidRecord() {
+    parseInParallel(records("") + "{\"id\": }\n" + records(""), true, true);
+  }
+
+  @Test
+  public void defaultLimits() {
+    final StringBuilder deep = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      deep.append('[');
+    }
+    try {
+      parseInParallel(records("") + deep + "\n", true, true);
+      fail("Limit is not enforced.");
+    } catch (LimitExceededException e) {
+      assertEquals(1, e.getSuppressed().length);
+      assertTrue(e.getSuppressed()[0].getMessage().startsWith("Error in chunk at byte "));
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package net.readmarks.jsono;
+
+import net.readmarks.jsono.handler.StreamingHandler;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.fail;
+
+public class ParserLimitsTest {
+  private static final EventHandler IGNORE = new StreamingHandler(x -> {
+  }) {
+    @Override
+    public boolean acceptsStringChunks() {
+      return true;
+    }
+
+    @Override
+    public void onStringChunk(CharSequence chunk) {
+    }
+
+    @Override
+    public void onStringEnd() {
+    }
+  };
+
+  private static String repeat(String s, int n) {
+    final StringBuilder result = new StringBuilder();
+    for (int i = 0; i < n; i++) {
+      result.append(s);
+    }
+    return result.toString();
+  }
+
+  /**
+   * Parses the input with both engines and with char and byte input.
+   */
+  private static void parse(ParserLimits limits, String json) {
+    final JsonParser legacy = new JsonParser(IGNORE);
+    legacy.setLimits(limits);
+    legacy.parseNext(json);
+    legacy.end();
+    for (int chunkSize : new int[]{0, 3}) {
+      final FlatJsonParser chars = new FlatJsonParser(IGNORE);
+      chars.setLimits(limits);
+      chars.setStringChunkSize(chunkSize);
+      chars.parseNext(json);
+      chars.end();
+      final FlatJsonParser bytes = new FlatJsonParser(IGNORE);
+      bytes.setLimits(limits);
+      bytes.setStringChunkSize(chunkSize);
+      final byte[] utf8 = json.getBytes(StandardCharsets.UTF_8);
+      for (int pos = 0; pos < utf8.length; pos += 5) {
+        bytes.parseNext(utf8, pos, Math.min(5, utf8.length - pos));
+      }
+      bytes.end();
+      final FlatJsonParser single = new FlatJsonParser(IGNORE);
+      single.setLimits(limits);
+      for (int i = 0; i < json.length(); i++) {
+        single.parseNext(json.charAt(i));
+      }
+      single.end();
+    }
+  }
+
+  private static void check(Consumer<ParserLimits> setLimit, String valid, String invalid) {
+    final ParserLimits limits = new ParserLimits();
+    setLimit.accept(limits);
+    parse(limits, valid);
+    final JsonParser legacy = new JsonParser(IGNORE);
+    legacy.setLimits(limits);
+    final FlatJsonParser flat = new FlatJsonParser(IGNORE);
+    flat.setLimits(limits);
+    final FlatJsonParser chunked = new FlatJsonParser(IGNORE);
+    chunked.setLimits(limits);
+    chunked.setStringChunkSize(3);
+    for (IncrementalParser p : new IncrementalParser[]{legacy, flat, chunked}) {
+      try {
+        p.parseNext(invalid);
+        p.end();
+        fail(p.getClass().getSimpleName() + " " + invalid);
+      } catch (LimitExceededException e) {
+        // Expected
+      }
+    }
+    final FlatJsonParser bytes = new FlatJsonParser(IGNORE);
+    bytes.setLimits(limits);
+    final byte[] utf8 = invalid.getBytes(StandardCharsets.UTF_8);
+    try {
+      bytes.parseNext(utf8, 0, utf8.length);
+      bytes.end();
+      fail("bytes " + invalid);
+    } catch (LimitExceededException e) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void depth() {
+    check(l -> l.setMaxDepth(3), "[{\"a\": [1]}] [[[]]]", "[[[[]]]]");
+  }
+
+  @Test
+  public void stringLength() {
+    check(l -> l.setMaxStringLength(5), "[\"abcde\", \"\\u0041bc\\nd\", {\"abcde\": \"\"}]", "[\"abcdef\"]");
+    check(l -> l.setMaxStringLength(5), "[\"ééééé\"]", "{\"abcdef\": 1}");
+    check(l -> l.setMaxStringLength(5), "\"a\"", "\"abcde\\n\"");
+  }
+
+  @Test
+  public void numberLength() {
+    check(l -> l.setMaxNumberLength(4), "[1234, -1.5, 1e10]", "[12345]");
+    check(l -> l.setMaxNumberLength(4), "1234 1234", "-1234");
+  }
+
+  @Test
+  public void mapSize() {
+    check(l -> l.setMaxMapSize(2), "{\"a\": {\"b\": 1, \"c\": 2}, \"d\": [{\"e\": 3}]}", "{\"a\": 1, \"b\": 2, \"c\": 3}");
+  }
+
+  @Test
+  public void events() {
+    // Values and keys of each top-level document are counted separately
+    check(l -> l.setMaxEvents(4), "{\"a\": [1]} [1, 2, 3] 4", "[1, 2, 3, 4]");
+    check(l -> l.setMaxEvents(4), "[1, [2]]", "{\"a\": 1, \"b\": 2}");
+  }
+
+  @Test
+  public void documentLength() {
+    check(l -> l.setMaxDocumentLength(10), "[1, 2, 30]   {\"a\": \"b\"} 1234567890",
+            "[1, 2, 3, 4, 5, 6]");
+    check(l -> l.setMaxDocumentLength(10), "\"12345678\"", "\"1234567890123\"");
+  }
+
+  @Test
+  public void documentLengthBoundary() {
+    // Documents of exactly the max length are accepted, one char more is rejected
+    check(l -> l.setMaxDocumentLength(5), "[1,2]", "[1,22]");
+    check(l -> l.setMaxDocumentLength(5), "\"abc\"", "\"abcd\"");
+    check(l -> l.setMaxDocumentLength(5), "12345", "123456");
+    check(l -> l.setMaxDocumentLength(5), "12345 [1,2]\n-1e10", "1.5e10");
+    check(l -> l.setMaxDocumentLength(5), "false", "{\"a\":1}");
+    check(l -> l.setMaxDocumentLength(1), "1 2 3", "12");
+  }
+
+  @Test
+  public void longInputWithinLimits() {
+    final ParserLimits limits = ParserLimits.defaults();
+    limits.setMaxEvents(3);
+    limits.setMaxDocumentLength(20);
+    parse(limits, repeat("{\"key\": \"value\"}\n", 10000));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidLimit() {
+    new ParserLimits().setMaxDepth(0);
+  }
+
+  @Test(expected = LimitExceededException.class)
+  public void defaultDepth() {
+    FlatJsonParser.makeDefault(IGNORE).parseNext(repeat("[", 1001));
+  }
+}
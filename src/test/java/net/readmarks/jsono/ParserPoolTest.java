@@ -0,0 +1,50 @@
+package net.readmarks.jsono;
+
+import net.readmarks.jsono.handler.StreamingHandler;
+import org.junit.Test;
+
+import java.util.stream.Stream;
+
+import static net.readmarks.jsono.handler.Event.*;
+import static org.junit.Assert.*;
+
+public class ParserPoolTest {
+  @Test
+  public void reuseParser() {
+    final ParserPool pool = new ParserPool();
+    final FlatJsonParser p1 = pool.acquire(new StreamingHandler(x -> {
+    }));
+    p1.parseNext("[1, {\"a\": ");
+    pool.release(p1);
+
+    final Stream.Builder<Object> result = Stream.builder();
+    final FlatJsonParser p2 = pool.acquire(new StreamingHandler(result::add));
+    assertSame(p1, p2);
+    p2.parseNext("[\"b\"]");
+    p2.end();
+    pool.release(p2);
+    assertArrayEquals(new Object[]{ARRAY, "b", END}, result.build().toArray());
+  }
+
+  @Test
+  public void nestedAcquire() {
+    final ParserPool pool = new ParserPool();
+    final StreamingHandler handler = new StreamingHandler(x -> {
+    });
+    final FlatJsonParser p1 = pool.acquire(handler);
+    final FlatJsonParser p2 = pool.acquire(handler);
+    assertNotSame(p1, p2);
+    pool.release(p2);
+    pool.release(p1);
+    assertSame(p1, pool.acquire(handler));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void releasedParser() {
+    final ParserPool pool = new ParserPool();
+    final FlatJsonParser p = pool.acquire(new StreamingHandler(x -> {
+    }));
+    pool.release(p);
+    p.parseNext("[]");
+  }
+}
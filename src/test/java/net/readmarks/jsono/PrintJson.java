@@ -5,9 +5,11 @@ import com.fasterxml.jackson.core.JsonGenerator;
 import net.readmarks.jsono.handler.EventToGenerator;
 import net.readmarks.jsono.handler.HandlerUtil;
 import net.readmarks.jsono.handler.NestingCounter;
-import net.readmarks.utf8.Utf8Decoder2;
 
-import java.io.*;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Paths;
 
 /**
  * Example of JsonParser usage with Jackson JSON generator.
@@ -20,28 +22,19 @@ public class PrintJson {
       System.err.println("Expecting a file name as argument.");
       System.exit(1);
     }
-    try (final InputStream in = new FileInputStream(args[0])) {
-      // Using Jackson to generate JSON
-      final JsonGenerator generator = defaultGenerator(new OutputStreamWriter(System.out));
-      generator.useDefaultPrettyPrinter();
+    // Using Jackson to generate JSON
+    final JsonGenerator generator = defaultGenerator(new OutputStreamWriter(System.out));
+    generator.useDefaultPrettyPrinter();
 
-      // Parsing input as UTF-8
-      final JsonParser parser = new JsonParser(
-              HandlerUtil.then(
-                      new NestingCounter(),
-                      new EventToGenerator(generator)));
-      final Utf8Decoder2 utf8parser = new Utf8Decoder2(parser::parseNext, 2048);
-      int b = in.read();
-      while (b != -1) {
-        // TODO (API) Allow decoding sub-range of provided array in UTF-decoder.
-        utf8parser.put(new byte[]{(byte) b});
-        b = in.read();
-      }
-      utf8parser.end();
-      parser.end();
-      generator.close();
-      System.out.println();
-    }
+    // Parsing input as UTF-8
+    final FlatJsonParser parser = new FlatJsonParser(
+            HandlerUtil.then(
+                    new NestingCounter(),
+                    new EventToGenerator(generator)));
+    MappedFile.parse(Paths.get(args[0]), parser);
+    parser.end();
+    generator.close();
+    System.out.println();
   }
 
   public static JsonGenerator defaultGenerator(Writer writer) {
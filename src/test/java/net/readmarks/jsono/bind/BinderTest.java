@@ -0,0 +1,134 @@
+package net.readmarks.jsono.bind;
+
+import net.readmarks.jsono.FlatJsonParser;
+import net.readmarks.jsono.JsonParser;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class BinderTest {
+  enum Color {
+    RED, GREEN
+  }
+
+  static class Base {
+    String name;
+  }
+
+  static class Item extends Base {
+    private int id;
+    long big;
+    short small;
+    double ratio;
+    float f;
+    boolean active = true;
+    Integer boxed;
+    Double boxedDouble;
+    Color color;
+    Item child;
+    List<Item> children;
+    List<Long> numbers;
+    List<List<String>> matrix;
+    Object any;
+    Map<String, Object> attributes;
+    transient int ignored;
+    static int alsoIgnored;
+  }
+
+  private static final String JSON = "{\"id\": 7, \"name\": \"seven\", \"big\": 9007199254740993, \"small\": -3,"
+          + " \"ratio\": 2, \"f\": 1.5, \"active\": false, \"boxed\": 12, \"boxedDouble\": 3,"
+          + " \"color\": \"GREEN\", \"unknown\": {\"x\": [1, {\"id\": 100}]}, \"ignored\": 5,"
+          + " \"child\": {\"id\": 8, \"children\": [], \"active\": null},"
+          + " \"children\": [{\"id\": 9, \"numbers\": [1, null]}, {\"name\": \"ten\", \"child\": null}],"
+          + " \"numbers\": [3, 4], \"matrix\": [[\"a\"], [], [\"b\", \"c\"]],"
+          + " \"any\": [1, {\"k\": [true]}], \"attributes\": {\"a\": \"b\"}}"
+          + " {\"any\": \"text\"}";
+
+  private static List<Item> bindFlat(String json, boolean skipping) {
+    final List<Item> items = new ArrayList<>();
+    final Binder<Item> binder = new Binder<>(Item.class, items::add);
+    final FlatJsonParser parser = FlatJsonParser.makeDefault(binder);
+    if (skipping) {
+      binder.setParser(parser);
+    }
+    parser.parseNext(json);
+    parser.end();
+    return items;
+  }
+
+  private static void checkItems(List<Item> items) {
+    assertEquals(2, items.size());
+    final Item item = items.get(0);
+    assertEquals(7, item.id);
+    assertEquals("seven", item.name);
+    assertEquals(9007199254740993L, item.big);
+    assertEquals(-3, item.small);
+    assertEquals(2.0, item.ratio, 0);
+    assertEquals(1.5f, item.f, 0);
+    assertEquals(false, item.active);
+    assertEquals(Integer.valueOf(12), item.boxed);
+    assertEquals(Double.valueOf(3), item.boxedDouble);
+    assertEquals(Color.GREEN, item.color);
+    assertEquals(0, item.ignored);
+    assertEquals(8, item.child.id);
+    assertEquals(Collections.emptyList(), item.child.children);
+    assertEquals(true, item.child.active);
+    assertEquals(2, item.children.size());
+    assertEquals(9, item.children.get(0).id);
+    assertEquals(Arrays.asList(1L, null), item.children.get(0).numbers);
+    assertEquals("ten", item.children.get(1).name);
+    assertNull(item.children.get(1).child);
+    assertEquals(Arrays.asList(3L, 4L), item.numbers);
+    assertEquals(Arrays.asList(Collections.singletonList("a"), Collections.emptyList(), Arrays.asList("b", "c")),
+            item.matrix);
+    assertEquals(Arrays.asList(1L, Collections.singletonMap("k", Collections.singletonList(true))), item.any);
+    assertEquals(Collections.singletonMap("a", "b"), item.attributes);
+    assertEquals("text", items.get(1).any);
+  }
+
+  @Test
+  public void bindObjects() {
+    checkItems(bindFlat(JSON, false));
+    checkItems(bindFlat(JSON, true));
+
+    final List<Item> items = new ArrayList<>();
+    final JsonParser parser = JsonParser.makeDefault(new Binder<>(Item.class, items::add));
+    parser.parseNext(JSON);
+    parser.end();
+    checkItems(items);
+  }
+
+  @Test
+  public void reset() {
+    final List<Item> items = new ArrayList<>();
+    final FlatJsonParser parser = FlatJsonParser.makeDefault(new Binder<>(Item.class, items::add));
+    parser.parseNext("{\"child\": {\"any\": [{\"id\": ");
+    parser.reset();
+    parser.parseNext("{\"id\": 1}");
+    parser.end();
+    assertEquals(1, items.size());
+    assertEquals(1, items.get(0).id);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void outOfRange() {
+    bindFlat("{\"id\": 2147483648}", false);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void wrongType() {
+    bindFlat("{\"id\": \"7\"}", false);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void topLevelArray() {
+    bindFlat("[]", false);
+  }
+}
@@ -0,0 +1,183 @@
+package net.readmarks.jsono.handler;
+
+import net.readmarks.jsono.EventHandler;
+import net.readmarks.jsono.FlatJsonParser;
+import net.readmarks.jsono.KeyTable;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class AsyncHandlerTest {
+  /**
+   * Records events as text.
+   */
+  private static class Trace implements EventHandler {
+    final StringBuilder out = new StringBuilder();
+
+    @Override
+    public void onValue(Object x) {
+      out.append("v:").append(x).append(' ');
+    }
+
+    @Override
+    public void onLong(long x) {
+      out.append("l:").append(x).append(' ');
+    }
+
+    @Override
+    public void onDouble(double x) {
+      out.append("d:").append(x).append(' ');
+    }
+
+    @Override
+    public void onBoolean(boolean x) {
+      out.append("b:").append(x).append(' ');
+    }
+
+    @Override
+    public void onNull() {
+      out.append("null ");
+    }
+
+    @Override
+    public void onString(CharSequence x) {
+      out.append("s:").append(x).append(' ');
+    }
+
+    @Override
+    public void onKey(int keyId, String key) {
+      out.append("k").append(keyId).append(':').append(key).append(' ');
+    }
+
+    @Override
+    public boolean acceptsStringChunks() {
+      return true;
+    }
+
+    @Override
+    public void onStringChunk(CharSequence chunk) {
+      out.append("c:").append(chunk).append(' ');
+    }
+
+    @Override
+    public void onStringEnd() {
+      out.append("/s ");
+    }
+
+    @Override
+    public void onArray() {
+      out.append("[ ");
+    }
+
+    @Override
+    public void onMap() {
+      out.append("{ ");
+    }
+
+    @Override
+    public void onMapKey() {
+      out.append("key ");
+    }
+
+    @Override
+    public void onEnd() {
+      out.append("] ");
+    }
+
+    @Override
+    public void onReset() {
+      out.append("reset ");
+    }
+  }
+
+  private static String json() {
+    final StringBuilder json = new StringBuilder();
+    for (int i = 0; i < 300; i++) {
+      json.append("{\"id\": ").append(i).append(", \"ratio\": ").append(i).append(".5, \"flag\": ").append(i % 2 == 0)
+              .append(", \"none\": null, \"name\": \"");
+      for (int j = 0; j < i % 70; j++) {
+        json.append((char) ('a' + j % 26));
+      }
+      json.append("\", \"list\": [1, [], {}]}\n");
+    }
+    return json.toString();
+  }
+
+  private static void parse(EventHandler handler, String json, boolean chunks) {
+    final FlatJsonParser parser = new FlatJsonParser(handler);
+    final KeyTable keys = new KeyTable(8);
+    keys.register("id");
+    keys.register("name");
+    parser.setKeyTable(keys);
+    if (chunks) {
+      parser.setStringChunkSize(16);
+    }
+    parser.parseNext(json.substring(0, 100));
+    parser.reset();
+    parser.parseNext(json);
+    parser.end();
+  }
+
+  @Test
+  public void sameEvents() {
+    final String json = json();
+    for (boolean chunks : new boolean[]{false, true}) {
+      final Trace expected = new Trace();
+      parse(expected, json, chunks);
+      for (WaitStrategy wait : WaitStrategy.values()) {
+        final List<Trace> traces = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+          traces.add(new Trace());
+        }
+        // One of the handlers is slow so the producer has to wait for it
+        final Trace slow = new Trace() {
+          @Override
+          public void onMap() {
+            super.onMap();
+            Thread.yield();
+          }
+        };
+        traces.add(slow);
+        // Spinning threads share cores with the producer, small buffer would make the test slow on few cores
+        final int capacity = wait == WaitStrategy.BUSY_SPIN ? 1 << 14 : 8;
+        final AsyncHandler async = new AsyncHandler(capacity, wait, traces.toArray(new EventHandler[0]));
+        parse(async, json, chunks);
+        async.close();
+        for (Trace t : traces) {
+          assertEquals(expected.out.toString(), t.out.toString());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void failedHandler() {
+    final Trace trace = new Trace();
+    final EventHandler failing = new Trace() {
+      @Override
+      public void onArray() {
+        throw new IllegalArgumentException("Failed.");
+      }
+    };
+    final AsyncHandler async = new AsyncHandler(4, WaitStrategy.PARK, trace, failing);
+    parse(async, json(), false);
+    try {
+      async.close();
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals(IllegalArgumentException.class, e.getCause().getClass());
+    }
+    final Trace expected = new Trace();
+    parse(expected, json(), false);
+    assertEquals(expected.out.toString(), trace.out.toString());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void capacity() {
+    new AsyncHandler(6, WaitStrategy.PARK);
+  }
+}
@@ -0,0 +1,128 @@
+package net.readmarks.jsono.handler;
+
+import net.readmarks.jsono.EventHandler;
+import net.readmarks.jsono.FlatJsonParser;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FanOutTest {
+  private static final String JSON = "{\"a\": [1, 2.5, true, null, \"s\"]} [3] 4";
+
+  private static void parse(EventHandler handler) {
+    final FlatJsonParser parser = new FlatJsonParser(handler);
+    parser.parseNext(JSON);
+    parser.end();
+  }
+
+  private static List<Object> expected() {
+    final List<Object> values = new ArrayList<>();
+    parse(new SimpleDeserializer(values::add));
+    return values;
+  }
+
+  @Test
+  public void allSizes() {
+    for (int n = 0; n <= 7; n++) {
+      final List<List<Object>> results = new ArrayList<>();
+      final EventHandler[] handlers = new EventHandler[n];
+      for (int i = 0; i < n; i++) {
+        final List<Object> values = new ArrayList<>();
+        results.add(values);
+        handlers[i] = new SimpleDeserializer(values::add);
+      }
+      final FanOut fanOut = FanOut.of(handlers);
+      assertEquals(n, fanOut.size());
+      parse(fanOut);
+      assertEquals(Collections.nCopies(n, expected()), results);
+    }
+  }
+
+  @Test
+  public void order() {
+    final List<String> calls = new ArrayList<>();
+    final EventHandler[] handlers = new EventHandler[6];
+    for (int i = 0; i < handlers.length; i++) {
+      final String name = "h" + i;
+      handlers[i] = new StreamingHandler(event -> calls.add(name));
+    }
+    for (int n = 1; n <= handlers.length; n++) {
+      calls.clear();
+      final FlatJsonParser parser = new FlatJsonParser(FanOut.of(Arrays.copyOf(handlers, n)));
+      parser.parseNext("1 ");
+      final List<String> expected = new ArrayList<>();
+      for (int i = 0; i < n; i++) {
+        expected.add("h" + i);
+      }
+      assertEquals(expected, calls);
+    }
+  }
+
+  @Test
+  public void removeSelf() {
+    for (int n = 1; n <= 6; n++) {
+      for (int k = 0; k < n; k++) {
+        final FanOut[] fanOut = new FanOut[1];
+        final EventHandler[] self = new EventHandler[1];
+        final List<Object> firstOnly = new ArrayList<>();
+        // Takes the first top-level value only, then drops itself
+        self[0] = new SimpleDeserializer(x -> {
+          firstOnly.add(x);
+          assertTrue(fanOut[0].remove(self[0]));
+        });
+        final List<List<Object>> results = new ArrayList<>();
+        final EventHandler[] handlers = new EventHandler[n];
+        for (int i = 0; i < n; i++) {
+          if (i == k) {
+            handlers[i] = self[0];
+          } else {
+            final List<Object> values = new ArrayList<>();
+            results.add(values);
+            handlers[i] = new SimpleDeserializer(values::add);
+          }
+        }
+        fanOut[0] = FanOut.of(handlers);
+        parse(fanOut[0]);
+        assertEquals(n - 1, fanOut[0].size());
+        assertFalse(fanOut[0].remove(self[0]));
+        assertEquals(expected().subList(0, 1), firstOnly);
+        assertEquals(Collections.nCopies(n - 1, expected()), results);
+      }
+    }
+  }
+
+  @Test
+  public void removeAll() {
+    for (int n = 1; n <= 6; n++) {
+      final List<List<Object>> results = new ArrayList<>();
+      final EventHandler[] handlers = new EventHandler[n];
+      for (int i = 0; i < n; i++) {
+        final List<Object> values = new ArrayList<>();
+        results.add(values);
+        handlers[i] = new SimpleDeserializer(values::add);
+      }
+      final FanOut fanOut = FanOut.of(handlers);
+      for (int i = n - 1; i >= 0; i--) {
+        parse(fanOut);
+        assertTrue(fanOut.remove(handlers[i]));
+        assertEquals(i, fanOut.size());
+      }
+      parse(fanOut);
+      for (int i = 0; i < n; i++) {
+        // Handler i was removed after n - i documents
+        final List<Object> expected = new ArrayList<>();
+        for (int k = 0; k < n - i; k++) {
+          expected.addAll(expected());
+        }
+        assertEquals(expected, results.get(i));
+      }
+    }
+  }
+}
@@ -25,6 +25,15 @@ public class NestingCounterTest {
     assertEquals(0, c.getDepth());
   }
 
+  @Test
+  public void testReset() {
+    final NestingCounter c = new NestingCounter();
+    c.onArray();
+    c.onMap();
+    c.onReset();
+    assertEquals(0, c.getDepth());
+  }
+
   @Test(expected = IllegalStateException.class)
   public void testUnderflow() {
     new NestingCounter(5).onEnd();
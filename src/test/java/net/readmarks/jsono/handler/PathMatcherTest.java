@@ -0,0 +1,105 @@
+package net.readmarks.jsono.handler;
+
+import net.readmarks.jsono.FlatJsonParser;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PathMatcherTest {
+  private static final String JSON = "{\"items\": ["
+          + " {\"id\": 1, \"tags\": [\"a\", \"b\"], \"more\": {\"id\": -1}},"
+          + " {\"tags\": [], \"id\": \"two\"},"
+          + " {\"id\": {\"x\": [3]}},"
+          + " [{\"id\": 4}]"
+          + "], \"id\": 0, \"it\\u0065ms\": [{\"id\": 5}]}"
+          + " [7, {\"id\": 8}]";
+
+  private static final List<String> PATHS = Arrays.asList(
+          "$", "$.items", "$.items[*].id", "$.*[*].id", "$.items[0].*", "$.items[0]", "$[1]",
+          "$.items[*].tags[1]", "$.*", "$.items[2].id.x[0]", "$.items[3][0]", "$.id", "$.none");
+
+  private static List<Object> queryValues(String path, String json) {
+    final List<Object> values = new ArrayList<>();
+    final FlatJsonParser parser = FlatJsonParser.makeDefault(PathQuery.values(path, values::add));
+    parser.parseNext(json);
+    parser.end();
+    return values;
+  }
+
+  private static List<List<Object>> match(List<String> paths, String json, boolean skipping) {
+    final PathMatcher matcher = new PathMatcher();
+    final List<List<Object>> results = new ArrayList<>();
+    for (String path : paths) {
+      final List<Object> values = new ArrayList<>();
+      results.add(values);
+      matcher.subscribe(path, new SimpleDeserializer(values::add));
+    }
+    final FlatJsonParser parser = FlatJsonParser.makeDefault(matcher);
+    if (skipping) {
+      matcher.setParser(parser);
+    }
+    final byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+    parser.parseNext(bytes, 0, bytes.length);
+    parser.end();
+    return results;
+  }
+
+  @Test
+  public void matchSameAsQueries() {
+    final List<List<Object>> expected = new ArrayList<>();
+    for (String path : PATHS) {
+      expected.add(queryValues(path, JSON));
+    }
+    assertEquals(expected, match(PATHS, JSON, false));
+    assertEquals(expected, match(PATHS, JSON, true));
+    for (String path : PATHS) {
+      assertEquals(path, Collections.singletonList(queryValues(path, JSON)),
+              match(Collections.singletonList(path), JSON, true));
+    }
+  }
+
+  @Test
+  public void manySubscriptions() {
+    final int n = 2000;
+    final StringBuilder json = new StringBuilder("{");
+    final List<String> paths = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      json.append(i == 0 ? "" : ",").append("\"f").append(i).append("\": {\"v\": ").append(i).append("}");
+      paths.add(i % 2 == 0 ? "$.f" + i + ".v" : "$['f" + i + "']");
+    }
+    json.append("}");
+    final List<List<Object>> results = match(paths, json.toString(), true);
+    for (int i = 0; i < n; i++) {
+      assertEquals(1, results.get(i).size());
+      assertEquals(i % 2 == 0 ? (Object) (long) i : Collections.singletonMap("v", (long) i),
+              results.get(i).get(0));
+    }
+  }
+
+  @Test
+  public void unsubscribe() {
+    final PathMatcher matcher = new PathMatcher();
+    final List<Object> a = new ArrayList<>();
+    final List<Object> b = new ArrayList<>();
+    final SimpleDeserializer subscriberA = new SimpleDeserializer(a::add);
+    matcher.subscribe("$.x", subscriberA);
+    matcher.subscribe("$.*", new SimpleDeserializer(b::add));
+    final FlatJsonParser parser = FlatJsonParser.makeDefault(matcher);
+    parser.parseNext("{\"x\": 1} ");
+    assertTrue(matcher.unsubscribe("$.x", subscriberA));
+    assertFalse(matcher.unsubscribe("$.x", subscriberA));
+    assertFalse(matcher.unsubscribe("$.y", subscriberA));
+    parser.parseNext("{\"x\": 2}");
+    parser.end();
+    assertEquals(Collections.singletonList(1L), a);
+    assertEquals(Arrays.asList(1L, 2L), b);
+  }
+}
@@ -0,0 +1,95 @@
+package net.readmarks.jsono.handler;
+
+import net.readmarks.jsono.FlatJsonParser;
+import net.readmarks.jsono.JsonParser;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class PathQueryTest {
+  private static final String JSON = "{\"items\": ["
+          + " {\"id\": 1, \"tags\": [\"a\", \"b\"], \"more\": {\"id\": -1}},"
+          + " {\"tags\": [], \"id\": \"two\"},"
+          + " {\"id\": {\"x\": [3]}},"
+          + " [{\"id\": 4}]"
+          + "], \"id\": 0, \"it\\u0065ms\": [{\"id\": 5}]}";
+
+  /**
+   * Runs the query with both parser engines, and with {@link FlatJsonParser} with skipping enabled.
+   */
+  private static List<Object> query(String path, String json) {
+    final List<Object> legacy = new ArrayList<>();
+    final JsonParser jsonParser = JsonParser.makeDefault(PathQuery.values(path, legacy::add));
+    jsonParser.parseNext(json);
+    jsonParser.end();
+
+    final List<Object> flat = new ArrayList<>();
+    final FlatJsonParser flatParser = FlatJsonParser.makeDefault(PathQuery.values(path, flat::add));
+    flatParser.parseNext(json);
+    flatParser.end();
+    assertEquals(legacy, flat);
+
+    final List<Object> skipping = new ArrayList<>();
+    final PathQuery query = PathQuery.values(path, skipping::add);
+    final FlatJsonParser skippingParser = FlatJsonParser.makeDefault(query);
+    query.setParser(skippingParser);
+    final byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+    skippingParser.parseNext(bytes, 0, bytes.length);
+    skippingParser.end();
+    assertEquals(legacy, skipping);
+    return legacy;
+  }
+
+  private static Map<String, Object> map(String key, Object value) {
+    final Map<String, Object> map = new HashMap<>();
+    map.put(key, value);
+    return map;
+  }
+
+  @Test
+  public void selectFields() {
+    assertEquals(Arrays.asList(1L, "two", map("x", Collections.singletonList(3L)), 5L),
+            query("$.items[*].id", JSON));
+    assertEquals(Collections.singletonList(0L), query("$.id", JSON));
+    assertEquals(Collections.singletonList(-1L), query("$['items'][*].more[\"id\"]", JSON));
+    assertEquals(Collections.singletonList(3L), query("$.items[2].id.x[0]", JSON));
+  }
+
+  @Test
+  public void selectElements() {
+    assertEquals(Collections.singletonList("b"), query("$.items[0].tags[1]", JSON));
+    assertEquals(Collections.singletonList(map("id", 4L)), query("$.items[3][0]", JSON));
+    assertEquals(Collections.emptyList(), query("$.items[4]", JSON));
+    assertEquals(Arrays.asList("a", "b"), query("$.items.*.tags.*", JSON));
+    assertEquals(Collections.emptyList(), query("$.items.id", JSON));
+  }
+
+  @Test
+  public void selectRoot() {
+    assertEquals(Arrays.asList(1L, Collections.emptyList(), "x"), query("$", "1 [] \"x\""));
+    assertEquals(Arrays.asList(2L, 3L), query("$[1]", "[1, 2] [] 7 [0, 3, 4]"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void recursiveDescentIsNotSupported() {
+    new PathQuery("$..id", new NestingCounter());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unterminatedIndex() {
+    new PathQuery("$.items[1", new NestingCounter());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void missingRoot() {
+    new PathQuery("items", new NestingCounter());
+  }
+}
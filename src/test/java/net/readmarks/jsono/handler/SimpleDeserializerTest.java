@@ -1,30 +1,134 @@
 package net.readmarks.jsono.handler;
 
+import net.readmarks.jsono.FlatJsonParser;
 import net.readmarks.jsono.JsonParser;
-import net.readmarks.utf8.Utf8Decoder2;
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
 public class SimpleDeserializerTest {
+  private static final String JSON = "[null,true,\"blUr \\u266b\" ,314e-2," +
+          " {\"full-name\":[\"Thomas Thumbson\", \"jr.\", \"III\", \"Esq.\"]}," +
+          " {\"name\":\"Elvis \\u266b\"}]";
+
+  private static SimpleDeserializer checkingDeserializer() {
+    return new SimpleDeserializer(struct ->
+    {
+      // System.out.println("Result: " + struct);
+      if (!getExpectedResult().equals(struct)) {
+        throw new AssertionError("Deserialized struct does not match expected one.");
+      }
+    });
+  }
+
   @Test
   public void deserializeTest() {
-    final JsonParser jsonParser = JsonParser.makeDefault(
-            new SimpleDeserializer(struct ->
-            {
-              // System.out.println("Result: " + struct);
-              if (!getExpectedResult().equals(struct)) {
-                throw new AssertionError("Deserialized struct does not match expected one.");
-              }
-            }));
-    final Utf8Decoder2 utf8decoder = new Utf8Decoder2(jsonParser::parseNext, 2048);
-    utf8decoder.put(("[null,true,\"blUr \\u266b\" ,314e-2," +
-            " {\"full-name\":[\"Thomas Thumbson\", \"jr.\", \"III\", \"Esq.\"]}," +
-            " {\"name\":\"Elvis \\u266b\"}]").getBytes());
-    utf8decoder.end();
+    final JsonParser jsonParser = JsonParser.makeDefault(checkingDeserializer());
+    jsonParser.parseNext(new String(JSON.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8));
+    jsonParser.end();
+  }
+
+  @Test
+  public void deserializeBytesTest() {
+    final FlatJsonParser jsonParser = FlatJsonParser.makeDefault(checkingDeserializer());
+    final byte[] json = JSON.getBytes(StandardCharsets.UTF_8);
+    jsonParser.parseNext(json, 0, json.length);
+    jsonParser.end();
+  }
+
+  @Test
+  public void resetTest() {
+    final List<Object> results = new ArrayList<>();
+    final FlatJsonParser jsonParser = FlatJsonParser.makeDefault(new SimpleDeserializer(results::add));
+    jsonParser.parseNext("[1, {\"a\": [");
+    jsonParser.reset();
+    jsonParser.parseNext("{\"b\": 2}");
+    jsonParser.end();
+    final Map<String, Object> expected = new HashMap<>();
+    expected.put("b", 2L);
+    assertEquals(Collections.singletonList(expected), results);
+  }
+
+  private static List<Object> deserialize(String json, boolean compact, int stringCacheSize) {
+    final List<Object> results = new ArrayList<>();
+    final SimpleDeserializer deserializer = new SimpleDeserializer(results::add);
+    deserializer.setCompact(compact);
+    deserializer.setStringCacheSize(stringCacheSize);
+    final FlatJsonParser jsonParser = FlatJsonParser.makeDefault(deserializer);
+    jsonParser.parseNext(json);
+    jsonParser.end();
+    return results;
+  }
+
+  @Test
+  public void compactTest() {
+    final StringBuilder json = new StringBuilder("[{\"a\": 1, \"b\": [], \"a\": {\"c\": [1, \"x\", {}]}}, {");
+    for (int i = 0; i < 20; i++) {
+      json.append(i == 0 ? "" : ", ").append("\"k").append(i).append("\": {\"v\": [").append(i).append("]}");
+    }
+    json.append("}, [[]], {}] 1 {\"z\": null}");
+    final List<Object> expected = deserialize(json.toString(), false, 0);
+    final List<Object> compact = deserialize(json.toString(), true, 0);
+    assertEquals(expected, compact);
+    assertEquals(expected.hashCode(), compact.hashCode());
+    final Map<?, ?> small = (Map<?, ?>) ((List<?>) compact.get(0)).get(0);
+    assertEquals(2, small.size());
+    assertEquals(Collections.emptyList(), small.get("b"));
+    assertEquals(null, small.get("none"));
+    assertTrue(((Map<?, ?>) compact.get(2)).containsKey("z"));
+  }
+
+  @Test
+  public void compactMapIsImmutable() {
+    final StringBuilder large = new StringBuilder("{");
+    for (int i = 0; i < 20; i++) {
+      large.append(i == 0 ? "" : ", ").append("\"k").append(i).append("\": ").append(i);
+    }
+    large.append("}");
+    for (String json : new String[]{"{\"a\": 1}", large.toString()}) {
+      @SuppressWarnings("unchecked")
+      final Map<String, Object> map = (Map<String, Object>) deserialize(json, true, 0).get(0);
+      try {
+        map.put("b", 2L);
+        fail("Map is modifiable: " + json);
+      } catch (UnsupportedOperationException e) {
+        // Expected
+      }
+    }
+  }
+
+  @Test
+  public void stringCacheTest() {
+    final List<Object> results = deserialize("[\"abc\", \"abc\", \"abd\"] [\"abc\"]", true, 16);
+    final List<?> first = (List<?>) results.get(0);
+    assertSame(first.get(0), first.get(1));
+    assertSame(first.get(0), ((List<?>) results.get(1)).get(0));
+    assertEquals(Arrays.asList("abc", "abc", "abd"), first);
+  }
+
+  @Test
+  public void stringCacheMaxLength() {
+    final String json = "[\"abcdef\", \"abcdef\"]";
+    final SimpleDeserializer deserializer = new SimpleDeserializer(x -> {
+      final List<?> list = (List<?>) x;
+      assertEquals(list.get(0), list.get(1));
+      assertNotSame(list.get(0), list.get(1));
+    });
+    deserializer.setStringCacheSize(16, 5);
+    final FlatJsonParser jsonParser = FlatJsonParser.makeDefault(deserializer);
+    jsonParser.parseNext(json);
     jsonParser.end();
   }
 
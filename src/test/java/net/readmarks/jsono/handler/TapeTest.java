@@ -0,0 +1,164 @@
+package net.readmarks.jsono.handler;
+
+import net.readmarks.jsono.FlatJsonParser;
+import net.readmarks.jsono.JsonParser;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TapeTest {
+  private static final String JSON = "{\"a\": [1, -2.5e3, true, null, \"x\\u00e9\\u266b\"], \"b\": {}, \"c\": false,"
+          + " \"big\": [9223372036854775807, -9223372036854775808, 36028797018963967, -36028797018963968,"
+          + " 36028797018963968], \"huge\": [12345678901234567890, 1e400, -2e400], \"nested\": [[], [{\"k\": \"\"}], {\"d\": [[1]]}]}"
+          + " 42 [[]] \"s\" -7 {}";
+
+  private static List<Tape> parse(String json, int chunkSize) {
+    final List<Tape> tapes = new ArrayList<>();
+    final FlatJsonParser parser = FlatJsonParser.makeDefault(new TapeBuilder(tapes::add));
+    parser.setStringChunkSize(chunkSize);
+    parser.parseNext(json);
+    parser.end();
+    return tapes;
+  }
+
+  private static List<Object> toObjects(List<Tape> tapes) {
+    final List<Object> values = new ArrayList<>();
+    for (Tape tape : tapes) {
+      values.add(tape.toObject(Tape.ROOT));
+    }
+    return values;
+  }
+
+  @Test
+  public void sameAsDeserialized() {
+    final List<Object> expected = new ArrayList<>();
+    final FlatJsonParser parser = FlatJsonParser.makeDefault(new SimpleDeserializer(expected::add));
+    parser.parseNext(JSON);
+    parser.end();
+    assertEquals(expected, toObjects(parse(JSON, 0)));
+    assertEquals(expected, toObjects(parse(JSON, 1)));
+
+    final List<Tape> legacy = new ArrayList<>();
+    final JsonParser jsonParser = JsonParser.makeDefault(new TapeBuilder(legacy::add));
+    jsonParser.parseNext(JSON);
+    jsonParser.end();
+    assertEquals(expected, toObjects(legacy));
+  }
+
+  @Test
+  public void accessValues() {
+    final Tape tape = parse(JSON, 0).get(0);
+    assertEquals(Tape.Type.MAP, tape.type(Tape.ROOT));
+    assertEquals(6, tape.size(Tape.ROOT));
+    final int a = tape.field(Tape.ROOT, "a");
+    assertEquals(Tape.Type.ARRAY, tape.type(a));
+    assertEquals(5, tape.size(a));
+    assertEquals(1, tape.longValue(tape.element(a, 0)));
+    assertEquals(-2500.0, tape.doubleValue(tape.element(a, 1)), 0);
+    assertTrue(tape.booleanValue(tape.element(a, 2)));
+    assertEquals(Tape.Type.NULL, tape.type(tape.element(a, 3)));
+    assertEquals("xé♫", tape.stringValue(tape.element(a, 4)));
+    assertEquals("xé♫", tape.charsValue(tape.element(a, 4)).toString());
+    assertEquals(-1, tape.element(a, 5));
+    assertEquals(-1, tape.element(a, -1));
+    assertFalse(tape.booleanValue(tape.field(Tape.ROOT, "c")));
+    assertEquals(-1, tape.field(Tape.ROOT, "none"));
+    final int big = tape.field(Tape.ROOT, "big");
+    assertEquals(Long.MIN_VALUE, tape.longValue(tape.element(big, 1)));
+    assertEquals(-36028797018963968L, tape.longValue(tape.element(big, 3)));
+    final int huge = tape.field(Tape.ROOT, "huge");
+    assertEquals(Tape.Type.NUMBER, tape.type(tape.element(huge, 0)));
+    assertEquals(new BigInteger("12345678901234567890"), tape.numberValue(tape.element(huge, 0)));
+    assertEquals(new BigDecimal("1e400"), tape.numberValue(tape.element(huge, 1)));
+    assertEquals(new BigDecimal("-2e400"), tape.numberValue(tape.element(huge, 2)));
+    final int nested = tape.field(Tape.ROOT, "nested");
+    assertEquals("", tape.stringValue(tape.field(tape.element(tape.element(nested, 1), 0), "k")));
+    assertEquals(0, tape.size(tape.element(nested, 0)));
+
+    final List<String> keys = new ArrayList<>();
+    for (int entry = Tape.ROOT + 1; entry < tape.end(Tape.ROOT); entry = tape.next(entry + 1)) {
+      keys.add(tape.key(entry));
+    }
+    assertEquals(Arrays.asList("a", "b", "c", "big", "huge", "nested"), keys);
+  }
+
+  @Test
+  public void compactFootprint() {
+    final StringBuilder json = new StringBuilder("[");
+    for (int i = 0; i < 1000; i++) {
+      json.append(i == 0 ? "" : ",").append("{\"id\": ").append(i).append(", \"ok\": true}");
+    }
+    json.append("]");
+    final Tape tape = parse(json.toString(), 0).get(0);
+    assertEquals(1000, tape.size(Tape.ROOT));
+    assertEquals(500, tape.longValue(tape.field(tape.element(Tape.ROOT, 500), "id")));
+    // Words: map start and end, 2 keys and 2 values per element, array start, end, size and element positions;
+    // chars: 2 keys with lengths per element
+    assertEquals(48 + 8 * (6 * 1000 + 2 + 1 + 500) + 2 * 8 * 1000, tape.memorySize());
+  }
+
+  @Test
+  public void elementPositions() {
+    for (int n : new int[]{0, 1, Tape.LINEAR_MAX, Tape.LINEAR_MAX + 1, 1001}) {
+      // Elements of different widths, and elements of one word
+      final StringBuilder mixed = new StringBuilder("[");
+      final StringBuilder flat = new StringBuilder("[");
+      for (int i = 0; i < n; i++) {
+        mixed.append(i == 0 ? "" : ",");
+        if (i % 3 == 0) {
+          mixed.append(i);
+        } else if (i % 3 == 1) {
+          mixed.append(i).append(".5");
+        } else {
+          mixed.append("[").append(i).append(", {\"a\": [1, 2]}]");
+        }
+        flat.append(i == 0 ? "" : ",").append(i);
+      }
+      mixed.append("]");
+      flat.append("]");
+      final String json = mixed + " [" + mixed + ", 1] " + flat;
+      final List<Tape> tapes = parse(json, 0);
+      checkMixed(tapes.get(0), Tape.ROOT, n);
+      checkMixed(tapes.get(1), tapes.get(1).element(Tape.ROOT, 0), n);
+      assertEquals(1, tapes.get(1).longValue(tapes.get(1).element(Tape.ROOT, 1)));
+      final Tape flatTape = tapes.get(2);
+      assertEquals(n, flatTape.size(Tape.ROOT));
+      for (int i = 0; i < n; i++) {
+        assertEquals(i, flatTape.longValue(flatTape.element(Tape.ROOT, i)));
+      }
+
+      final List<Object> expected = new ArrayList<>();
+      final FlatJsonParser parser = FlatJsonParser.makeDefault(new SimpleDeserializer(expected::add));
+      parser.parseNext(json);
+      parser.end();
+      assertEquals(expected, toObjects(tapes));
+    }
+  }
+
+  private static void checkMixed(Tape tape, int array, int n) {
+    assertEquals(n, tape.size(array));
+    for (int i = 0; i < n; i++) {
+      final int element = tape.element(array, i);
+      if (i % 3 == 2) {
+        assertEquals(i, tape.longValue(tape.element(element, 0)));
+      } else {
+        assertEquals(i + (i % 3 == 1 ? 0.5 : 0), tape.doubleValue(element), 0);
+      }
+    }
+    assertEquals(-1, tape.element(array, n));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void wrongType() {
+    final Tape tape = parse("[1]", 0).get(0);
+    tape.stringValue(tape.element(Tape.ROOT, 0));
+  }
+}